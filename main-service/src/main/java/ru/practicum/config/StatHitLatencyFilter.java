@@ -0,0 +1,40 @@
+package ru.practicum.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.practicum.StatClient;
+
+import java.io.IOException;
+
+@Component
+public class StatHitLatencyFilter extends OncePerRequestFilter {
+    private final StatClient statClient;
+    private final boolean enabled;
+
+    public StatHitLatencyFilter(StatClient statClient,
+                                @Value("${stat-client.record-latency:false}") boolean enabled) {
+        this.statClient = statClient;
+        this.enabled = enabled;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        request.setAttribute(StatClient.REQUEST_START_ATTRIBUTE, System.nanoTime());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            statClient.completeHit(request);
+        }
+    }
+}
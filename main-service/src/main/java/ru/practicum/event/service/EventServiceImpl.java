@@ -11,6 +11,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 import ru.practicum.StatClient;
+import ru.practicum.StatsWindowDto;
+import ru.practicum.StatsWindowResultDto;
 import ru.practicum.ViewStatsDto;
 import ru.practicum.category.model.Category;
 import ru.practicum.category.repository.CategoryRepository;
@@ -38,7 +40,6 @@ import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static ru.practicum.event.model.QEvent.event;
@@ -465,10 +466,16 @@ public class EventServiceImpl implements EventService {
         List<String> url = events.stream()
                 .map(event -> "/events/" + event.getId())
                 .toList();
-        Optional<List<ViewStatsDto>> viewStatsDto = Optional.ofNullable(statClient
-                .getStats(LocalDateTime.now().minusYears(20), LocalDateTime.now(), url, true)
-        );
-        return viewStatsDto.orElse(Collections.emptyList());
+        StatsWindowDto window = StatsWindowDto.builder()
+                .start(LocalDateTime.now().minusYears(20))
+                .end(LocalDateTime.now())
+                .unique(true)
+                .build();
+        List<StatsWindowResultDto> results = statClient.queryStats(url, List.of(window));
+        if (CollectionUtils.isEmpty(results) || results.getFirst().getStats() == null) {
+            return Collections.emptyList();
+        }
+        return results.getFirst().getStats();
     }
 
     private void setViews(List<Event> events) {
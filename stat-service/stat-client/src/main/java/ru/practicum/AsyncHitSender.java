@@ -0,0 +1,134 @@
+package ru.practicum;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+@Slf4j
+public class AsyncHitSender implements AutoCloseable {
+    private final BlockingQueue<EndpointHitDto> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final OverflowPolicy overflowPolicy;
+    private final Consumer<List<EndpointHitDto>> batchConsumer;
+    private final HitSpool hitSpool;
+    private final AtomicLong droppedHits = new AtomicLong();
+    private final Thread senderThread;
+    private volatile boolean running = true;
+
+    public AsyncHitSender(int capacity,
+                          int batchSize,
+                          long flushIntervalMillis,
+                          OverflowPolicy overflowPolicy,
+                          Consumer<List<EndpointHitDto>> batchConsumer,
+                          HitSpool hitSpool) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.overflowPolicy = overflowPolicy;
+        this.batchConsumer = batchConsumer;
+        this.hitSpool = hitSpool;
+        this.senderThread = new Thread(this::run, "stat-client-sender");
+        this.senderThread.setDaemon(true);
+        this.senderThread.start();
+    }
+
+    public void submit(EndpointHitDto endpointHitDto) {
+        if (hitSpool != null) {
+            if (!queue.offer(endpointHitDto)) {
+                hitSpool.append(List.of(endpointHitDto));
+            }
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                queue.put(endpointHitDto);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while waiting for a free slot in the hit queue, hit {} is lost", endpointHitDto);
+            }
+            return;
+        }
+
+        while (!queue.offer(endpointHitDto)) {
+            if (queue.poll() != null) {
+                long dropped = droppedHits.incrementAndGet();
+                log.warn("The hit queue is full, the oldest hit has been dropped (dropped in total: {})", dropped);
+            }
+        }
+    }
+
+    public long getDroppedHits() {
+        return droppedHits.get();
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        senderThread.interrupt();
+        try {
+            senderThread.join(flushIntervalMillis * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<EndpointHitDto> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (int from = 0; from < rest.size(); from += batchSize) {
+            send(rest.subList(from, Math.min(from + batchSize, rest.size())));
+        }
+    }
+
+    private void run() {
+        while (running) {
+            List<EndpointHitDto> batch = collectBatch();
+            if (!batch.isEmpty()) {
+                send(batch);
+            }
+        }
+    }
+
+    /**
+     * Collects up to batchSize hits for at most the flush interval. {@link #close()} interrupts the wait, and the
+     * hits collected so far are returned to be sent rather than lost with the thread.
+     */
+    private List<EndpointHitDto> collectBatch() {
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            EndpointHitDto endpointHitDto;
+            try {
+                endpointHitDto = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (endpointHitDto == null) {
+                break;
+            }
+            batch.add(endpointHitDto);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+        return batch;
+    }
+
+    private void send(List<EndpointHitDto> batch) {
+        try {
+            batchConsumer.accept(batch);
+        } catch (Exception e) {
+            log.error("Sending a batch of {} hits failed", batch.size(), e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ru.practicum;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maps keys to nodes through a hash ring with {@code virtualNodes} points per node. Adding a node to n existing ones
+ * moves about 1/(n + 1) of the keys, all of them to the new node.
+ */
+final class ConsistentHashRing {
+    private final TreeMap<Long, Integer> ring = new TreeMap<>();
+    private final int nodeCount;
+
+    ConsistentHashRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("The ring needs at least one node and one virtual node per node");
+        }
+        this.nodeCount = nodes.size();
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int point = 0; point < virtualNodes; point++) {
+                ring.put(hash(nodes.get(node) + "#" + point), node);
+            }
+        }
+    }
+
+    int nodeFor(String key) {
+        if (nodeCount == 1) {
+            return 0;
+        }
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(hash(key));
+        return (entry == null ? ring.firstEntry() : entry).getValue();
+    }
+
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
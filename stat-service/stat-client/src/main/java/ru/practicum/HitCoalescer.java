@@ -0,0 +1,80 @@
+package ru.practicum;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges hits of one app, uri and ip within the same second into a single weighted hit. Stats ranges and buckets
+ * start on whole seconds, so hits that share a second and agree on falling exactly on it are counted identically by
+ * every query and the merged weight keeps the counts exact. The latencies of the merged hits are kept as the list of
+ * samples of the merged hit, so the latency histograms stay exact as well.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class HitCoalescer {
+    public static List<EndpointHitDto> coalesce(List<EndpointHitDto> endpointHitDtos) {
+        if (endpointHitDtos.size() < 2) {
+            return endpointHitDtos;
+        }
+        List<EndpointHitDto> result = new ArrayList<>(endpointHitDtos.size());
+        Map<HitKey, EndpointHitDto> merged = new HashMap<>();
+        for (EndpointHitDto endpointHitDto : endpointHitDtos) {
+            LocalDateTime timestamp = endpointHitDto.getTimestamp();
+            HitKey key = new HitKey(endpointHitDto.getApp(), endpointHitDto.getUri(), endpointHitDto.getIp(),
+                    timestamp.truncatedTo(ChronoUnit.SECONDS), timestamp.getNano() == 0);
+            EndpointHitDto first = merged.get(key);
+            if (first == null) {
+                first = endpointHitDto.toBuilder().build();
+                if (first.getLatenciesMicros() != null) {
+                    first.setLatenciesMicros(new ArrayList<>(first.getLatenciesMicros()));
+                }
+                merged.put(key, first);
+                result.add(first);
+            } else {
+                mergeLatencies(first, endpointHitDto);
+                first.setHits(weight(first) + weight(endpointHitDto));
+            }
+        }
+        return result.size() == endpointHitDtos.size() ? endpointHitDtos : result;
+    }
+
+    private static void mergeLatencies(EndpointHitDto first, EndpointHitDto next) {
+        if (first.getLatenciesMicros() == null) {
+            if (first.getLatencyMicros() == null && next.getLatencyMicros() == null &&
+                    next.getLatenciesMicros() == null) {
+                return;
+            }
+            List<Long> latencies = new ArrayList<>();
+            addLatencies(latencies, first);
+            first.setLatencyMicros(null);
+            first.setLatenciesMicros(latencies);
+        }
+        addLatencies(first.getLatenciesMicros(), next);
+    }
+
+    /**
+     * Adds the samples of a hit: its list, or its single latency once per unit of weight, the way the server counts
+     * it.
+     */
+    private static void addLatencies(List<Long> latencies, EndpointHitDto endpointHitDto) {
+        if (endpointHitDto.getLatencyMicros() != null) {
+            latencies.addAll(Collections.nCopies(weight(endpointHitDto), endpointHitDto.getLatencyMicros()));
+        } else if (endpointHitDto.getLatenciesMicros() != null) {
+            latencies.addAll(endpointHitDto.getLatenciesMicros());
+        }
+    }
+
+    private static int weight(EndpointHitDto endpointHitDto) {
+        return endpointHitDto.getHits() == null ? 1 : endpointHitDto.getHits();
+    }
+
+    private record HitKey(String app, String uri, String ip, LocalDateTime second, boolean onSecond) {
+    }
+}
@@ -0,0 +1,220 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A local append-only spool for hits the stat server could not take. Hits are kept in rotating memory-mapped
+ * segment files and survive a restart; once the spool exceeds its disk budget the oldest segment is dropped.
+ */
+@Slf4j
+public class HitSpool implements AutoCloseable {
+    private static final String SEGMENT_SUFFIX = ".spool";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final ObjectMapper objectMapper = new StatsCborMapper();
+    private final Deque<SpoolSegment> segments = new ArrayDeque<>();
+    private final Counter spooledHits;
+    private final Counter droppedHits;
+    private long nextSequence;
+
+    public HitSpool(Path directory, int segmentSize, long maxBytes, MeterRegistry meterRegistry) {
+        if (segmentSize <= SpoolSegment.HEADER_BYTES || maxBytes < 2L * segmentSize) {
+            throw new IllegalArgumentException("The spool needs room for at least two segments of " +
+                    segmentSize + " bytes, the disk budget is " + maxBytes + " bytes");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.min(Integer.MAX_VALUE, maxBytes / segmentSize);
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path path : files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .sorted()
+                        .toList()) {
+                    SpoolSegment segment = SpoolSegment.open(path);
+                    if (segment.getTruncatedBytes() > 0) {
+                        log.warn("The spool segment {} ended with a torn record, {} bytes have been cut off",
+                                path, segment.getTruncatedBytes());
+                    }
+                    segments.addLast(segment);
+                    nextSequence = sequence(path) + 1;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the hit spool in " + directory, e);
+        }
+        this.spooledHits = Counter.builder("stat.client.spool.spooled")
+                .description("Hits written to the local spool")
+                .register(meterRegistry);
+        this.droppedHits = Counter.builder("stat.client.spool.dropped")
+                .description("Spooled hits dropped because the disk budget was exceeded, the server rejected them " +
+                        "or they could not be decoded")
+                .register(meterRegistry);
+        Gauge.builder("stat.client.spool.bytes", this, HitSpool::getBytes)
+                .description("Disk space taken by the spool segments")
+                .register(meterRegistry);
+        Gauge.builder("stat.client.spool.segments", this, HitSpool::getSegmentCount)
+                .description("Number of spool segments")
+                .register(meterRegistry);
+        log.info("Opened the hit spool in {} with {} segments", directory, segments.size());
+    }
+
+    public synchronized void append(List<EndpointHitDto> endpointHitDtos) {
+        for (EndpointHitDto endpointHitDto : endpointHitDtos) {
+            byte[] record = encode(endpointHitDto);
+            if (record.length > segmentSize - SpoolSegment.HEADER_BYTES - SpoolSegment.RECORD_HEADER_BYTES) {
+                log.error("The hit {} does not fit into a spool segment and has been dropped", endpointHitDto);
+                droppedHits.increment();
+                continue;
+            }
+            if (segments.isEmpty() || !segments.getLast().append(record)) {
+                newSegment().append(record);
+            }
+            spooledHits.increment();
+        }
+    }
+
+    /**
+     * Returns up to {@code maxHits} of the oldest spooled hits. They stay in the spool until the batch is
+     * acknowledged, so a failed delivery is retried. Records that pass their checksum but cannot be decoded are
+     * skipped and dropped together with the batch; a run of only such records is dropped right away.
+     */
+    synchronized SpoolBatch read(int maxHits) {
+        while (!segments.isEmpty()) {
+            SpoolSegment head = segments.getFirst();
+            if (!head.isDrained()) {
+                List<EndpointHitDto> endpointHitDtos = new ArrayList<>(maxHits);
+                int undecodable = 0;
+                int position = head.getReadPosition();
+                while (endpointHitDtos.size() < maxHits && head.hasRecord(position)) {
+                    EndpointHitDto endpointHitDto = decode(head.read(position));
+                    if (endpointHitDto == null) {
+                        undecodable++;
+                    } else {
+                        endpointHitDtos.add(endpointHitDto);
+                    }
+                    position = head.next(position);
+                }
+                SpoolBatch batch = new SpoolBatch(head, position, endpointHitDtos, undecodable);
+                if (!endpointHitDtos.isEmpty() || undecodable == 0) {
+                    return batch;
+                }
+                acknowledge(batch);
+                continue;
+            }
+            if (segments.size() == 1) {
+                break;
+            }
+            delete(segments.removeFirst());
+        }
+        return new SpoolBatch(null, 0, List.of(), 0);
+    }
+
+    synchronized void acknowledge(SpoolBatch batch) {
+        SpoolSegment segment = batch.segment();
+        if (segment == null || !segments.contains(segment)) {
+            return;
+        }
+        segment.acknowledge(batch.endPosition());
+        if (batch.undecodable() > 0) {
+            droppedHits.increment(batch.undecodable());
+            log.error("{} records of the spool segment {} could not be decoded and have been dropped",
+                    batch.undecodable(), segment.getPath());
+        }
+        if (segment.isDrained() && segments.size() > 1) {
+            segments.remove(segment);
+            delete(segment);
+        }
+    }
+
+    void drop(SpoolBatch batch) {
+        acknowledge(batch);
+        droppedHits.increment(batch.hits().size());
+    }
+
+    public synchronized boolean isEmpty() {
+        return segments.stream().allMatch(SpoolSegment::isDrained);
+    }
+
+    public synchronized long getBytes() {
+        return (long) segments.size() * segmentSize;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!segments.isEmpty()) {
+            segments.getLast().force();
+        }
+    }
+
+    private SpoolSegment newSegment() {
+        while (segments.size() >= maxSegments) {
+            SpoolSegment oldest = segments.removeFirst();
+            int lost = oldest.countUnread();
+            droppedHits.increment(lost);
+            log.warn("The hit spool exceeded its disk budget, {} hits of the oldest segment have been dropped", lost);
+            delete(oldest);
+        }
+        Path path = directory.resolve(String.format("%019d%s", nextSequence++, SEGMENT_SUFFIX));
+        try {
+            SpoolSegment segment = SpoolSegment.create(path, segmentSize);
+            segments.addLast(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create spool segment " + path, e);
+        }
+    }
+
+    private void delete(SpoolSegment segment) {
+        try {
+            Files.deleteIfExists(segment.getPath());
+        } catch (IOException e) {
+            log.warn("Failed to delete spool segment {}", segment.getPath(), e);
+        }
+    }
+
+    private byte[] encode(EndpointHitDto endpointHitDto) {
+        try {
+            return objectMapper.writeValueAsBytes(endpointHitDto);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private EndpointHitDto decode(byte[] record) {
+        try {
+            return objectMapper.readValue(record, EndpointHitDto.class);
+        } catch (IOException e) {
+            log.debug("Failed to decode a spooled hit", e);
+            return null;
+        }
+    }
+
+    private long sequence(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    record SpoolBatch(SpoolSegment segment, int endPosition, List<EndpointHitDto> hits, int undecodable) {
+    }
+}
@@ -0,0 +1,205 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Writes hits as NDJSON into one chunked upload to {@code /hit/stream} per server instead of a request per batch.
+ * An upload is finished after maxHits records or maxAgeMillis, and the records after the last ack frame of its
+ * response are handed to the undelivered consumer. Records the server rejected are dropped like a rejected batch.
+ * <p>
+ * {@link HttpURLConnection} reads a response only after the request body has been closed, so the ack frames the
+ * server writes during an upload are read when the upload is finished, not as they arrive. They still tell how far
+ * a broken upload got; maxHits and maxAgeMillis bound both the hits that may be resent and the acks buffered.
+ */
+@Slf4j
+public class HitStreamSender implements AutoCloseable {
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private final List<URI> streamUris;
+    private final ToIntFunction<String> serverOfUri;
+    private final ObjectMapper objectMapper;
+    private final int timeoutMillis;
+    private final int maxHits;
+    private final long maxAgeNanos;
+    private final Consumer<List<EndpointHitDto>> undeliveredConsumer;
+    private final HitStream[] streams;
+    private final ScheduledExecutorService expiry;
+
+    public HitStreamSender(List<String> serverUrls,
+                           ToIntFunction<String> serverOfUri,
+                           ObjectMapper objectMapper,
+                           int timeoutMillis,
+                           int maxHits,
+                           long maxAgeMillis,
+                           Consumer<List<EndpointHitDto>> undeliveredConsumer) {
+        this.streamUris = serverUrls.stream()
+                .map(serverUrl -> URI.create(serverUrl.replaceAll("/+$", "") + "/hit/stream"))
+                .toList();
+        this.serverOfUri = serverOfUri;
+        this.objectMapper = objectMapper;
+        this.timeoutMillis = timeoutMillis;
+        this.maxHits = maxHits;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+        this.undeliveredConsumer = undeliveredConsumer;
+        this.streams = new HitStream[serverUrls.size()];
+        this.expiry = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stat-client-stream-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkIntervalMillis = Math.max(1, maxAgeMillis / 4);
+        expiry.scheduleWithFixedDelay(this::finishExpired, checkIntervalMillis, checkIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void send(List<EndpointHitDto> endpointHitDtos) {
+        List<List<EndpointHitDto>> hitsByServer = new ArrayList<>(streams.length);
+        for (int server = 0; server < streams.length; server++) {
+            hitsByServer.add(new ArrayList<>());
+        }
+        for (EndpointHitDto endpointHitDto : endpointHitDtos) {
+            hitsByServer.get(streams.length == 1 ? 0 : serverOfUri.applyAsInt(endpointHitDto.getUri()))
+                    .add(endpointHitDto);
+        }
+        for (int server = 0; server < streams.length; server++) {
+            if (!hitsByServer.get(server).isEmpty()) {
+                write(server, hitsByServer.get(server));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        expiry.shutdownNow();
+        synchronized (this) {
+            for (int server = 0; server < streams.length; server++) {
+                finish(server);
+            }
+        }
+    }
+
+    private void write(int server, List<EndpointHitDto> endpointHitDtos) {
+        if (streams[server] == null) {
+            try {
+                streams[server] = open(server);
+            } catch (IOException e) {
+                log.warn("Opening the hit stream to {} failed: {}", streamUris.get(server), e.getMessage());
+                undeliveredConsumer.accept(endpointHitDtos);
+                return;
+            }
+        }
+        HitStream stream = streams[server];
+        // Hits that could not be written are past the last ack as well and are handed over together with the rest
+        stream.written.addAll(endpointHitDtos);
+        try {
+            for (EndpointHitDto endpointHitDto : endpointHitDtos) {
+                stream.output.write(objectMapper.writeValueAsBytes(endpointHitDto));
+                stream.output.write('\n');
+            }
+            stream.output.flush();
+        } catch (IOException e) {
+            log.warn("Writing to the hit stream of {} failed: {}", streamUris.get(server), e.getMessage());
+            finish(server);
+            return;
+        }
+        if (stream.written.size() >= maxHits) {
+            finish(server);
+        }
+    }
+
+    private HitStream open(int server) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) streamUris.get(server).toURL().openConnection();
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(0);
+        connection.setRequestProperty("Content-Type", APPLICATION_NDJSON_VALUE);
+        connection.setRequestProperty("Accept", APPLICATION_NDJSON_VALUE);
+        return new HitStream(connection, connection.getOutputStream(), System.nanoTime());
+    }
+
+    private synchronized void finishExpired() {
+        long now = System.nanoTime();
+        for (int server = 0; server < streams.length; server++) {
+            if (streams[server] != null && now - streams[server].openedNanos >= maxAgeNanos) {
+                try {
+                    finish(server);
+                } catch (RuntimeException e) {
+                    log.error("Finishing the hit stream of {} failed", streamUris.get(server), e);
+                }
+            }
+        }
+    }
+
+    private void finish(int server) {
+        HitStream stream = streams[server];
+        if (stream == null) {
+            return;
+        }
+        streams[server] = null;
+        List<EndpointHitDto> written = stream.written;
+        long acked = 0;
+        String error = null;
+        try {
+            stream.output.close();
+            int status = stream.connection.getResponseCode();
+            if (status >= 400 && status < 500) {
+                error = "status " + status;
+            } else if (status < 300) {
+                try (InputStream input = stream.connection.getInputStream();
+                     MappingIterator<HitStreamAckDto> acks = objectMapper.readerFor(HitStreamAckDto.class)
+                             .readValues(input)) {
+                    while (acks.hasNextValue()) {
+                        HitStreamAckDto ack = acks.nextValue();
+                        acked = ack.getAcked();
+                        error = ack.getError();
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Reading the acks of the hit stream of {} failed: {}", streamUris.get(server), e.getMessage());
+            stream.connection.disconnect();
+        }
+        if (acked >= written.size()) {
+            log.info("Streamed {} hits to {}", written.size(), streamUris.get(server));
+            return;
+        }
+        if (error != null) {
+            log.error("The stat server rejected the hit stream after {} of {} hits, the rest is lost: {}", acked,
+                    written.size(), error);
+            return;
+        }
+        log.warn("{} of {} streamed hits have not been acknowledged by {}", written.size() - acked, written.size(),
+                streamUris.get(server));
+        undeliveredConsumer.accept(List.copyOf(written.subList((int) acked, written.size())));
+    }
+
+    private static class HitStream {
+        private final HttpURLConnection connection;
+        private final OutputStream output;
+        private final long openedNanos;
+        private final List<EndpointHitDto> written = new ArrayList<>();
+
+        HitStream(HttpURLConnection connection, OutputStream output, long openedNanos) {
+            this.connection = connection;
+            this.output = output;
+            this.openedNanos = openedNanos;
+        }
+    }
+}
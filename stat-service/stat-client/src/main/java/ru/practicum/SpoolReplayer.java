@@ -0,0 +1,98 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+@Slf4j
+public class SpoolReplayer implements AutoCloseable {
+    private static final int MAX_BACKOFF_SHIFT = 5;
+
+    private final HitSpool hitSpool;
+    private final int batchSize;
+    private final long replayIntervalMillis;
+    private final Consumer<List<EndpointHitDto>> batchConsumer;
+    private final Counter replayedHits;
+    private final Thread replayerThread;
+    private volatile boolean running = true;
+
+    public SpoolReplayer(HitSpool hitSpool,
+                         int batchSize,
+                         long replayIntervalMillis,
+                         Consumer<List<EndpointHitDto>> batchConsumer,
+                         MeterRegistry meterRegistry) {
+        this.hitSpool = hitSpool;
+        this.batchSize = batchSize;
+        this.replayIntervalMillis = replayIntervalMillis;
+        this.batchConsumer = batchConsumer;
+        this.replayedHits = Counter.builder("stat.client.spool.replayed")
+                .description("Spooled hits delivered to the stat server")
+                .register(meterRegistry);
+        this.replayerThread = new Thread(this::run, "stat-client-spool-replayer");
+        this.replayerThread.setDaemon(true);
+        this.replayerThread.start();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        replayerThread.interrupt();
+        try {
+            replayerThread.join(replayIntervalMillis * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Replays batches back to back while the server takes them and waits for the replay interval once the spool is
+     * empty or the server is unavailable. After an unexpected error the wait doubles with every further error, up to
+     * {@link #MAX_BACKOFF_SHIFT} doublings, so a spool that keeps failing does not spin.
+     */
+    private void run() {
+        int errors = 0;
+        long delayMillis = 0;
+        while (running) {
+            try {
+                if (delayMillis > 0) {
+                    Thread.sleep(delayMillis);
+                }
+                delayMillis = replay() ? 0 : replayIntervalMillis;
+                errors = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                delayMillis = replayIntervalMillis << Math.min(errors++, MAX_BACKOFF_SHIFT);
+                log.error("Replaying the hit spool failed, retrying in {} ms", delayMillis, e);
+            }
+        }
+    }
+
+    private boolean replay() {
+        HitSpool.SpoolBatch batch = hitSpool.read(batchSize);
+        if (batch.hits().isEmpty()) {
+            return false;
+        }
+        try {
+            batchConsumer.accept(batch.hits());
+        } catch (HttpClientErrorException e) {
+            log.error("The stat server rejected {} spooled hits with code {}, they have been dropped",
+                    batch.hits().size(), e.getStatusCode());
+            hitSpool.drop(batch);
+            return true;
+        } catch (Exception e) {
+            log.warn("The stat server is still unavailable, {} spooled hits will be retried: {}",
+                    batch.hits().size(), e.getMessage());
+            return false;
+        }
+        hitSpool.acknowledge(batch);
+        replayedHits.increment(batch.hits().size());
+        log.info("Replayed {} spooled hits", batch.hits().size());
+        return true;
+    }
+}
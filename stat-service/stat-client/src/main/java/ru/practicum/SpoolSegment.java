@@ -0,0 +1,170 @@
+package ru.practicum;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * One memory-mapped spool file: a header with the write and read positions followed by records, each prefixed with
+ * its length and CRC32. The write position is updated after the record and the read position after the records have
+ * been delivered. A process crash leaves the mapping to the operating system and loses nothing; after a power loss
+ * the pages may reach the disk in any order, so {@link #open} keeps only the records up to the first one that fails
+ * its check. Hits appended since the last {@link #force} can be lost then and an acknowledged delivery can repeat.
+ */
+class SpoolSegment {
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+
+    private static final int MAGIC = 0x53504f4c;
+    private static final int WRITE_POSITION_OFFSET = 4;
+    private static final int READ_POSITION_OFFSET = 8;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+    private int readPosition;
+    private int truncatedBytes;
+
+    private SpoolSegment(Path path, MappedByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+        this.writePosition = buffer.getInt(WRITE_POSITION_OFFSET);
+        this.readPosition = buffer.getInt(READ_POSITION_OFFSET);
+    }
+
+    static SpoolSegment create(Path path, int size) throws IOException {
+        MappedByteBuffer buffer = map(path, size, StandardOpenOption.CREATE_NEW);
+        buffer.putInt(WRITE_POSITION_OFFSET, HEADER_BYTES);
+        buffer.putInt(READ_POSITION_OFFSET, HEADER_BYTES);
+        buffer.putInt(0, MAGIC);
+        return new SpoolSegment(path, buffer);
+    }
+
+    static SpoolSegment open(Path path) throws IOException {
+        MappedByteBuffer buffer = map(path, Files.size(path));
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a spool file: " + path);
+        }
+        SpoolSegment segment = new SpoolSegment(path, buffer);
+        segment.recover();
+        return segment;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    int getSize() {
+        return buffer.capacity();
+    }
+
+    int getReadPosition() {
+        return readPosition;
+    }
+
+    /**
+     * Bytes cut off by {@link #open} because the records in them were torn.
+     */
+    int getTruncatedBytes() {
+        return truncatedBytes;
+    }
+
+    boolean isDrained() {
+        return readPosition == writePosition;
+    }
+
+    boolean append(byte[] record) {
+        if (writePosition + RECORD_HEADER_BYTES + record.length > buffer.capacity()) {
+            return false;
+        }
+        buffer.put(writePosition + RECORD_HEADER_BYTES, record);
+        buffer.putInt(writePosition + Integer.BYTES, checksum(record));
+        buffer.putInt(writePosition, record.length);
+        writePosition += RECORD_HEADER_BYTES + record.length;
+        buffer.putInt(WRITE_POSITION_OFFSET, writePosition);
+        return true;
+    }
+
+    byte[] read(int position) {
+        byte[] record = new byte[buffer.getInt(position)];
+        buffer.get(position + RECORD_HEADER_BYTES, record);
+        return record;
+    }
+
+    int next(int position) {
+        return position + RECORD_HEADER_BYTES + buffer.getInt(position);
+    }
+
+    boolean hasRecord(int position) {
+        return position < writePosition;
+    }
+
+    int countUnread() {
+        int count = 0;
+        for (int position = readPosition; position < writePosition; position = next(position)) {
+            count++;
+        }
+        return count;
+    }
+
+    void acknowledge(int position) {
+        readPosition = position;
+        buffer.putInt(READ_POSITION_OFFSET, position);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    private void recover() {
+        int capacity = buffer.capacity();
+        int end = writePosition < HEADER_BYTES || writePosition > capacity ? HEADER_BYTES : writePosition;
+        if (readPosition < HEADER_BYTES || readPosition > end) {
+            readPosition = HEADER_BYTES;
+        }
+        int position = readPosition;
+        while (position < end && isIntact(position, end)) {
+            position = next(position);
+        }
+        truncatedBytes = Math.max(writePosition, position) - position;
+        if (position != writePosition || readPosition != buffer.getInt(READ_POSITION_OFFSET)) {
+            writePosition = position;
+            buffer.putInt(WRITE_POSITION_OFFSET, writePosition);
+            buffer.putInt(READ_POSITION_OFFSET, readPosition);
+            buffer.force();
+        }
+    }
+
+    private boolean isIntact(int position, int end) {
+        if (position + RECORD_HEADER_BYTES > end) {
+            return false;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || length > end - position - RECORD_HEADER_BYTES) {
+            return false;
+        }
+        byte[] record = new byte[length];
+        buffer.get(position + RECORD_HEADER_BYTES, record);
+        return buffer.getInt(position + Integer.BYTES) == checksum(record);
+    }
+
+    private static int checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    private static MappedByteBuffer map(Path path, long size, StandardOpenOption... options) throws IOException {
+        StandardOpenOption[] openOptions = new StandardOpenOption[options.length + 2];
+        openOptions[0] = StandardOpenOption.READ;
+        openOptions[1] = StandardOpenOption.WRITE;
+        System.arraycopy(options, 0, openOptions, 2, options.length);
+        try (FileChannel channel = FileChannel.open(path, openOptions)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+}
@@ -1,40 +1,365 @@
 package ru.practicum;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
 
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
 
 import static ru.practicum.Constants.FORMATTER;
 
 @Component
 @Slf4j
 public class StatClient {
+    public static final String REQUEST_START_ATTRIBUTE = StatClient.class.getName() + ".requestStart";
 
-    private final RestClient restClient;
+    private static final String PENDING_HIT_ATTRIBUTE = StatClient.class.getName() + ".pendingHit";
 
-    public StatClient(@Value("${stat-server.url}") String serverUrl) {
-        this.restClient = RestClient.create(serverUrl);
-        log.info("Server stat run URL: {}", serverUrl);
+    private final List<String> serverUrls;
+    private final List<RestClient> shards;
+    private final ConsistentHashRing shardRing;
+    private final ExecutorService queryExecutor;
+    private final MediaType mediaType;
+    private final boolean coalesceHits;
+    private final AsyncHitSender asyncHitSender;
+    private final HitStreamSender hitStreamSender;
+    private final HitSpool hitSpool;
+    private final SpoolReplayer spoolReplayer;
+
+    public StatClient(@Value("${stat-server.urls:${stat-server.url}}") List<String> serverUrls,
+                      @Value("${stat-client.virtual-nodes:128}") int virtualNodes,
+                      @Value("${stat-client.mode:SYNC}") StatClientMode mode,
+                      @Value("${stat-client.queue-capacity:10000}") int queueCapacity,
+                      @Value("${stat-client.batch-size:500}") int batchSize,
+                      @Value("${stat-client.flush-interval-ms:1000}") long flushIntervalMillis,
+                      @Value("${stat-client.overflow-policy:DROP_OLDEST}") OverflowPolicy overflowPolicy,
+                      @Value("${stat-client.wire-format:JSON}") StatClientWireFormat wireFormat,
+                      @Value("${stat-client.timeout-ms:5000}") int timeoutMillis,
+                      @Value("${stat-client.coalesce-hits:true}") boolean coalesceHits,
+                      @Value("${stat-client.stream.max-hits:10000}") int streamMaxHits,
+                      @Value("${stat-client.stream.max-age-ms:10000}") long streamMaxAgeMillis,
+                      @Value("${stat-client.spool.enabled:false}") boolean spoolEnabled,
+                      @Value("${stat-client.spool.directory:stat-spool}") Path spoolDirectory,
+                      @Value("${stat-client.spool.segment-size:8388608}") int spoolSegmentSize,
+                      @Value("${stat-client.spool.max-bytes:268435456}") long spoolMaxBytes,
+                      @Value("${stat-client.spool.replay-interval-ms:1000}") long replayIntervalMillis,
+                      MeterRegistry meterRegistry) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeoutMillis);
+        requestFactory.setReadTimeout(timeoutMillis);
+        this.serverUrls = List.copyOf(serverUrls);
+        this.shards = serverUrls.stream()
+                .map(serverUrl -> RestClient.builder()
+                        .baseUrl(serverUrl)
+                        .requestFactory(requestFactory)
+                        .messageConverters(converters -> converters.addFirst(
+                                new MappingJackson2CborHttpMessageConverter(new StatsCborMapper())))
+                        .build())
+                .toList();
+        this.shardRing = new ConsistentHashRing(serverUrls, virtualNodes);
+        this.queryExecutor = shards.size() > 1 ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        this.mediaType = wireFormat == StatClientWireFormat.CBOR ? MediaType.APPLICATION_CBOR
+                : MediaType.APPLICATION_JSON;
+        this.coalesceHits = coalesceHits;
+        if (spoolEnabled) {
+            this.hitSpool = new HitSpool(spoolDirectory, spoolSegmentSize, spoolMaxBytes, meterRegistry);
+            this.spoolReplayer = new SpoolReplayer(hitSpool, batchSize, replayIntervalMillis, this::postHits,
+                    meterRegistry);
+        } else {
+            this.hitSpool = null;
+            this.spoolReplayer = null;
+        }
+        if (mode == StatClientMode.STREAM) {
+            this.hitStreamSender = new HitStreamSender(serverUrls, shardRing::nodeFor,
+                    Jackson2ObjectMapperBuilder.json().build(), timeoutMillis, streamMaxHits, streamMaxAgeMillis,
+                    hitSpool == null ? this::logLostHits : hitSpool::append);
+            this.asyncHitSender = new AsyncHitSender(queueCapacity, batchSize, flushIntervalMillis, overflowPolicy,
+                    this::streamHits, hitSpool);
+        } else if (mode == StatClientMode.ASYNC) {
+            this.hitStreamSender = null;
+            this.asyncHitSender = new AsyncHitSender(queueCapacity, batchSize, flushIntervalMillis, overflowPolicy,
+                    hitSpool == null ? this::postHits : this::postHitsOrSpool, hitSpool);
+        } else {
+            this.hitStreamSender = null;
+            this.asyncHitSender = null;
+        }
+        log.info("Server stat run URLs: {}, mode: {}, wire format: {}, spool: {}", serverUrls, mode, wireFormat,
+                spoolEnabled);
     }
 
-    @SneakyThrows
     public void saveHit(String app, HttpServletRequest request) {
         log.info("Saving hit for {}", app);
         EndpointHitDto endpointHitDto = toDto(app, request);
-        ResponseEntity<Void> response = restClient.post()
+        if (request.getAttribute(REQUEST_START_ATTRIBUTE) != null) {
+            // The filter timing this request sends the hit together with its latency in completeHit
+            request.setAttribute(PENDING_HIT_ATTRIBUTE, endpointHitDto);
+            return;
+        }
+        send(endpointHitDto);
+    }
+
+    /**
+     * Sends the hit saved while handling the request, with the time since {@link #REQUEST_START_ATTRIBUTE} as its
+     * latency. Does nothing when the handler did not save a hit.
+     */
+    public void completeHit(HttpServletRequest request) {
+        if (!(request.getAttribute(PENDING_HIT_ATTRIBUTE) instanceof EndpointHitDto endpointHitDto) ||
+                !(request.getAttribute(REQUEST_START_ATTRIBUTE) instanceof Long startNanos)) {
+            return;
+        }
+        request.removeAttribute(PENDING_HIT_ATTRIBUTE);
+        endpointHitDto.setLatencyMicros((System.nanoTime() - startNanos) / 1_000);
+        send(endpointHitDto);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (asyncHitSender != null) {
+            asyncHitSender.close();
+        }
+        if (hitStreamSender != null) {
+            hitStreamSender.close();
+        }
+        if (spoolReplayer != null) {
+            spoolReplayer.close();
+        }
+        if (hitSpool != null) {
+            hitSpool.close();
+        }
+        if (queryExecutor != null) {
+            queryExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Returns an empty list when a stat server fails; with several shards the results of the others are dropped as
+     * well, a part of the hits would look like complete statistics.
+     */
+    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end,
+                                       List<String> uris, boolean unique) {
+        try {
+            return mergeViewStats(scatter(uris, (shard, shardUris) ->
+                    getStats(shard, start, end, shardUris, unique)));
+        } catch (RestClientException e) {
+            log.error("Getting stats for {} failed", uris, e);
+            return Collections.emptyList();
+        }
+    }
+
+    public List<StatsWindowResultDto> queryStats(List<String> uris, List<StatsWindowDto> windows) {
+        List<List<StatsWindowResultDto>> shardResults;
+        try {
+            shardResults = scatter(uris, (shard, shardUris) -> queryStats(shard, shardUris, windows));
+        } catch (RestClientException e) {
+            log.error("Querying stats for {} uris failed", uris == null ? 0 : uris.size(), e);
+            return Collections.emptyList();
+        }
+        if (shardResults.size() == 1) {
+            return shardResults.getFirst();
+        }
+        for (int shard = 0; shard < shardResults.size(); shard++) {
+            int windowCount = shardResults.get(shard) == null ? 0 : shardResults.get(shard).size();
+            if (windowCount != windows.size()) {
+                log.error("A stat server answered {} of {} windows, the stats of all shards are dropped",
+                        windowCount, windows.size());
+                return Collections.emptyList();
+            }
+        }
+        List<StatsWindowResultDto> results = new ArrayList<>(windows.size());
+        for (int i = 0; i < windows.size(); i++) {
+            StatsWindowResultDto first = shardResults.getFirst().get(i);
+            boolean approximate = false;
+            List<List<ViewStatsDto>> stats = new ArrayList<>(shardResults.size());
+            for (List<StatsWindowResultDto> shardResult : shardResults) {
+                approximate |= shardResult.get(i).isApproximate();
+                stats.add(shardResult.get(i).getStats());
+            }
+            results.add(StatsWindowResultDto.builder()
+                    .start(first.getStart())
+                    .end(first.getEnd())
+                    .unique(first.isUnique())
+                    .approximate(approximate)
+                    .stats(mergeViewStats(stats))
+                    .build());
+        }
+        return results;
+    }
+
+    public List<LatencyStatsDto> getLatency(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        List<LatencyStatsDto> latencyStats = new ArrayList<>();
+        try {
+            scatter(uris, (shard, shardUris) -> getLatency(shard, start, end, shardUris))
+                    .forEach(latencyStats::addAll);
+        } catch (RestClientException e) {
+            log.error("Getting latency for {} failed", uris, e);
+            return Collections.emptyList();
+        }
+        latencyStats.sort(Comparator.comparingLong(LatencyStatsDto::getP99Micros).reversed());
+        return latencyStats;
+    }
+
+    private List<ViewStatsDto> getStats(RestClient restClient, LocalDateTime start, LocalDateTime end,
+                                        List<String> uris, boolean unique) {
+        log.info("Getting stats for {}", uris);
+        return restClient.get()
+                .uri(uriBuilder ->
+                        uriBuilder.path("/stats")
+                                .queryParam("start", start.format(FORMATTER))
+                                .queryParam("end", end.format(FORMATTER))
+                                .queryParam("uris", uris)
+                                .queryParam("unique", unique)
+                                .build())
+                .accept(mediaType)
+                .retrieve()
+                .onStatus(HttpStatusCode::is4xxClientError,
+                        (request, response) ->
+                                log.error("Getting stats for {} with error code {}", uris, response.getStatusCode()))
+                .body(new ParameterizedTypeReference<>() {
+                });
+    }
+
+    private List<StatsWindowResultDto> queryStats(RestClient restClient, List<String> uris,
+                                                  List<StatsWindowDto> windows) {
+        log.info("Querying stats for {} uris in {} windows", uris == null ? 0 : uris.size(), windows.size());
+        return restClient.post()
+                .uri("/stats/query")
+                .contentType(mediaType)
+                .accept(mediaType)
+                .body(new StatsQueryDto(uris, windows))
+                .retrieve()
+                .onStatus(HttpStatusCode::is4xxClientError,
+                        (request, response) ->
+                                log.error("Querying stats for {} uris with error code {}", uris.size(),
+                                        response.getStatusCode()))
+                .body(new ParameterizedTypeReference<>() {
+                });
+    }
+
+    private List<LatencyStatsDto> getLatency(RestClient restClient, LocalDateTime start, LocalDateTime end,
+                                             List<String> uris) {
+        log.info("Getting latency for {}", uris);
+        return restClient.get()
+                .uri(uriBuilder ->
+                        uriBuilder.path("/stats/latency")
+                                .queryParam("start", start.format(FORMATTER))
+                                .queryParam("end", end.format(FORMATTER))
+                                .queryParam("uris", uris)
+                                .build())
+                .accept(mediaType)
+                .retrieve()
+                .body(new ParameterizedTypeReference<>() {
+                });
+    }
+
+    /**
+     * Sends the query to the shards owning the uris, each with its own uris, and returns the results in shard order.
+     * Uri patterns and queries for all uris can match uris of every shard and go to all of them. The failure of any
+     * shard is thrown, the results of the others are not returned without it.
+     */
+    private <T> List<T> scatter(List<String> uris, BiFunction<RestClient, List<String>, T> query) {
+        if (shards.size() == 1) {
+            return List.of(query.apply(shards.getFirst(), uris));
+        }
+        Map<Integer, List<String>> urisByShard = new TreeMap<>();
+        if (uris == null || uris.isEmpty() || uris.stream().anyMatch(uri -> uri.indexOf('*') >= 0)) {
+            for (int shard = 0; shard < shards.size(); shard++) {
+                urisByShard.put(shard, uris);
+            }
+        } else {
+            for (String uri : uris) {
+                urisByShard.computeIfAbsent(shardRing.nodeFor(uri), shard -> new ArrayList<>()).add(uri);
+            }
+        }
+        Map<Integer, Future<T>> futures = new TreeMap<>();
+        urisByShard.forEach((shard, shardUris) -> futures.put(shard, queryExecutor.submit(() ->
+                query.apply(shards.get(shard), shardUris))));
+        List<T> results = new ArrayList<>(futures.size());
+        for (Map.Entry<Integer, Future<T>> future : futures.entrySet()) {
+            try {
+                results.add(future.getValue().get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while querying the stat servers", e);
+            } catch (ExecutionException e) {
+                futures.values().forEach(pending -> pending.cancel(true));
+                log.error("Querying the stat server {} failed", serverUrls.get(future.getKey()));
+                if (e.getCause() instanceof RestClientException restClientException) {
+                    throw restClientException;
+                }
+                throw new IllegalStateException("Querying a stat server failed", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Sums the hits of every app and uri over the shard results; a uri moved to another shard after a node was added
+     * has hits on both. Unique counts of such a uri are summed as well and may count a visitor twice.
+     */
+    static List<ViewStatsDto> mergeViewStats(List<List<ViewStatsDto>> shardStats) {
+        if (shardStats.size() == 1) {
+            return shardStats.getFirst();
+        }
+        Map<String, ViewStatsDto> merged = new LinkedHashMap<>();
+        for (List<ViewStatsDto> stats : shardStats) {
+            if (stats == null) {
+                continue;
+            }
+            for (ViewStatsDto viewStatsDto : stats) {
+                merged.merge(viewStatsDto.getApp() + ' ' + viewStatsDto.getUri(), viewStatsDto, (first, second) ->
+                        new ViewStatsDto(first.getApp(), first.getUri(), first.getHits() + second.getHits()));
+            }
+        }
+        List<ViewStatsDto> result = new ArrayList<>(merged.values());
+        result.sort(Comparator.comparing(ViewStatsDto::getHits).reversed());
+        return result;
+    }
+
+    /**
+     * In SYNC mode with the spool on, the hit is only appended to the spool and the replayer posts it in a batch, so
+     * the request thread never waits for the stat server.
+     */
+    private void send(EndpointHitDto endpointHitDto) {
+        if (asyncHitSender != null) {
+            asyncHitSender.submit(endpointHitDto);
+        } else if (hitSpool != null) {
+            hitSpool.append(List.of(endpointHitDto));
+        } else {
+            postHit(endpointHitDto);
+        }
+    }
+
+    private void postHit(EndpointHitDto endpointHitDto) {
+        ResponseEntity<Void> response = shards.get(shardRing.nodeFor(endpointHitDto.getUri())).post()
                 .uri("/hit")
-                .contentType(MediaType.APPLICATION_JSON)
+                .contentType(mediaType)
                 .body(endpointHitDto)
                 .retrieve()
                 .toBodilessEntity();
@@ -43,31 +368,75 @@ public class StatClient {
         } else {
             log.error("Posted hit with error code {}", response.getStatusCode());
         }
-        Thread.sleep(500);
     }
 
-    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end,
-                                       List<String> uris, boolean unique) {
-        log.info("Getting stats for {}", uris);
+    /**
+     * Sends every shard its part of the batch. When only some shards fail, their hits are spooled if the spool is on;
+     * when all of them fail, or without a spool, the failure is thrown.
+     */
+    private void postHits(List<EndpointHitDto> endpointHitDtos) {
+        if (shards.size() == 1) {
+            postHits(shards.getFirst(), endpointHitDtos);
+            return;
+        }
+        Map<Integer, List<EndpointHitDto>> hitsByShard = new TreeMap<>();
+        for (EndpointHitDto endpointHitDto : endpointHitDtos) {
+            hitsByShard.computeIfAbsent(shardRing.nodeFor(endpointHitDto.getUri()), shard -> new ArrayList<>())
+                    .add(endpointHitDto);
+        }
+        RestClientException failure = null;
+        List<EndpointHitDto> undelivered = new ArrayList<>();
+        for (Map.Entry<Integer, List<EndpointHitDto>> entry : hitsByShard.entrySet()) {
+            try {
+                postHits(shards.get(entry.getKey()), entry.getValue());
+            } catch (RestClientException e) {
+                failure = e;
+                undelivered.addAll(entry.getValue());
+            }
+        }
+        if (failure == null) {
+            return;
+        }
+        if (hitSpool == null || undelivered.size() == endpointHitDtos.size()) {
+            throw failure;
+        }
+        spoolOrRethrow(undelivered, failure);
+    }
+
+    private void postHits(RestClient restClient, List<EndpointHitDto> endpointHitDtos) {
+        List<EndpointHitDto> batch = coalesceHits ? HitCoalescer.coalesce(endpointHitDtos) : endpointHitDtos;
+        log.info("Sending a batch of {} hits as {} records", endpointHitDtos.size(), batch.size());
+        restClient.post()
+                .uri("/hit/batch")
+                .contentType(mediaType)
+                .body(batch)
+                .retrieve()
+                .toBodilessEntity();
+    }
+
+    private void streamHits(List<EndpointHitDto> endpointHitDtos) {
+        hitStreamSender.send(coalesceHits ? HitCoalescer.coalesce(endpointHitDtos) : endpointHitDtos);
+    }
+
+    private void logLostHits(List<EndpointHitDto> endpointHitDtos) {
+        log.error("{} streamed hits could not be delivered and are lost", endpointHitDtos.size());
+    }
+
+    private void postHitsOrSpool(List<EndpointHitDto> endpointHitDtos) {
         try {
-            return restClient.get()
-                    .uri(uriBuilder ->
-                            uriBuilder.path("/stats")
-                                    .queryParam("start", start.format(FORMATTER))
-                                    .queryParam("end", end.format(FORMATTER))
-                                    .queryParam("uris", uris)
-                                    .queryParam("unique", unique)
-                                    .build())
-                    .retrieve()
-                    .onStatus(HttpStatusCode::is4xxClientError,
-                            (request, response) ->
-                                    log.error("Getting stats for {} with error code {}", uris, response.getStatusCode()))
-                    .body(new ParameterizedTypeReference<>() {
-                    });
-        } catch (Exception e) {
-            log.error("Getting stats for {} failed", uris, e);
-            return Collections.emptyList();
+            postHits(endpointHitDtos);
+        } catch (RestClientException e) {
+            spoolOrRethrow(endpointHitDtos, e);
+        }
+    }
+
+    private void spoolOrRethrow(List<EndpointHitDto> endpointHitDtos, RestClientException e) {
+        if (!(e instanceof ResourceAccessException) && !(e instanceof HttpServerErrorException)) {
+            throw e;
         }
+        log.warn("The stat server is unavailable, {} hits have been spooled: {}", endpointHitDtos.size(),
+                e.getMessage());
+        hitSpool.append(endpointHitDtos);
     }
 
     private EndpointHitDto toDto(String app, HttpServletRequest request) {
@@ -0,0 +1,151 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncHitSenderTest {
+    private static final long LONG_FLUSH_INTERVAL_MILLIS = 10_000;
+
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+    private final CountDownLatch firstBatchStarted = new CountDownLatch(1);
+    private final CountDownLatch firstBatchReleased = new CountDownLatch(1);
+    private AsyncHitSender asyncHitSender;
+
+    @AfterEach
+    void tearDown() {
+        firstBatchReleased.countDown();
+        if (asyncHitSender != null) {
+            asyncHitSender.close();
+        }
+    }
+
+    @Test
+    void dropOldestReplacesTheOldestQueuedHitWhenTheQueueIsFull() throws InterruptedException {
+        asyncHitSender = blockingSender(OverflowPolicy.DROP_OLDEST);
+        asyncHitSender.submit(hit("/0"));
+        assertTrue(firstBatchStarted.await(10, TimeUnit.SECONDS));
+
+        asyncHitSender.submit(hit("/1"));
+        asyncHitSender.submit(hit("/2"));
+        asyncHitSender.submit(hit("/3"));
+
+        assertEquals(1, asyncHitSender.getDroppedHits());
+        firstBatchReleased.countDown();
+        asyncHitSender.close();
+        assertEquals(List.of("/0", "/2", "/3"), batches.stream().flatMap(List::stream).toList());
+    }
+
+    @Test
+    void blockWaitsForAFreeSlotInsteadOfDropping() throws InterruptedException {
+        asyncHitSender = blockingSender(OverflowPolicy.BLOCK);
+        asyncHitSender.submit(hit("/0"));
+        assertTrue(firstBatchStarted.await(10, TimeUnit.SECONDS));
+        asyncHitSender.submit(hit("/1"));
+        asyncHitSender.submit(hit("/2"));
+
+        Thread producer = Thread.ofPlatform().start(() -> asyncHitSender.submit(hit("/3")));
+        await(() -> producer.getState() == Thread.State.WAITING);
+        assertEquals(2, asyncHitSender.getQueueSize());
+
+        firstBatchReleased.countDown();
+        producer.join(TimeUnit.SECONDS.toMillis(10));
+        asyncHitSender.close();
+        assertEquals(0, asyncHitSender.getDroppedHits());
+        assertEquals(List.of("/0", "/1", "/2", "/3"), batches.stream().flatMap(List::stream).toList());
+    }
+
+    @Test
+    void fullBatchIsSentWithoutWaitingForTheFlushInterval() throws InterruptedException {
+        asyncHitSender = sender(3, LONG_FLUSH_INTERVAL_MILLIS);
+
+        List.of("/0", "/1", "/2", "/3").forEach(uri -> asyncHitSender.submit(hit(uri)));
+
+        await(() -> !batches.isEmpty());
+        assertEquals(List.of("/0", "/1", "/2"), batches.getFirst());
+    }
+
+    @Test
+    void partialBatchIsSentOnceTheFlushIntervalHasPassed() throws InterruptedException {
+        asyncHitSender = sender(100, 50);
+
+        asyncHitSender.submit(hit("/0"));
+        asyncHitSender.submit(hit("/1"));
+
+        await(() -> batches.stream().mapToInt(List::size).sum() == 2);
+    }
+
+    @Test
+    void closeSendsTheHitsThatAreStillQueued() throws InterruptedException {
+        asyncHitSender = blockingSender(OverflowPolicy.BLOCK);
+        asyncHitSender.submit(hit("/0"));
+        assertTrue(firstBatchStarted.await(10, TimeUnit.SECONDS));
+        asyncHitSender.submit(hit("/1"));
+        asyncHitSender.submit(hit("/2"));
+
+        firstBatchReleased.countDown();
+        asyncHitSender.close();
+
+        assertEquals(List.of("/0", "/1", "/2"), batches.stream().flatMap(List::stream).toList());
+    }
+
+    @Test
+    void closeSendsTheHitsOfTheBatchBeingCollected() throws InterruptedException {
+        asyncHitSender = sender(100, LONG_FLUSH_INTERVAL_MILLIS);
+        List.of("/0", "/1", "/2", "/3", "/4").forEach(uri -> asyncHitSender.submit(hit(uri)));
+        await(() -> asyncHitSender.getQueueSize() == 0);
+
+        asyncHitSender.close();
+
+        assertEquals(List.of("/0", "/1", "/2", "/3", "/4"), batches.stream().flatMap(List::stream).toList());
+    }
+
+    /**
+     * Builds a sender with room for two queued hits whose first batch does not complete until released, so the
+     * queue fills up deterministically behind it.
+     */
+    private AsyncHitSender blockingSender(OverflowPolicy overflowPolicy) {
+        return new AsyncHitSender(2, 1, LONG_FLUSH_INTERVAL_MILLIS, overflowPolicy, batch -> {
+            batches.add(batch.stream().map(EndpointHitDto::getUri).toList());
+            if (batches.size() == 1) {
+                firstBatchStarted.countDown();
+                try {
+                    firstBatchReleased.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, null);
+    }
+
+    private AsyncHitSender sender(int batchSize, long flushIntervalMillis) {
+        return new AsyncHitSender(100, batchSize, flushIntervalMillis, OverflowPolicy.BLOCK,
+                batch -> batches.add(batch.stream().map(EndpointHitDto::getUri).toList()), null);
+    }
+
+    private static EndpointHitDto hit(String uri) {
+        EndpointHitDto endpointHitDto = new EndpointHitDto();
+        endpointHitDto.setApp("ewm");
+        endpointHitDto.setUri(uri);
+        endpointHitDto.setIp("10.0.0.1");
+        endpointHitDto.setTimestamp(LocalDateTime.of(2024, 1, 1, 0, 0));
+        return endpointHitDto;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
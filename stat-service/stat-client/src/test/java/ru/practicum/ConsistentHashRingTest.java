@@ -0,0 +1,62 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+    private static final List<String> NODES = List.of("http://stats-1:9090", "http://stats-2:9090",
+            "http://stats-3:9090");
+    private static final List<String> KEYS = IntStream.range(0, 10_000).mapToObj(i -> "/events/" + i).toList();
+
+    @Test
+    void sameNodesMapKeysTheSameWay() {
+        ConsistentHashRing first = new ConsistentHashRing(NODES, 128);
+        ConsistentHashRing second = new ConsistentHashRing(NODES, 128);
+
+        for (String key : KEYS) {
+            assertEquals(first.nodeFor(key), second.nodeFor(key));
+        }
+    }
+
+    @Test
+    void addedNodeTakesOnlyItsShareOfTheKeys() {
+        ConsistentHashRing before = new ConsistentHashRing(NODES, 128);
+        List<String> nodes = new ArrayList<>(NODES);
+        nodes.add("http://stats-4:9090");
+        ConsistentHashRing after = new ConsistentHashRing(nodes, 128);
+
+        int moved = 0;
+        for (String key : KEYS) {
+            int node = after.nodeFor(key);
+            if (node != before.nodeFor(key)) {
+                assertEquals(3, node, "a key moved between the old nodes");
+                moved++;
+            }
+        }
+        assertTrue(moved > KEYS.size() / 8 && moved < KEYS.size() * 3 / 8, moved + " keys moved");
+    }
+
+    @Test
+    void keysAreSpreadOverAllNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, 128);
+        int[] counts = new int[NODES.size()];
+
+        KEYS.forEach(key -> counts[ring.nodeFor(key)]++);
+
+        for (int count : counts) {
+            assertTrue(count > KEYS.size() / 5 && count < KEYS.size() / 2, count + " keys on one node");
+        }
+    }
+
+    @Test
+    void ringWithoutNodesIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(List.of(), 128));
+    }
+}
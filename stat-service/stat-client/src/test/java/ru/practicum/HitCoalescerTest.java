@@ -0,0 +1,107 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class HitCoalescerTest {
+    @Test
+    void hitsOfOneKeyWithinASecondAreMergedAndTheirWeightsSummed() {
+        List<EndpointHitDto> coalesced = HitCoalescer.coalesce(List.of(
+                hit("/events/1", "10:00:00.100"),
+                hit("/events/2", "10:00:00.200"),
+                hit("/events/1", "10:00:00.900").toBuilder().hits(3).build(),
+                hit("/events/1", "10:00:00.300").toBuilder().ip("10.0.0.2").build()));
+
+        assertEquals(List.of("/events/1@10.0.0.1=4", "/events/2@10.0.0.1=1", "/events/1@10.0.0.2=1"),
+                format(coalesced));
+        assertEquals(time("10:00:00.100"), coalesced.getFirst().getTimestamp());
+    }
+
+    @Test
+    void hitsOnTheSecondAreNotMergedWithHitsInsideIt() {
+        List<EndpointHitDto> coalesced = HitCoalescer.coalesce(List.of(
+                hit("/events/1", "10:00:00"),
+                hit("/events/1", "10:00:00.500"),
+                hit("/events/1", "10:00:00"),
+                hit("/events/1", "10:00:01.500"),
+                hit("/events/1", "10:00:00.700")));
+
+        assertEquals(List.of("/events/1@10.0.0.1=2", "/events/1@10.0.0.1=2", "/events/1@10.0.0.1=1"),
+                format(coalesced));
+        assertEquals(List.of(time("10:00:00"), time("10:00:00.500"), time("10:00:01.500")),
+                coalesced.stream().map(EndpointHitDto::getTimestamp).toList());
+    }
+
+    @Test
+    void everyLatencySampleOfTheMergedHitsIsKept() {
+        List<EndpointHitDto> coalesced = HitCoalescer.coalesce(List.of(
+                hit("/events/1", "10:00:00.100").toBuilder().hits(2).latencyMicros(1000L).build(),
+                hit("/events/1", "10:00:00.200"),
+                hit("/events/1", "10:00:00.300").toBuilder().latencyMicros(2000L).build(),
+                hit("/events/1", "10:00:00.400").toBuilder().latenciesMicros(List.of(3000L, 4000L)).hits(2).build()));
+
+        assertEquals(1, coalesced.size());
+        EndpointHitDto merged = coalesced.getFirst();
+        assertEquals(6, merged.getHits());
+        assertNull(merged.getLatencyMicros());
+        assertEquals(List.of(1000L, 1000L, 2000L, 3000L, 4000L), merged.getLatenciesMicros());
+    }
+
+    @Test
+    void hitsWithoutLatencyAreMergedWithoutSamples() {
+        List<EndpointHitDto> coalesced = HitCoalescer.coalesce(List.of(
+                hit("/events/1", "10:00:00.100"),
+                hit("/events/1", "10:00:00.200")));
+
+        assertEquals(1, coalesced.size());
+        assertNull(coalesced.getFirst().getLatencyMicros());
+        assertNull(coalesced.getFirst().getLatenciesMicros());
+    }
+
+    @Test
+    void inputHitsAreNotModified() {
+        List<Long> latencies = new ArrayList<>(List.of(1000L));
+        EndpointHitDto first = hit("/events/1", "10:00:00.100").toBuilder().latenciesMicros(latencies).build();
+        EndpointHitDto second = hit("/events/1", "10:00:00.200").toBuilder().latencyMicros(2000L).build();
+
+        HitCoalescer.coalesce(List.of(first, second));
+
+        assertNull(first.getHits());
+        assertEquals(List.of(1000L), first.getLatenciesMicros());
+        assertEquals(2000L, second.getLatencyMicros());
+    }
+
+    @Test
+    void batchWithoutMergeableHitsIsReturnedAsIs() {
+        List<EndpointHitDto> endpointHitDtos = List.of(hit("/events/1", "10:00:00.100"),
+                hit("/events/1", "10:00:01.100"));
+
+        assertSame(endpointHitDtos, HitCoalescer.coalesce(endpointHitDtos));
+    }
+
+    private static EndpointHitDto hit(String uri, String time) {
+        return EndpointHitDto.builder()
+                .app("ewm")
+                .uri(uri)
+                .ip("10.0.0.1")
+                .timestamp(time(time))
+                .build();
+    }
+
+    private static LocalDateTime time(String time) {
+        return LocalDateTime.parse("2024-01-01T" + time);
+    }
+
+    private static List<String> format(List<EndpointHitDto> endpointHitDtos) {
+        return endpointHitDtos.stream()
+                .map(hit -> hit.getUri() + "@" + hit.getIp() + "=" + (hit.getHits() == null ? 1 : hit.getHits()))
+                .toList();
+    }
+}
@@ -0,0 +1,137 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HitSpoolTest {
+    private static final int SEGMENT_SIZE = 1024;
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void readHitsStayUntilAcknowledged() {
+        try (HitSpool hitSpool = new HitSpool(directory, SEGMENT_SIZE, 4L * SEGMENT_SIZE, meterRegistry)) {
+            hitSpool.append(hits(0, 3));
+
+            HitSpool.SpoolBatch first = hitSpool.read(2);
+            assertEquals(hits(0, 2), first.hits());
+            assertEquals(hits(0, 2), hitSpool.read(2).hits());
+
+            hitSpool.acknowledge(first);
+            HitSpool.SpoolBatch second = hitSpool.read(10);
+            assertEquals(hits(2, 3), second.hits());
+            assertFalse(hitSpool.isEmpty());
+
+            hitSpool.acknowledge(second);
+            assertTrue(hitSpool.isEmpty());
+            assertTrue(hitSpool.read(10).hits().isEmpty());
+        }
+    }
+
+    @Test
+    void unacknowledgedHitsSurviveARestart() {
+        try (HitSpool hitSpool = new HitSpool(directory, SEGMENT_SIZE, 4L * SEGMENT_SIZE, meterRegistry)) {
+            hitSpool.append(hits(0, 3));
+            hitSpool.acknowledge(hitSpool.read(1));
+        }
+
+        try (HitSpool hitSpool = new HitSpool(directory, SEGMENT_SIZE, 4L * SEGMENT_SIZE, meterRegistry)) {
+            assertEquals(hits(1, 3), hitSpool.read(10).hits());
+            hitSpool.append(hits(3, 4));
+            hitSpool.acknowledge(hitSpool.read(2));
+            assertEquals(hits(3, 4), hitSpool.read(10).hits());
+        }
+    }
+
+    @Test
+    void oldestSegmentIsDroppedOverTheDiskBudget() {
+        try (HitSpool hitSpool = new HitSpool(directory, SEGMENT_SIZE, 2L * SEGMENT_SIZE, meterRegistry)) {
+            hitSpool.append(hits(0, 100));
+
+            assertEquals(2, hitSpool.getSegmentCount());
+            double dropped = meterRegistry.counter("stat.client.spool.dropped").count();
+            assertTrue(dropped > 0);
+            List<EndpointHitDto> remaining = readAll(hitSpool);
+            assertEquals(hits((int) dropped, 100), remaining);
+        }
+    }
+
+    @Test
+    void tornRecordIsCutOffOnRestart() throws IOException {
+        try (HitSpool hitSpool = new HitSpool(directory, SEGMENT_SIZE, 4L * SEGMENT_SIZE, meterRegistry)) {
+            hitSpool.append(hits(0, 3));
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer writePosition = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(writePosition, 4);
+            long lastByte = writePosition.flip().getInt() - 1;
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, lastByte);
+            // as if the page with the end of the last record never reached the disk
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) ~value.get(0)}), lastByte);
+        }
+
+        try (HitSpool hitSpool = new HitSpool(directory, SEGMENT_SIZE, 4L * SEGMENT_SIZE, meterRegistry)) {
+            assertEquals(hits(0, 2), hitSpool.read(10).hits());
+            hitSpool.append(hits(3, 4));
+            assertEquals(Stream.concat(hits(0, 2).stream(), hits(3, 4).stream()).toList(), readAll(hitSpool));
+        }
+    }
+
+    private static List<EndpointHitDto> readAll(HitSpool hitSpool) {
+        List<EndpointHitDto> endpointHitDtos = new ArrayList<>();
+        for (HitSpool.SpoolBatch batch = hitSpool.read(7); !batch.hits().isEmpty(); batch = hitSpool.read(7)) {
+            endpointHitDtos.addAll(batch.hits());
+            hitSpool.acknowledge(batch);
+        }
+        return endpointHitDtos;
+    }
+
+    @Test
+    void undecodableRecordsAreDroppedInsteadOfBlockingTheSpool() throws IOException {
+        SpoolSegment segment = SpoolSegment.create(directory.resolve(String.format("%019d.spool", 0)), SEGMENT_SIZE);
+        segment.append(new byte[]{1, 2, 3});
+        segment.append(new byte[]{1});
+        segment.force();
+
+        try (HitSpool hitSpool = new HitSpool(directory, SEGMENT_SIZE, 4L * SEGMENT_SIZE, meterRegistry)) {
+            assertTrue(hitSpool.read(10).hits().isEmpty());
+            assertTrue(hitSpool.isEmpty());
+            assertEquals(2.0, meterRegistry.counter("stat.client.spool.dropped").count());
+
+            hitSpool.append(hits(0, 2));
+            assertEquals(hits(0, 2), hitSpool.read(10).hits());
+        }
+    }
+
+    static List<EndpointHitDto> hits(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(i -> new EndpointHitDto("ewm-main-service", "/events/" + i, "10.0.0." + (i % 250),
+                        LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(i), null, null, null))
+                .toList();
+    }
+}
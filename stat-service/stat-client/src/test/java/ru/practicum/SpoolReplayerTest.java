@@ -0,0 +1,69 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.practicum.HitSpoolTest.hits;
+
+class SpoolReplayerTest {
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void failedDeliveryIsRetriedAndThenAcknowledged() throws InterruptedException {
+        List<List<EndpointHitDto>> deliveries = new CopyOnWriteArrayList<>();
+        AtomicInteger attempts = new AtomicInteger();
+        try (HitSpool hitSpool = new HitSpool(directory, 1024, 4096, meterRegistry)) {
+            hitSpool.append(hits(0, 3));
+            try (SpoolReplayer ignored = new SpoolReplayer(hitSpool, 10, 10, endpointHitDtos -> {
+                if (attempts.incrementAndGet() == 1) {
+                    throw new ResourceAccessException("Connection refused");
+                }
+                deliveries.add(endpointHitDtos);
+            }, meterRegistry)) {
+                awaitEmpty(hitSpool);
+            }
+        }
+
+        assertEquals(List.of(hits(0, 3)), deliveries);
+        assertEquals(2, attempts.get());
+        assertEquals(3, meterRegistry.counter("stat.client.spool.replayed").count());
+    }
+
+    @Test
+    void rejectedBatchIsDropped() throws InterruptedException {
+        try (HitSpool hitSpool = new HitSpool(directory, 1024, 4096, meterRegistry)) {
+            hitSpool.append(hits(0, 3));
+            try (SpoolReplayer ignored = new SpoolReplayer(hitSpool, 2, 10, endpointHitDtos -> {
+                throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+            }, meterRegistry)) {
+                awaitEmpty(hitSpool);
+            }
+        }
+
+        assertEquals(3, meterRegistry.counter("stat.client.spool.dropped").count());
+        assertEquals(0, meterRegistry.counter("stat.client.spool.replayed").count());
+    }
+
+    private static void awaitEmpty(HitSpool hitSpool) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!hitSpool.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(hitSpool.isEmpty());
+    }
+}
@@ -0,0 +1,173 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatClientTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime END = START.plusDays(1);
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<HttpServer> servers = new ArrayList<>();
+    private StatClient statClient;
+
+    @AfterEach
+    void tearDown() {
+        if (statClient != null) {
+            statClient.close();
+        }
+        servers.forEach(server -> server.stop(0));
+    }
+
+    @Test
+    void mergeViewStatsSumsEveryAppAndUriAndSortsByHits() {
+        List<ViewStatsDto> merged = StatClient.mergeViewStats(List.of(
+                List.of(new ViewStatsDto("ewm", "/events/1", 5L), new ViewStatsDto("ewm", "/events/2", 1L)),
+                List.of(new ViewStatsDto("ewm", "/events/2", 7L), new ViewStatsDto("other", "/events/1", 2L))));
+
+        assertEquals(List.of(new ViewStatsDto("ewm", "/events/2", 8L), new ViewStatsDto("ewm", "/events/1", 5L),
+                new ViewStatsDto("other", "/events/1", 2L)), merged);
+    }
+
+    @Test
+    void statsOfAllShardsAreMerged() throws IOException {
+        String first = shard(exchange -> respond(exchange, List.of(new ViewStatsDto("ewm", "/events/1", 3L))));
+        String second = shard(exchange -> respond(exchange, List.of(new ViewStatsDto("ewm", "/events/2", 4L),
+                new ViewStatsDto("ewm", "/events/1", 2L))));
+        statClient = statClient(StatClientMode.SYNC, false, first, second);
+
+        assertEquals(List.of(new ViewStatsDto("ewm", "/events/1", 5L), new ViewStatsDto("ewm", "/events/2", 4L)),
+                statClient.getStats(START, END, null, false));
+    }
+
+    @Test
+    void failedShardIsNotHiddenBehindAPartialResult() throws IOException {
+        String first = shard(exchange -> respond(exchange, List.of(new ViewStatsDto("ewm", "/events/1", 3L))));
+        String second = shard(exchange -> exchange.sendResponseHeaders(503, -1));
+        statClient = statClient(StatClientMode.SYNC, false, first, second);
+
+        assertEquals(List.of(), statClient.getStats(START, END, null, false));
+        assertEquals(List.of(), statClient.getLatency(START, END, null));
+    }
+
+    @Test
+    void shardAnsweringFewerWindowsDropsTheQuery() throws IOException {
+        StatsWindowResultDto window = new StatsWindowResultDto(START, END, false, false,
+                List.of(new ViewStatsDto("ewm", "/events/1", 3L)));
+        String first = shard(exchange -> respond(exchange, List.of(window, window)));
+        String second = shard(exchange -> respond(exchange, List.of(window)));
+        statClient = statClient(StatClientMode.SYNC, false, first, second);
+
+        List<StatsWindowDto> windows = List.of(new StatsWindowDto(START, END, false, false),
+                new StatsWindowDto(START, END, true, false));
+        assertEquals(List.of(), statClient.queryStats(null, windows));
+    }
+
+    @Test
+    void hitsOfAFailedShardAreSpooledAndTheOthersDelivered() throws IOException, InterruptedException {
+        List<EndpointHitDto> delivered = new CopyOnWriteArrayList<>();
+        String first = shard(exchange -> {
+            delivered.addAll(objectMapper.readValue(exchange.getRequestBody(), new TypeReference<>() {
+            }));
+            exchange.sendResponseHeaders(201, -1);
+        });
+        String second = shard(exchange -> exchange.sendResponseHeaders(503, -1));
+        statClient = statClient(StatClientMode.ASYNC, true, first, second);
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(first, second), 128);
+        List<String> uris = IntStream.range(0, 20).mapToObj(i -> "/events/" + i).toList();
+
+        uris.forEach(uri -> {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+            request.setRemoteAddr("10.0.0.1");
+            statClient.saveHit("ewm", request);
+        });
+
+        List<String> firstUris = uris.stream().filter(uri -> ring.nodeFor(uri) == 0).toList();
+        long secondHits = uris.size() - firstUris.size();
+        assertTrue(!firstUris.isEmpty() && secondHits > 0);
+        await(() -> meterRegistry.counter("stat.client.spool.spooled").count() == secondHits);
+        assertEquals(firstUris, delivered.stream().map(EndpointHitDto::getUri).toList());
+    }
+
+    @Test
+    void syncHitsGoToTheSpoolWithoutWaitingForTheServer() throws IOException {
+        List<HttpExchange> requests = new CopyOnWriteArrayList<>();
+        String server = shard(exchange -> {
+            requests.add(exchange);
+            exchange.sendResponseHeaders(201, -1);
+        });
+        statClient = statClient(StatClientMode.SYNC, true, server);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/events/1");
+        request.setRemoteAddr("10.0.0.1");
+        statClient.saveHit("ewm", request);
+
+        assertEquals(1.0, meterRegistry.counter("stat.client.spool.spooled").count());
+        assertEquals(List.of(), requests);
+    }
+
+    private StatClient statClient(StatClientMode mode, boolean spoolEnabled, String... serverUrls) {
+        return new StatClient(Arrays.asList(serverUrls), 128, mode, 100, 20, 50, OverflowPolicy.DROP_OLDEST,
+                StatClientWireFormat.JSON, 2000, false, 100, 1000, spoolEnabled, directory, 4096, 8192, 60_000,
+                meterRegistry);
+    }
+
+    private String shard(Handler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                handler.handle(exchange);
+            }
+        });
+        server.start();
+        servers.add(server);
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private void respond(HttpExchange exchange, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsString(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+}
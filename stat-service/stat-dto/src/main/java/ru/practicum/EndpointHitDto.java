@@ -1,16 +1,20 @@
 package ru.practicum;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class EndpointHitDto {
@@ -23,4 +27,15 @@ public class EndpointHitDto {
     @NotNull
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = Constants.DATE_TIME_FORMAT)
     LocalDateTime timestamp;
+    @Positive
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    Integer hits;
+    @PositiveOrZero
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    Long latencyMicros;
+    /**
+     * The latencies of the hits merged into this one, each of them counted once; used instead of latencyMicros.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    List<@NotNull @PositiveOrZero Long> latenciesMicros;
 }
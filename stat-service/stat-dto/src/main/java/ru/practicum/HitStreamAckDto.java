@@ -0,0 +1,16 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HitStreamAckDto {
+    long acked;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    String error;
+}
@@ -0,0 +1,14 @@
+package ru.practicum;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IpStatsDto {
+    String ip;
+    long hits;
+}
@@ -0,0 +1,19 @@
+package ru.practicum;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LatencyStatsDto {
+    String app;
+    String uri;
+    long count;
+    long p50Micros;
+    long p95Micros;
+    long p99Micros;
+    long maxMicros;
+}
@@ -0,0 +1,52 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * The CBOR mapper shared by the stat client and server. Timestamps travel as epoch milliseconds of the wall-clock
+ * time read as UTC, so both sides get back the {@link LocalDateTime} that was sent, truncated to the millisecond.
+ */
+public class StatsCborMapper extends CBORMapper {
+    public StatsCborMapper() {
+        configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        registerModule(new SimpleModule("stats-cbor")
+                .addSerializer(LocalDateTime.class, new EpochMillisSerializer())
+                .addDeserializer(LocalDateTime.class, new EpochMillisDeserializer()));
+    }
+
+    private static class EpochMillisSerializer extends StdScalarSerializer<LocalDateTime> {
+        EpochMillisSerializer() {
+            super(LocalDateTime.class);
+        }
+
+        @Override
+        public void serialize(LocalDateTime value, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeNumber(value.toInstant(ZoneOffset.UTC).toEpochMilli());
+        }
+    }
+
+    private static class EpochMillisDeserializer extends StdScalarDeserializer<LocalDateTime> {
+        EpochMillisDeserializer() {
+            super(LocalDateTime.class);
+        }
+
+        @Override
+        public LocalDateTime deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(parser.getLongValue()), ZoneOffset.UTC);
+        }
+    }
+}
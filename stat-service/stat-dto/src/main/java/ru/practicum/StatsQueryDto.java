@@ -0,0 +1,23 @@
+package ru.practicum;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatsQueryDto {
+    @NotEmpty
+    List<@NotBlank String> uris;
+    @NotEmpty
+    @Size(max = 100)
+    List<@Valid StatsWindowDto> windows;
+}
@@ -0,0 +1,15 @@
+package ru.practicum;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ViewSeriesDto {
+    String app;
+    String uri;
+    long[] hits;
+}
@@ -0,0 +1,50 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatsCborMapperTest {
+    private final StatsCborMapper statsCborMapper = new StatsCborMapper();
+
+    @Test
+    void hitSurvivesARoundTrip() throws IOException {
+        EndpointHitDto endpointHitDto = new EndpointHitDto("ewm-main-service", "/events/1", "10.0.0.1",
+                LocalDateTime.of(2024, 2, 29, 23, 59, 59, 123_000_000), 3, 1500L, null);
+
+        byte[] bytes = statsCborMapper.writeValueAsBytes(endpointHitDto);
+
+        assertEquals(endpointHitDto, statsCborMapper.readValue(bytes, EndpointHitDto.class));
+    }
+
+    @Test
+    void timestampsKeepTheirWallClockTimeToTheMillisecond() throws IOException {
+        List<LocalDateTime> timestamps = List.of(
+                LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_000_000),
+                LocalDateTime.of(2024, 3, 31, 2, 30),
+                LocalDateTime.of(9999, 12, 31, 23, 59, 59));
+
+        byte[] bytes = statsCborMapper.writeValueAsBytes(timestamps);
+
+        assertEquals(timestamps, statsCborMapper.readValue(bytes, new TypeReference<List<LocalDateTime>>() {
+        }));
+        assertEquals(LocalDateTime.of(2024, 1, 1, 0, 0, 0, 1_000_000), statsCborMapper.readValue(
+                statsCborMapper.writeValueAsBytes(LocalDateTime.of(2024, 1, 1, 0, 0, 0, 1_999_999)),
+                LocalDateTime.class));
+    }
+
+    @Test
+    void windowResultSurvivesARoundTrip() throws IOException {
+        StatsWindowResultDto result = new StatsWindowResultDto(LocalDateTime.of(2024, 1, 1, 0, 0),
+                LocalDateTime.of(2024, 1, 2, 0, 0), true, false, List.of(new ViewStatsDto("ewm", "/events/1", 7L)));
+
+        byte[] bytes = statsCborMapper.writeValueAsBytes(result);
+
+        assertEquals(result, statsCborMapper.readValue(bytes, StatsWindowResultDto.class));
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.Dictionary.model;
+
+public enum DictionaryType {
+    APP("apps", "name"),
+    URI("uris", "uri");
+
+    private final String table;
+    private final String column;
+
+    DictionaryType(String table, String column) {
+        this.table = table;
+        this.column = column;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+}
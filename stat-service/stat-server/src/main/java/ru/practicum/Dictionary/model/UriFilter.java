@@ -0,0 +1,71 @@
+package ru.practicum.Dictionary.model;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The uris a statistics query is restricted to. Exact uris are resolved to ids up front, patterns stay patterns and
+ * are matched against the uris table inside the query, so a pattern over many uris does not become one bind
+ * parameter per uri. The LIKE form of a pattern may select more uris than the pattern, rows it selects are checked
+ * again with {@link #matches}.
+ */
+@Getter
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@ToString(onlyExplicitlyIncluded = true)
+public final class UriFilter {
+    @EqualsAndHashCode.Include
+    @ToString.Include
+    private final List<Integer> uriIds;
+    @EqualsAndHashCode.Include
+    @ToString.Include
+    private final List<String> patterns;
+    @Getter(AccessLevel.NONE)
+    private final Set<Integer> uriIdSet;
+    private final List<UriPattern> uriPatterns;
+
+    private UriFilter(List<Integer> uriIds, List<String> patterns) {
+        this.uriIds = uriIds;
+        this.patterns = patterns;
+        this.uriIdSet = new HashSet<>(uriIds);
+        this.uriPatterns = patterns.stream().map(UriPattern::of).toList();
+    }
+
+    public static UriFilter of(Collection<Integer> uriIds, Collection<String> patterns) {
+        return new UriFilter(uriIds.stream().sorted().distinct().toList(),
+                patterns.stream().sorted().distinct().toList());
+    }
+
+    public static UriFilter ofIds(Collection<Integer> uriIds) {
+        return of(uriIds, List.of());
+    }
+
+    public boolean isEmpty() {
+        return uriIds.isEmpty() && patterns.isEmpty();
+    }
+
+    public boolean hasPatterns() {
+        return !patterns.isEmpty();
+    }
+
+    public boolean matches(int uriId, String uri) {
+        if (uriIdSet.contains(uriId)) {
+            return true;
+        }
+        if (uri == null) {
+            return false;
+        }
+        for (UriPattern uriPattern : uriPatterns) {
+            if (uriPattern.matches(uri)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,85 @@
+package ru.practicum.Dictionary.model;
+
+import lombok.Getter;
+
+import java.util.regex.Pattern;
+
+/**
+ * Ant-style uri pattern: {@code *} matches within one path segment, {@code **} matches across segments,
+ * and a trailing {@code /**} also matches the bare prefix, so {@code /events/**} covers {@code /events}.
+ * The literal text before the first wildcard is the prefix used for the range scan over the sorted dictionary.
+ * The LIKE pattern turns every wildcard into {@code %}; it matches a superset of the uris and lets the database
+ * narrow the candidates before {@link #matches} checks them exactly.
+ */
+public class UriPattern {
+    private static final String ANY_DEPTH_SUFFIX = "/**";
+
+    @Getter
+    private final String pattern;
+    @Getter
+    private final String prefix;
+    @Getter
+    private final String likePattern;
+    private final Pattern regex;
+
+    private UriPattern(String pattern, String prefix, String likePattern, Pattern regex) {
+        this.pattern = pattern;
+        this.prefix = prefix;
+        this.likePattern = likePattern;
+        this.regex = regex;
+    }
+
+    public static boolean isPattern(String uri) {
+        return uri.indexOf('*') >= 0;
+    }
+
+    public static UriPattern of(String pattern) {
+        String body = pattern;
+        String tail = "";
+        if (pattern.endsWith(ANY_DEPTH_SUFFIX)) {
+            body = pattern.substring(0, pattern.length() - ANY_DEPTH_SUFFIX.length());
+            tail = "(/.*)?";
+        }
+
+        StringBuilder regex = new StringBuilder();
+        StringBuilder like = new StringBuilder();
+        int literalStart = 0;
+        for (int i = 0; i < body.length(); i++) {
+            if (body.charAt(i) != '*') {
+                continue;
+            }
+            regex.append(Pattern.quote(body.substring(literalStart, i)));
+            like.append(escapeLike(body.substring(literalStart, i))).append('%');
+            if (i + 1 < body.length() && body.charAt(i + 1) == '*') {
+                regex.append(".*");
+                i++;
+            } else {
+                regex.append("[^/]*");
+            }
+            literalStart = i + 1;
+        }
+        if (literalStart < body.length()) {
+            regex.append(Pattern.quote(body.substring(literalStart)));
+            like.append(escapeLike(body.substring(literalStart)));
+        }
+        regex.append(tail);
+        if (!tail.isEmpty()) {
+            like.append('%');
+        }
+
+        int firstWildcard = body.indexOf('*');
+        String prefix = firstWildcard < 0 ? body : body.substring(0, firstWildcard);
+        return new UriPattern(pattern, prefix, like.toString(), Pattern.compile(regex.toString()));
+    }
+
+    /**
+     * Escapes the LIKE wildcards of a literal for a predicate declared with {@code escape '\'}.
+     */
+    public static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    public boolean matches(String uri) {
+        return regex.matcher(uri).matches();
+    }
+}
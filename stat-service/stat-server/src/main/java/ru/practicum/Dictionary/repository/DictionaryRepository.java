@@ -0,0 +1,52 @@
+package ru.practicum.Dictionary.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.practicum.Dictionary.model.DictionaryType;
+import ru.practicum.config.DatabasePlatform;
+
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+@Repository
+@RequiredArgsConstructor
+public class DictionaryRepository {
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+
+    public void findAll(DictionaryType type, ObjIntConsumer<String> consumer) {
+        jdbcTemplate.query("select id, " + type.getColumn() + " as entry from " + type.getTable(),
+                (RowCallbackHandler) rs -> consumer.accept(rs.getString("entry"), rs.getInt("id")));
+    }
+
+    public void findAfter(DictionaryType type, int afterId, ObjIntConsumer<String> consumer) {
+        jdbcTemplate.query("select id, " + type.getColumn() + " as entry from " + type.getTable() + " where id > ?",
+                (RowCallbackHandler) rs -> consumer.accept(rs.getString("entry"), rs.getInt("id")), afterId);
+    }
+
+    public Integer findId(DictionaryType type, String value) {
+        List<Integer> ids = jdbcTemplate.queryForList("select id from " + type.getTable() + " where " +
+                type.getColumn() + " = ?", Integer.class, value);
+        return ids.isEmpty() ? null : ids.getFirst();
+    }
+
+    public String findValue(DictionaryType type, int id) {
+        List<String> values = jdbcTemplate.queryForList("select " + type.getColumn() + " from " + type.getTable() +
+                " where id = ?", String.class, id);
+        return values.isEmpty() ? null : values.getFirst();
+    }
+
+    public int findOrCreate(DictionaryType type, String value) {
+        if (databasePlatform.isPostgres()) {
+            jdbcTemplate.update("insert into " + type.getTable() + " (" + type.getColumn() + ") values (?) " +
+                    "on conflict do nothing", value);
+        } else {
+            jdbcTemplate.update("merge into " + type.getTable() + " (" + type.getColumn() + ") key (" +
+                    type.getColumn() + ") values (?)", value);
+        }
+        return jdbcTemplate.queryForObject("select id from " + type.getTable() + " where " + type.getColumn() +
+                " = ?", Integer.class, value);
+    }
+}
@@ -0,0 +1,33 @@
+package ru.practicum.Dictionary.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import ru.practicum.Dictionary.model.UriFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders a {@link UriFilter} as a predicate on a uri id column: the exact ids as an in list and the patterns as
+ * LIKE predicates over the uris table, so the number of bind parameters does not grow with the uris a pattern covers.
+ */
+public final class UriFilterSql {
+    private UriFilterSql() {
+    }
+
+    public static String predicate(String column, UriFilter uriFilter, MapSqlParameterSource params) {
+        List<String> predicates = new ArrayList<>();
+        if (!uriFilter.getUriIds().isEmpty()) {
+            params.addValue("uriIds", uriFilter.getUriIds());
+            predicates.add(column + " in (:uriIds)");
+        }
+        if (uriFilter.hasPatterns()) {
+            List<String> likes = new ArrayList<>();
+            for (int i = 0; i < uriFilter.getUriPatterns().size(); i++) {
+                params.addValue("uriLike" + i, uriFilter.getUriPatterns().get(i).getLikePattern());
+                likes.add("u.uri like :uriLike" + i + " escape '\\'");
+            }
+            predicates.add(column + " in (select u.id from uris as u where " + String.join(" or ", likes) + ")");
+        }
+        return predicates.isEmpty() ? "1 = 0" : "(" + String.join(" or ", predicates) + ")";
+    }
+}
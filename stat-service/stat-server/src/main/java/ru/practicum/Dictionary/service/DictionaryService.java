@@ -0,0 +1,161 @@
+package ru.practicum.Dictionary.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.Dictionary.model.DictionaryType;
+import ru.practicum.Dictionary.model.UriFilter;
+import ru.practicum.Dictionary.model.UriPattern;
+import ru.practicum.Dictionary.repository.DictionaryRepository;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.ViewStats.model.ViewStats;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@Slf4j
+public class DictionaryService {
+    private final DictionaryRepository dictionaryRepository;
+    private final TransactionTemplate newTransaction;
+    private final Map<DictionaryType, Map<String, Integer>> ids = new EnumMap<>(DictionaryType.class);
+    private final Map<DictionaryType, Map<Integer, String>> values = new EnumMap<>(DictionaryType.class);
+    private final Map<DictionaryType, AtomicInteger> loadedIds = new EnumMap<>(DictionaryType.class);
+    private final ConcurrentNavigableMap<String, Integer> sortedUris = new ConcurrentSkipListMap<>();
+
+    public DictionaryService(DictionaryRepository dictionaryRepository,
+                             PlatformTransactionManager transactionManager) {
+        this.dictionaryRepository = dictionaryRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (DictionaryType type : DictionaryType.values()) {
+            ids.put(type, type == DictionaryType.URI ? sortedUris : new ConcurrentHashMap<>());
+            values.put(type, new ConcurrentHashMap<>());
+            loadedIds.put(type, new AtomicInteger());
+        }
+    }
+
+    @PostConstruct
+    public void load() {
+        for (DictionaryType type : DictionaryType.values()) {
+            dictionaryRepository.findAll(type, (value, id) -> {
+                register(type, value, id);
+                loadedIds.get(type).accumulateAndGet(id, Math::max);
+            });
+            log.info("Loaded {} entries of the {} dictionary", ids.get(type).size(), type);
+        }
+    }
+
+    public void encode(List<EndpointHit> endpointHits) {
+        for (EndpointHit endpointHit : endpointHits) {
+            endpointHit.setAppId(encode(DictionaryType.APP, endpointHit.getApp()));
+            endpointHit.setUriId(encode(DictionaryType.URI, endpointHit.getUri()));
+        }
+    }
+
+    public int encode(DictionaryType type, String value) {
+        Integer id = ids.get(type).get(value);
+        if (id == null) {
+            id = newTransaction.execute(status -> dictionaryRepository.findOrCreate(type, value));
+            register(type, value, id);
+        }
+        return id;
+    }
+
+    public String decode(DictionaryType type, int id) {
+        String value = values.get(type).get(id);
+        if (value == null) {
+            value = dictionaryRepository.findValue(type, id);
+            if (value != null) {
+                register(type, value, id);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Resolves the exact uris to ids and keeps the patterns as they are; the queries match them against the uris
+     * table, so a pattern is never expanded to every uri it covers.
+     */
+    public UriFilter findUriFilter(List<String> uris) {
+        List<Integer> uriIds = new ArrayList<>(uris.size());
+        List<String> patterns = new ArrayList<>();
+        for (String uri : uris) {
+            if (UriPattern.isPattern(uri)) {
+                patterns.add(uri);
+                continue;
+            }
+            Integer id = ids.get(DictionaryType.URI).get(uri);
+            if (id == null) {
+                id = dictionaryRepository.findId(DictionaryType.URI, uri);
+                if (id != null) {
+                    register(DictionaryType.URI, uri, id);
+                }
+            }
+            if (id != null) {
+                uriIds.add(id);
+            }
+        }
+        return UriFilter.of(uriIds, patterns);
+    }
+
+    /**
+     * Expands the filter to the ids of every uri it covers, for the segment engine that scans in memory.
+     */
+    public List<Integer> findUriIds(UriFilter uriFilter) {
+        if (!uriFilter.hasPatterns()) {
+            return uriFilter.getUriIds();
+        }
+        loadNew(DictionaryType.URI);
+        Set<Integer> uriIds = new LinkedHashSet<>(uriFilter.getUriIds());
+        for (UriPattern pattern : uriFilter.getUriPatterns()) {
+            String prefix = pattern.getPrefix();
+            sortedUris.subMap(prefix, true, prefix + Character.MAX_VALUE, false).forEach((uri, id) -> {
+                if (pattern.matches(uri)) {
+                    uriIds.add(id);
+                }
+            });
+        }
+        return List.copyOf(uriIds);
+    }
+
+    public List<Integer> findUriIdsByPrefix(String prefix) {
+        loadNew(DictionaryType.URI);
+        return List.copyOf(sortedUris.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values());
+    }
+
+    /**
+     * Checks a uri id selected by the filter's LIKE patterns against the patterns themselves.
+     */
+    public boolean matches(UriFilter uriFilter, int uriId) {
+        return uriFilter.matches(uriId, uriFilter.hasPatterns() ? decode(DictionaryType.URI, uriId) : null);
+    }
+
+    public ViewStats toViewStats(int appId, int uriId, long hits) {
+        return new ViewStats(decode(DictionaryType.APP, appId), decode(DictionaryType.URI, uriId), hits);
+    }
+
+    private void loadNew(DictionaryType type) {
+        AtomicInteger loadedId = loadedIds.get(type);
+        dictionaryRepository.findAfter(type, loadedId.get(), (value, id) -> {
+            register(type, value, id);
+            loadedId.accumulateAndGet(id, Math::max);
+        });
+    }
+
+    private void register(DictionaryType type, String value, int id) {
+        ids.get(type).put(value, id);
+        values.get(type).put(id, value);
+    }
+}
@@ -0,0 +1,188 @@
+package ru.practicum.EndpointHit.buffer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.EndpointHit.service.EndpointHitWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+@Component
+@Slf4j
+public class HitWriteBuffer {
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final EndpointHitWriter endpointHitWriter;
+    private final IngestMode mode;
+    private final IngestDurability durability;
+    private final long flushIntervalNanos;
+    private final int flushSize;
+    private final RingBuffer<PendingHits> ringBuffer;
+    private final AtomicInteger depth = new AtomicInteger();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    public HitWriteBuffer(EndpointHitWriter endpointHitWriter,
+                          MeterRegistry meterRegistry,
+                          @Value("${stat-server.ingest.mode:DIRECT}") IngestMode mode,
+                          @Value("${stat-server.ingest.durability:ACK_AFTER_FLUSH}") IngestDurability durability,
+                          @Value("${stat-server.ingest.buffer-capacity:65536}") int capacity,
+                          @Value("${stat-server.ingest.flush-interval-ms:20}") long flushIntervalMillis,
+                          @Value("${stat-server.ingest.flush-size:1000}") int flushSize) {
+        this.endpointHitWriter = endpointHitWriter;
+        this.mode = mode;
+        this.durability = durability;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.flushSize = flushSize;
+        this.ringBuffer = new RingBuffer<>(capacity);
+        Gauge.builder("stat.ingest.buffer.depth", depth, AtomicInteger::get)
+                .description("Number of hits waiting in the write-behind buffer")
+                .register(meterRegistry);
+        if (mode == IngestMode.BUFFERED) {
+            writerThread = new Thread(this::run, "stat-hit-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+            log.info("Write-behind buffer started with durability {}, flush interval {} ms, flush size {}",
+                    durability, flushIntervalMillis, flushSize);
+        } else {
+            writerThread = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return mode == IngestMode.BUFFERED;
+    }
+
+    /**
+     * Hands the hits to the writer thread. Once the buffer is closed the hits are written directly on the calling
+     * thread; hits offered while it was closing are flushed here, the writer thread may have already exited.
+     */
+    public void write(List<EndpointHit> endpointHits) {
+        PendingHits pendingHits = new PendingHits(endpointHits, new CompletableFuture<>());
+        while (!ringBuffer.offer(pendingHits)) {
+            if (!running) {
+                endpointHitWriter.write(endpointHits);
+                return;
+            }
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(MAX_PARK_NANOS);
+        }
+        if (depth.addAndGet(endpointHits.size()) >= flushSize) {
+            LockSupport.unpark(writerThread);
+        }
+        if (!running) {
+            drainAfterClose();
+        }
+        if (durability == IngestDurability.ACK_AFTER_FLUSH) {
+            awaitFlush(pendingHits.flushed());
+        }
+    }
+
+    public int getDepth() {
+        return depth.get();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writerThread);
+        joinWriterThread();
+    }
+
+    private void joinWriterThread() {
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flushes what is left in the ring buffer after the writer thread has exited. Late producers take turns under
+     * the lock, so the ring buffer keeps a single consumer.
+     */
+    private void drainAfterClose() {
+        joinWriterThread();
+        if (writerThread.isAlive()) {
+            return;
+        }
+        synchronized (ringBuffer) {
+            List<PendingHits> batch = new ArrayList<>();
+            ringBuffer.drainTo(batch, Integer.MAX_VALUE);
+            if (!batch.isEmpty()) {
+                flush(batch, batch.stream().mapToInt(pendingHits -> pendingHits.hits().size()).sum());
+            }
+        }
+    }
+
+    private void run() {
+        List<PendingHits> batch = new ArrayList<>();
+        int batchHits = 0;
+        long lastFlush = System.nanoTime();
+        while (running || ringBuffer.size() > 0) {
+            PendingHits pendingHits = ringBuffer.poll();
+            if (pendingHits != null) {
+                batch.add(pendingHits);
+                batchHits += pendingHits.hits().size();
+            }
+            long sinceLastFlush = System.nanoTime() - lastFlush;
+            boolean due = batchHits >= flushSize || sinceLastFlush >= flushIntervalNanos || !running;
+            if (due && !batch.isEmpty()) {
+                flush(batch, batchHits);
+                batch.clear();
+                batchHits = 0;
+                lastFlush = System.nanoTime();
+            } else if (due) {
+                lastFlush = System.nanoTime();
+            } else if (pendingHits == null) {
+                LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, flushIntervalNanos - sinceLastFlush));
+            }
+        }
+        if (!batch.isEmpty()) {
+            flush(batch, batchHits);
+        }
+    }
+
+    private void flush(List<PendingHits> batch, int batchHits) {
+        List<EndpointHit> endpointHits = new ArrayList<>(batchHits);
+        for (PendingHits pendingHits : batch) {
+            endpointHits.addAll(pendingHits.hits());
+        }
+        try {
+            endpointHitWriter.write(endpointHits);
+            batch.forEach(pendingHits -> pendingHits.flushed().complete(null));
+        } catch (Exception e) {
+            log.error("Group commit of {} statistics records failed", batchHits, e);
+            batch.forEach(pendingHits -> pendingHits.flushed().completeExceptionally(e));
+        } finally {
+            depth.addAndGet(-batchHits);
+        }
+    }
+
+    private void awaitFlush(CompletableFuture<Void> flushed) {
+        try {
+            flushed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the statistics records to be written", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The statistics records could not be written", e.getCause());
+        }
+    }
+
+    private record PendingHits(List<EndpointHit> hits, CompletableFuture<Void> flushed) {
+    }
+}
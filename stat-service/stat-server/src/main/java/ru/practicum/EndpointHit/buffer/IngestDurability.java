@@ -0,0 +1,6 @@
+package ru.practicum.EndpointHit.buffer;
+
+public enum IngestDurability {
+    ACK_ON_ENQUEUE,
+    ACK_AFTER_FLUSH
+}
@@ -0,0 +1,6 @@
+package ru.practicum.EndpointHit.buffer;
+
+public enum IngestMode {
+    DIRECT,
+    BUFFERED
+}
@@ -0,0 +1,35 @@
+package ru.practicum.EndpointHit.controller;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import ru.practicum.EndpointHit.mapper.EndpointHitMapper;
+import ru.practicum.EndpointHit.service.EndpointHitService;
+import ru.practicum.EndpointHitDto;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@Slf4j
+@RestController
+@RequestMapping("/admin/hit")
+@RequiredArgsConstructor
+public class EndpointHitAdminController {
+    private final EndpointHitService endpointHitService;
+    private final EndpointHitMapper endpointHitMapper;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping(value = "/import", consumes = EndpointHitController.APPLICATION_NDJSON_VALUE)
+    public long importHits(InputStream body) throws IOException {
+        log.info("Received a POST request to import statistics records");
+        try (MappingIterator<EndpointHitDto> iterator = objectMapper.readerFor(EndpointHitDto.class).readValues(body)) {
+            return endpointHitService.importHits(new ValidatingHitIterator(iterator, validator, endpointHitMapper));
+        }
+    }
+}
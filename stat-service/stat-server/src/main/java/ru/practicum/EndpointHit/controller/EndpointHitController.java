@@ -1,26 +1,68 @@
 package ru.practicum.EndpointHit.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.EndpointHit.mapper.EndpointHitMapper;
 import ru.practicum.EndpointHit.service.EndpointHitService;
+import ru.practicum.EndpointHit.service.HitStreamIngester;
 import ru.practicum.EndpointHitDto;
+import ru.practicum.HeavyHitter.mapper.IpStatsMapper;
+import ru.practicum.HitStreamAckDto;
+import ru.practicum.IpStatsDto;
+import ru.practicum.Latency.mapper.LatencyStatsMapper;
+import ru.practicum.LatencyStatsDto;
+import ru.practicum.Rollup.model.RollupGranularity;
+import ru.practicum.StatsQueryDto;
+import ru.practicum.StatsWindowResultDto;
+import ru.practicum.ViewHistogramDto;
 import ru.practicum.ViewStats.mapper.ViewStatsMapper;
+import ru.practicum.ViewStats.model.StatsWindow;
 import ru.practicum.ViewStats.model.ViewStats;
 import ru.practicum.ViewStatsDto;
+import ru.practicum.exception.IpAddressException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
 
 @Slf4j
 @RestController
+@Validated
 @RequiredArgsConstructor
 public class EndpointHitController {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     private final EndpointHitService endpointHitService;
     private final EndpointHitMapper endpointHitMapper;
     private final ViewStatsMapper viewStatsMapper;
+    private final LatencyStatsMapper latencyStatsMapper;
+    private final IpStatsMapper ipStatsMapper;
+    private final HitStreamIngester hitStreamIngester;
+    private final ObjectMapper objectMapper;
+    private final MappingJackson2CborHttpMessageConverter cborHttpMessageConverter;
+    private final Validator validator;
 
     @ResponseStatus(HttpStatus.CREATED)
     @PostMapping("hit")
@@ -29,14 +71,222 @@ public class EndpointHitController {
         endpointHitService.save(endpointHitMapper.endpointHitDtoToEndpointHit(endpointHitDto));
     }
 
-    @GetMapping("stats")
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping(value = "hit/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public void saveAll(@RequestBody List<@Valid EndpointHitDto> endpointHitDtos) {
+        log.info("Received a POST request to save a batch of {} statistics records", endpointHitDtos.size());
+        endpointHitService.saveAll(endpointHitMapper.listEndpointHitDtoToListEndpointHit(endpointHitDtos));
+    }
+
+    /**
+     * Saves the hits in chunks as they are read, like {@code /hit/stream}, so the batch is never held in memory. A
+     * rejected record fails the request, but the chunks read before it have already been saved.
+     */
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping(value = "hit/batch", consumes = APPLICATION_NDJSON_VALUE)
+    public void saveAllNdjson(InputStream body) throws IOException {
+        log.info("Received a POST request to save a batch of statistics records as NDJSON");
+        long[] saved = {0};
+        try (MappingIterator<EndpointHitDto> iterator = objectMapper.readerFor(EndpointHitDto.class).readValues(body)) {
+            hitStreamIngester.ingest(new ValidatingHitIterator(iterator, validator, endpointHitMapper),
+                    count -> saved[0] = count);
+            log.info("The NDJSON batch of {} statistics records has been saved", saved[0]);
+        } catch (RuntimeException e) {
+            if (isRejectedRecord(e)) {
+                log.warn("The NDJSON batch has been rejected after {} statistics records were saved: {}", saved[0],
+                        e.getMessage());
+            }
+            if (e.getCause() instanceof JsonProcessingException jsonProcessingException) {
+                throw jsonProcessingException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Saves a long-lived NDJSON upload of hits as it is read and answers with NDJSON ack frames holding the number of
+     * hits saved so far. A rejected record ends the stream with a frame carrying the error, answered with 400 when
+     * nothing has been acknowledged yet; the response type is NDJSON either way, so the error could not be rendered
+     * as an {@code ApiError}. Any other failure after the first ack aborts the response, so the client resends what
+     * was not acknowledged.
+     */
+    @PostMapping(value = "hit/stream", consumes = APPLICATION_NDJSON_VALUE, produces = APPLICATION_NDJSON_VALUE)
+    public void saveStream(InputStream body, HttpServletResponse response) throws IOException {
+        log.info("Received a POST request to stream statistics records");
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        OutputStream output = response.getOutputStream();
+        long[] acked = {0};
+        try (MappingIterator<EndpointHitDto> iterator = objectMapper.readerFor(EndpointHitDto.class).readValues(body)) {
+            long saved = hitStreamIngester.ingest(new ValidatingHitIterator(iterator, validator, endpointHitMapper),
+                    count -> {
+                        acked[0] = count;
+                        writeAck(output, new HitStreamAckDto(count, null));
+                    });
+            log.info("The stream of {} statistics records has been saved", saved);
+        } catch (RuntimeException e) {
+            if (!isRejectedRecord(e)) {
+                throw e;
+            }
+            if (!response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            }
+            log.warn("The stream has been rejected after {} statistics records: {}", acked[0], e.getMessage());
+            writeAck(output, new HitStreamAckDto(acked[0], e.getMessage()));
+        }
+    }
+
+    @GetMapping(value = "stats", params = "uris")
     public List<ViewStatsDto> findByParams(@RequestParam String start,
                                            @RequestParam String end,
                                            @RequestParam(required = false) List<String> uris,
-                                           @RequestParam(required = false) boolean unique) {
+                                           @RequestParam(required = false) boolean unique,
+                                           @RequestParam(required = false) boolean approximate) {
         log.info("Received GET request for statistics with parameters start = {}, end = {}, uris = {}, " +
-                "unique = {}", start, end, uris, unique);
-        List<ViewStats> viewStats = endpointHitService.findByParams(start, end, uris, unique);
+                "unique = {}, approximate = {}", start, end, uris, unique, approximate);
+        List<ViewStats> viewStats = endpointHitService.findByParams(start, end, uris, unique, approximate);
+        return viewStatsMapper.listViewStatsToListViewStatsDto(viewStats);
+    }
+
+    @PostMapping("stats/query")
+    public List<StatsWindowResultDto> findByQuery(@Valid @RequestBody StatsQueryDto statsQueryDto) {
+        log.info("Received a POST request for statistics of {} uris in {} windows", statsQueryDto.getUris().size(),
+                statsQueryDto.getWindows().size());
+        List<StatsWindow> windows = viewStatsMapper.listStatsWindowDtoToListStatsWindow(statsQueryDto.getWindows());
+        List<List<ViewStats>> viewStats = endpointHitService.findByWindows(statsQueryDto.getUris(), windows);
+        List<StatsWindowResultDto> results = new ArrayList<>(windows.size());
+        for (int i = 0; i < windows.size(); i++) {
+            results.add(viewStatsMapper.toStatsWindowResultDto(windows.get(i), viewStats.get(i)));
+        }
+        return results;
+    }
+
+    @GetMapping("stats/top")
+    public List<ViewStatsDto> findTop(@RequestParam String start,
+                                      @RequestParam String end,
+                                      @RequestParam(required = false) String prefix,
+                                      @RequestParam(defaultValue = "10") @Positive @Max(1000) int limit) {
+        log.info("Received GET request for the top {} uris with parameters start = {}, end = {}, prefix = {}",
+                limit, start, end, prefix);
+        List<ViewStats> viewStats = endpointHitService.findTop(start, end, prefix, limit);
         return viewStatsMapper.listViewStatsToListViewStatsDto(viewStats);
     }
-}
\ No newline at end of file
+
+    @GetMapping("stats/hot/uris")
+    public List<ViewStatsDto> findHotUris(@RequestParam(required = false) String prefix,
+                                          @RequestParam(defaultValue = "10") @Positive @Max(1000) int limit) {
+        log.info("Received GET request for the {} hottest uris with prefix = {}", limit, prefix);
+        return viewStatsMapper.listViewStatsToListViewStatsDto(endpointHitService.findHotUris(prefix, limit));
+    }
+
+    @GetMapping("stats/hot/ips")
+    public List<IpStatsDto> findHotIps(@RequestParam(defaultValue = "10") @Positive @Max(1000) int limit) {
+        log.info("Received GET request for the {} hottest ips", limit);
+        return ipStatsMapper.listIpStatsToListIpStatsDto(endpointHitService.findHotIps(limit));
+    }
+
+    @GetMapping("stats/histogram")
+    public ViewHistogramDto findHistogram(@RequestParam String start,
+                                          @RequestParam String end,
+                                          @RequestParam List<String> uris,
+                                          @RequestParam(defaultValue = "HOUR") RollupGranularity granularity) {
+        log.info("Received GET request for the {} views histogram with parameters start = {}, end = {}, uris = {}",
+                granularity, start, end, uris);
+        return viewStatsMapper.viewHistogramToViewHistogramDto(endpointHitService.findHistogram(start, end, uris,
+                granularity));
+    }
+
+    @GetMapping("stats/latency")
+    public List<LatencyStatsDto> findLatency(@RequestParam String start,
+                                             @RequestParam String end,
+                                             @RequestParam List<String> uris) {
+        log.info("Received GET request for latency percentiles with parameters start = {}, end = {}, uris = {}",
+                start, end, uris);
+        return latencyStatsMapper.listLatencyStatsToListLatencyStatsDto(endpointHitService.findLatency(start, end,
+                uris));
+    }
+
+    @GetMapping(value = "stats", params = "!uris")
+    public void findAll(@RequestParam String start,
+                        @RequestParam String end,
+                        @RequestParam(required = false) boolean unique,
+                        @RequestParam(required = false) boolean approximate,
+                        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                        HttpServletResponse response) throws IOException {
+        log.info("Received GET request for statistics of all uris with parameters start = {}, end = {}, " +
+                "unique = {}, approximate = {}", start, end, unique, approximate);
+        ObjectMapper responseMapper;
+        if (acceptsCbor(accept)) {
+            response.setContentType(MediaType.APPLICATION_CBOR_VALUE);
+            responseMapper = cborHttpMessageConverter.getObjectMapper();
+        } else {
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            responseMapper = objectMapper;
+        }
+        // The generator buffers its output, so a failed parameter check still leaves the response uncommitted
+        JsonGenerator generator = responseMapper.createGenerator(response.getOutputStream());
+        generator.writeStartArray();
+        endpointHitService.findAll(start, end, unique, approximate, viewStats -> {
+            try {
+                generator.writeObject(viewStatsMapper.viewStatsToViewStatsDto(viewStats));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        generator.writeEndArray();
+        generator.close();
+    }
+
+    private boolean isRejectedRecord(RuntimeException e) {
+        return e instanceof ConstraintViolationException || e instanceof IpAddressException ||
+                e.getCause() instanceof JsonProcessingException;
+    }
+
+    private void writeAck(OutputStream output, HitStreamAckDto hitStreamAckDto) {
+        try {
+            output.write(objectMapper.writeValueAsBytes(hitStreamAckDto));
+            output.write('\n');
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Answers CBOR when the Accept header gives it a higher quality than JSON. Each of them takes the quality of the
+     * most specific range that includes it, whatever the order of the ranges; on a tie JSON wins unless CBOR is named
+     * by a more specific range than JSON, as with {@code application/cbor} next to a wildcard.
+     */
+    private boolean acceptsCbor(String accept) {
+        if (accept == null) {
+            return false;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = new ArrayList<>(MediaType.parseMediaTypes(accept));
+            MimeTypeUtils.sortBySpecificity(mediaTypes);
+        } catch (InvalidMediaTypeException | InvalidMimeTypeException e) {
+            return false;
+        }
+        MediaType cbor = mostSpecificRange(mediaTypes, MediaType.APPLICATION_CBOR);
+        if (cbor == null || cbor.getQualityValue() == 0) {
+            return false;
+        }
+        MediaType json = mostSpecificRange(mediaTypes, MediaType.APPLICATION_JSON);
+        if (json == null) {
+            return true;
+        }
+        if (cbor.getQualityValue() != json.getQualityValue()) {
+            return cbor.getQualityValue() > json.getQualityValue();
+        }
+        return cbor.isMoreSpecific(json);
+    }
+
+    private MediaType mostSpecificRange(List<MediaType> sortedMediaTypes, MediaType mediaType) {
+        for (MediaType range : sortedMediaTypes) {
+            if (range.includes(mediaType)) {
+                return range;
+            }
+        }
+        return null;
+    }
+}
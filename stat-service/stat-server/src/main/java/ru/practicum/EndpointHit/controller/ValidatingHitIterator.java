@@ -0,0 +1,34 @@
+package ru.practicum.EndpointHit.controller;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import ru.practicum.EndpointHit.mapper.EndpointHitMapper;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.EndpointHitDto;
+
+import java.util.Iterator;
+import java.util.Set;
+
+@RequiredArgsConstructor
+class ValidatingHitIterator implements Iterator<EndpointHit> {
+    private final Iterator<EndpointHitDto> endpointHitDtos;
+    private final Validator validator;
+    private final EndpointHitMapper endpointHitMapper;
+
+    @Override
+    public boolean hasNext() {
+        return endpointHitDtos.hasNext();
+    }
+
+    @Override
+    public EndpointHit next() {
+        EndpointHitDto endpointHitDto = endpointHitDtos.next();
+        Set<ConstraintViolation<EndpointHitDto>> violations = validator.validate(endpointHitDto);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+        return endpointHitMapper.endpointHitDtoToEndpointHit(endpointHitDto);
+    }
+}
@@ -1,13 +1,28 @@
 package ru.practicum.EndpointHit.mapper;
 
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.MappingConstants;
 import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.EndpointHit.model.IpAddresses;
 import ru.practicum.EndpointHitDto;
 
+import java.util.List;
+
 @Mapper(componentModel = MappingConstants.ComponentModel.SPRING)
 public interface EndpointHitMapper {
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "appId", ignore = true)
+    @Mapping(target = "uriId", ignore = true)
+    @Mapping(target = "ipAddress", ignore = true)
     EndpointHit endpointHitDtoToEndpointHit(EndpointHitDto endpointHitDto);
 
+    @Mapping(target = "ip", source = "ipAddress")
     EndpointHitDto endpointHitToEndpointHitDto(EndpointHit endpointHit);
+
+    List<EndpointHit> listEndpointHitDtoToListEndpointHit(List<EndpointHitDto> endpointHitDtos);
+
+    default String ipAddressToIp(byte[] ipAddress) {
+        return ipAddress == null ? null : IpAddresses.format(ipAddress);
+    }
 }
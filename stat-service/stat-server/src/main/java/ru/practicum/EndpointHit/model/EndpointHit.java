@@ -9,6 +9,7 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Entity
 @Table(name = "statistics")
@@ -21,18 +22,36 @@ public class EndpointHit {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Column(name = "app_id")
+    private Integer appId;
+
+    @Column(name = "uri_id")
+    private Integer uriId;
+
     @NotBlank
-    @Column
+    @Transient
     private String app;
 
     @NotBlank
-    @Column
+    @Transient
     private String uri;
 
     @NotBlank
-    @Column
+    @Transient
     private String ip;
 
+    @Column(name = "ip")
+    private byte[] ipAddress;
+
+    @Column
+    private int hits = 1;
+
+    @Transient
+    private Long latencyMicros;
+
+    @Transient
+    private List<Long> latenciesMicros;
+
     @NotNull
     @Column
     private LocalDateTime timestamp;
@@ -0,0 +1,161 @@
+package ru.practicum.EndpointHit.model;
+
+import ru.practicum.exception.IpAddressException;
+
+/**
+ * Parses IP literals into their network byte form without touching DNS: 4 bytes for IPv4, 16 bytes for IPv6.
+ * IPv4-mapped IPv6 addresses are stored as plain IPv4 so that both spellings of one client count once.
+ */
+public final class IpAddresses {
+    private static final int IPV4_LENGTH = 4;
+    private static final int IPV6_LENGTH = 16;
+
+    private IpAddresses() {
+    }
+
+    public static byte[] parse(String ip) {
+        if (ip == null || ip.isEmpty()) {
+            throw new IpAddressException("The ip address must not be empty");
+        }
+        byte[] address = ip.indexOf(':') < 0 ? parseIpv4(ip) : parseIpv6(ip);
+        if (address == null) {
+            throw new IpAddressException("Invalid ip address: " + ip);
+        }
+        return address;
+    }
+
+    public static String format(byte[] address) {
+        if (address.length == IPV4_LENGTH) {
+            return (address[0] & 0xff) + "." + (address[1] & 0xff) + "." + (address[2] & 0xff) + "." +
+                    (address[3] & 0xff);
+        }
+        if (address.length != IPV6_LENGTH) {
+            throw new IllegalArgumentException("Unexpected ip address length: " + address.length);
+        }
+        int bestStart = -1;
+        int bestLength = 0;
+        for (int i = 0; i < 8; i++) {
+            int length = 0;
+            while (i + length < 8 && group(address, i + length) == 0) {
+                length++;
+            }
+            if (length > bestLength && length > 1) {
+                bestStart = i;
+                bestLength = length;
+            }
+            i += length;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            if (i == bestStart) {
+                builder.append("::");
+                i += bestLength - 1;
+                continue;
+            }
+            if (!builder.isEmpty() && builder.charAt(builder.length() - 1) != ':') {
+                builder.append(':');
+            }
+            builder.append(Integer.toHexString(group(address, i)));
+        }
+        return builder.toString();
+    }
+
+    private static byte[] parseIpv4(String ip) {
+        byte[] address = new byte[IPV4_LENGTH];
+        int octet = 0;
+        int value = -1;
+        for (int i = 0; i <= ip.length(); i++) {
+            char c = i < ip.length() ? ip.charAt(i) : '.';
+            if (c == '.') {
+                if (value < 0 || octet == IPV4_LENGTH) {
+                    return null;
+                }
+                address[octet++] = (byte) value;
+                value = -1;
+            } else if (c >= '0' && c <= '9') {
+                value = value < 0 ? c - '0' : value * 10 + (c - '0');
+                if (value > 255) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+        return octet == IPV4_LENGTH ? address : null;
+    }
+
+    private static byte[] parseIpv6(String ip) {
+        byte[] address = new byte[IPV6_LENGTH];
+        int compression = ip.indexOf("::");
+        if (compression >= 0 && ip.indexOf("::", compression + 1) >= 0) {
+            return null;
+        }
+        String head = compression < 0 ? ip : ip.substring(0, compression);
+        String tail = compression < 0 ? "" : ip.substring(compression + 2);
+
+        int headLength = parseGroups(head, address, 0, compression < 0);
+        if (headLength < 0) {
+            return null;
+        }
+        if (compression < 0) {
+            return headLength == IPV6_LENGTH ? normalize(address) : null;
+        }
+        byte[] tailAddress = new byte[IPV6_LENGTH];
+        int tailLength = parseGroups(tail, tailAddress, 0, true);
+        if (tailLength < 0 || headLength + tailLength > IPV6_LENGTH - 2) {
+            return null;
+        }
+        System.arraycopy(tailAddress, 0, address, IPV6_LENGTH - tailLength, tailLength);
+        return normalize(address);
+    }
+
+    private static int parseGroups(String groups, byte[] address, int offset, boolean allowIpv4) {
+        if (groups.isEmpty()) {
+            return 0;
+        }
+        String[] parts = groups.split(":", -1);
+        int position = offset;
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i];
+            if (i == parts.length - 1 && allowIpv4 && part.indexOf('.') >= 0) {
+                byte[] ipv4 = parseIpv4(part);
+                if (ipv4 == null || position + IPV4_LENGTH > IPV6_LENGTH) {
+                    return -1;
+                }
+                System.arraycopy(ipv4, 0, address, position, IPV4_LENGTH);
+                position += IPV4_LENGTH;
+                continue;
+            }
+            if (part.isEmpty() || part.length() > 4 || position + 2 > IPV6_LENGTH) {
+                return -1;
+            }
+            int value = 0;
+            for (int j = 0; j < part.length(); j++) {
+                int digit = Character.digit(part.charAt(j), 16);
+                if (digit < 0) {
+                    return -1;
+                }
+                value = value << 4 | digit;
+            }
+            address[position++] = (byte) (value >> 8);
+            address[position++] = (byte) value;
+        }
+        return position - offset;
+    }
+
+    private static byte[] normalize(byte[] address) {
+        for (int i = 0; i < 10; i++) {
+            if (address[i] != 0) {
+                return address;
+            }
+        }
+        if (address[10] != (byte) 0xff || address[11] != (byte) 0xff) {
+            return address;
+        }
+        return new byte[]{address[12], address[13], address[14], address[15]};
+    }
+
+    private static int group(byte[] address, int index) {
+        return (address[index * 2] & 0xff) << 8 | address[index * 2 + 1] & 0xff;
+    }
+}
@@ -0,0 +1,6 @@
+package ru.practicum.EndpointHit.model;
+
+public enum StorageEngine {
+    JDBC,
+    SEGMENT
+}
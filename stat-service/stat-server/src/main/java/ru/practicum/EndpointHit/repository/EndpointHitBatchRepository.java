@@ -0,0 +1,9 @@
+package ru.practicum.EndpointHit.repository;
+
+import ru.practicum.EndpointHit.model.EndpointHit;
+
+import java.util.List;
+
+public interface EndpointHitBatchRepository {
+    void saveAllInBatch(List<EndpointHit> endpointHits);
+}
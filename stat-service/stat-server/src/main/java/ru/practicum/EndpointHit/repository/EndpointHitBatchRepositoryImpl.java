@@ -0,0 +1,32 @@
+package ru.practicum.EndpointHit.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.EndpointHit.model.EndpointHit;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+public class EndpointHitBatchRepositoryImpl implements EndpointHitBatchRepository {
+    private static final String INSERT_SQL = "insert into statistics (app_id, uri_id, ip, hits, timestamp) values (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    public EndpointHitBatchRepositoryImpl(JdbcTemplate jdbcTemplate,
+                                          @Value("${stat-server.ingest.jdbc-batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void saveAllInBatch(List<EndpointHit> endpointHits) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, endpointHits, batchSize, (ps, endpointHit) -> {
+            ps.setInt(1, endpointHit.getAppId());
+            ps.setInt(2, endpointHit.getUriId());
+            ps.setBytes(3, endpointHit.getIpAddress());
+            ps.setInt(4, endpointHit.getHits());
+            ps.setTimestamp(5, Timestamp.valueOf(endpointHit.getTimestamp()));
+        });
+    }
+}
@@ -0,0 +1,79 @@
+package ru.practicum.EndpointHit.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.config.DatabasePlatform;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HexFormat;
+import java.util.List;
+
+@Component
+@Slf4j
+public class EndpointHitCopyLoader {
+    private static final String COPY_SQL = "COPY statistics (app_id, uri_id, ip, hits, timestamp) FROM STDIN WITH (FORMAT csv)";
+    private static final int CHUNK_BYTES = 64 * 1024;
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean supported;
+
+    public EndpointHitCopyLoader(JdbcTemplate jdbcTemplate, DatabasePlatform databasePlatform) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.supported = databasePlatform.isPostgres();
+    }
+
+    public boolean isSupported() {
+        return supported;
+    }
+
+    public long copy(List<EndpointHit> endpointHits) {
+        Long copied = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+            try {
+                ByteArrayOutputStream chunk = new ByteArrayOutputStream(CHUNK_BYTES + 1024);
+                for (EndpointHit endpointHit : endpointHits) {
+                    writeRow(chunk, endpointHit);
+                    if (chunk.size() >= CHUNK_BYTES) {
+                        copyIn.writeToCopy(chunk.toByteArray(), 0, chunk.size());
+                        chunk.reset();
+                    }
+                }
+                if (chunk.size() > 0) {
+                    copyIn.writeToCopy(chunk.toByteArray(), 0, chunk.size());
+                }
+                return copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    cancel(copyIn);
+                }
+            }
+        });
+        return copied == null ? 0 : copied;
+    }
+
+    private void writeRow(ByteArrayOutputStream chunk, EndpointHit endpointHit) {
+        String row = endpointHit.getAppId() + "," +
+                endpointHit.getUriId() + ',' +
+                "\\x" + HEX.formatHex(endpointHit.getIpAddress()) + ',' +
+                endpointHit.getHits() + ',' +
+                Timestamp.valueOf(endpointHit.getTimestamp()) + '\n';
+        chunk.writeBytes(row.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void cancel(CopyIn copyIn) {
+        try {
+            copyIn.cancelCopy();
+        } catch (SQLException e) {
+            log.warn("Failed to cancel COPY", e);
+        }
+    }
+}
@@ -1,35 +1,8 @@
 package ru.practicum.EndpointHit.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 import ru.practicum.EndpointHit.model.EndpointHit;
-import ru.practicum.ViewStats.model.ViewStats;
 
-import java.time.LocalDateTime;
-import java.util.List;
-
-public interface EndpointHitRepository extends JpaRepository<EndpointHit, Long> {
-
-    @Query("select new ru.practicum.ViewStats.model.ViewStats(eh.app, eh.uri, count(distinct eh.ip)) " +
-            "from EndpointHit as eh " +
-            "where eh.timestamp > :start and eh.timestamp < :end and eh.uri in (:uri) " +
-            "group by eh.app, eh.uri " +
-            "order by count(distinct eh.ip) desc")
-    List<ViewStats> findViewStatsByStartAndEndAndUriAndUniqueIp(@Param("start") LocalDateTime start,
-                                                                @Param("end") LocalDateTime end,
-                                                                @Param("uri") List<String> uri);
-
-    @Query("select new ru.practicum.ViewStats.model.ViewStats(eh.app, eh.uri, count(eh.ip)) " +
-            "from EndpointHit as eh " +
-            "where eh.timestamp > :start and eh.timestamp < :end and eh.uri in (:uri) " +
-            "group by eh.app, eh.uri " +
-            "order by count(eh.ip) desc")
-    List<ViewStats> findViewStatsByStartAndEndAndUri(@Param("start") LocalDateTime start,
-                                                     @Param("end") LocalDateTime end,
-                                                     @Param("uri") List<String> uri);
-
-    @Query("select distinct eh.uri " +
-            "from EndpointHit as eh ")
-    List<String> findUniqueUri();
+public interface EndpointHitRepository extends JpaRepository<EndpointHit, Long>, EndpointHitBatchRepository,
+        EndpointHitStreamRepository {
 }
@@ -0,0 +1,20 @@
+package ru.practicum.EndpointHit.repository;
+
+import ru.practicum.Dictionary.model.UriFilter;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.ViewStats.model.EncodedViewStats;
+import ru.practicum.ViewStats.model.ViewStats;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface EndpointHitStreamRepository {
+    List<EncodedViewStats> findViewStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, boolean unique);
+
+    void streamViewStats(LocalDateTime start, LocalDateTime end, boolean unique, Consumer<ViewStats> consumer);
+
+    long findMaxId();
+
+    void streamHitsAfter(long id, Consumer<EndpointHit> consumer);
+}
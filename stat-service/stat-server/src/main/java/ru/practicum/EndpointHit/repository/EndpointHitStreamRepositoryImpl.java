@@ -0,0 +1,90 @@
+package ru.practicum.EndpointHit.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.practicum.Dictionary.model.UriFilter;
+import ru.practicum.Dictionary.repository.UriFilterSql;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.ViewStats.model.EncodedViewStats;
+import ru.practicum.ViewStats.model.ViewStats;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class EndpointHitStreamRepositoryImpl implements EndpointHitStreamRepository {
+    private static final String VIEW_STATS_SQL = "select a.name as app, u.uri as uri, s.hits as hits from (" +
+            "select app_id, uri_id, %s as hits from statistics " +
+            "where timestamp > ? and timestamp < ? " +
+            "group by app_id, uri_id) as s " +
+            "join apps as a on a.id = s.app_id " +
+            "join uris as u on u.id = s.uri_id " +
+            "order by s.hits desc";
+    private static final String UNIQUE_VIEW_STATS_SQL = String.format(VIEW_STATS_SQL, "count(distinct ip)");
+    private static final String ALL_VIEW_STATS_SQL = String.format(VIEW_STATS_SQL, "sum(hits)");
+    private static final String FILTERED_VIEW_STATS_SQL = "select app_id, uri_id, %s as hits from statistics " +
+            "where timestamp > :start and timestamp < :end and %s " +
+            "group by app_id, uri_id " +
+            "order by hits desc";
+    private static final RowMapper<EncodedViewStats> ENCODED_VIEW_STATS_ROW_MAPPER = (rs, rowNum) ->
+            new EncodedViewStats(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("hits"));
+    private static final String MAX_ID_SQL = "select coalesce(max(id), 0) from statistics";
+    private static final String HITS_AFTER_SQL = "select id, app_id, uri_id, ip, hits, timestamp from statistics " +
+            "where id > ? order by id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    public EndpointHitStreamRepositoryImpl(JdbcTemplate jdbcTemplate,
+                                           @Value("${stat-server.stats.stream-fetch-size:1000}") int streamFetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(streamFetchSize);
+    }
+
+    @Override
+    public List<EncodedViewStats> findViewStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter,
+                                                boolean unique) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end));
+        String sql = String.format(FILTERED_VIEW_STATS_SQL, unique ? "count(distinct ip)" : "sum(hits)",
+                UriFilterSql.predicate("uri_id", uriFilter, params));
+        return namedParameterJdbcTemplate.query(sql, params, ENCODED_VIEW_STATS_ROW_MAPPER);
+    }
+
+    @Override
+    public void streamViewStats(LocalDateTime start, LocalDateTime end, boolean unique, Consumer<ViewStats> consumer) {
+        streamingJdbcTemplate.query(unique ? UNIQUE_VIEW_STATS_SQL : ALL_VIEW_STATS_SQL,
+                (RowCallbackHandler) rs -> consumer.accept(new ViewStats(rs.getString("app"), rs.getString("uri"),
+                        rs.getLong("hits"))),
+                Timestamp.valueOf(start), Timestamp.valueOf(end));
+    }
+
+    @Override
+    public long findMaxId() {
+        Long maxId = jdbcTemplate.queryForObject(MAX_ID_SQL, Long.class);
+        return maxId == null ? 0 : maxId;
+    }
+
+    @Override
+    public void streamHitsAfter(long id, Consumer<EndpointHit> consumer) {
+        streamingJdbcTemplate.query(HITS_AFTER_SQL, (RowCallbackHandler) rs -> {
+            EndpointHit endpointHit = new EndpointHit();
+            endpointHit.setId(rs.getLong("id"));
+            endpointHit.setAppId(rs.getInt("app_id"));
+            endpointHit.setUriId(rs.getInt("uri_id"));
+            endpointHit.setIpAddress(rs.getBytes("ip"));
+            endpointHit.setHits(rs.getInt("hits"));
+            endpointHit.setTimestamp(rs.getTimestamp("timestamp").toLocalDateTime());
+            consumer.accept(endpointHit);
+        }, id);
+    }
+}
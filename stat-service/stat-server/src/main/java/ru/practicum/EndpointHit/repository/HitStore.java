@@ -0,0 +1,49 @@
+package ru.practicum.EndpointHit.repository;
+
+import ru.practicum.Dictionary.model.UriFilter;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.Rollup.model.RollupGranularity;
+import ru.practicum.ViewStats.model.EncodedViewStats;
+import ru.practicum.ViewStats.model.HistogramVisitor;
+import ru.practicum.ViewStats.model.ViewStats;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Stores the raw hits and answers every query from them; {@code stat-server.storage.engine} selects the
+ * implementation. Queries the aggregates can answer do not reach it. Time ranges are open on both ends.
+ */
+public interface HitStore {
+    /**
+     * Stores the encoded hits; called inside the transaction that passes them to the ingest listeners.
+     */
+    void saveAll(List<EndpointHit> endpointHits);
+
+    List<EncodedViewStats> findViewStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, boolean unique);
+
+    void streamViewStats(LocalDateTime start, LocalDateTime end, boolean unique, Consumer<ViewStats> consumer);
+
+    /**
+     * Returns the {@code limit} pairs with the most hits, ordered by hits, uri id and app id.
+     */
+    List<EncodedViewStats> findTopViewStats(LocalDateTime start, LocalDateTime end, String uriPrefix, int limit);
+
+    /**
+     * Visits the hits of every pair and bucket of the granularity in the range; a pair and bucket may be visited
+     * more than once.
+     */
+    void findHistogram(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, RollupGranularity granularity,
+                       HistogramVisitor visitor);
+
+    /**
+     * Returns a position that grows with every stored hit, for snapshots of the in-memory aggregates.
+     */
+    long findWatermark();
+
+    /**
+     * Streams the hits stored after the watermark in the order they were stored.
+     */
+    void streamHitsAfter(long watermark, Consumer<EndpointHit> consumer);
+}
@@ -0,0 +1,81 @@
+package ru.practicum.EndpointHit.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import ru.practicum.Dictionary.model.UriFilter;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.Rollup.model.RollupGranularity;
+import ru.practicum.Rollup.model.RollupPlan;
+import ru.practicum.Rollup.repository.RollupRepository;
+import ru.practicum.ViewStats.model.EncodedViewStats;
+import ru.practicum.ViewStats.model.HistogramVisitor;
+import ru.practicum.ViewStats.model.ViewStats;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the hits in the statistics table. Large batches are loaded with {@code COPY} where the database supports it.
+ */
+@Repository
+@ConditionalOnProperty(name = "stat-server.storage.engine", havingValue = "JDBC", matchIfMissing = true)
+public class JdbcHitStore implements HitStore {
+    private final EndpointHitRepository endpointHitRepository;
+    private final EndpointHitCopyLoader endpointHitCopyLoader;
+    private final RollupRepository rollupRepository;
+    private final int copyThreshold;
+
+    public JdbcHitStore(EndpointHitRepository endpointHitRepository,
+                        EndpointHitCopyLoader endpointHitCopyLoader,
+                        RollupRepository rollupRepository,
+                        @Value("${stat-server.ingest.copy-threshold:500}") int copyThreshold) {
+        this.endpointHitRepository = endpointHitRepository;
+        this.endpointHitCopyLoader = endpointHitCopyLoader;
+        this.rollupRepository = rollupRepository;
+        this.copyThreshold = copyThreshold;
+    }
+
+    @Override
+    public void saveAll(List<EndpointHit> endpointHits) {
+        if (copyThreshold > 0 && endpointHits.size() >= copyThreshold && endpointHitCopyLoader.isSupported()) {
+            endpointHitCopyLoader.copy(endpointHits);
+        } else {
+            endpointHitRepository.saveAllInBatch(endpointHits);
+        }
+    }
+
+    @Override
+    public List<EncodedViewStats> findViewStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter,
+                                                boolean unique) {
+        return endpointHitRepository.findViewStats(start, end, uriFilter, unique);
+    }
+
+    @Override
+    public void streamViewStats(LocalDateTime start, LocalDateTime end, boolean unique, Consumer<ViewStats> consumer) {
+        endpointHitRepository.streamViewStats(start, end, unique, consumer);
+    }
+
+    @Override
+    public List<EncodedViewStats> findTopViewStats(LocalDateTime start, LocalDateTime end, String uriPrefix,
+                                                   int limit) {
+        return rollupRepository.findTopViewStats(RollupPlan.raw(start, end), uriPrefix, limit);
+    }
+
+    @Override
+    public void findHistogram(LocalDateTime start, LocalDateTime end, UriFilter uriFilter,
+                              RollupGranularity granularity, HistogramVisitor visitor) {
+        rollupRepository.findHistogram(RollupPlan.raw(start, end), granularity, uriFilter, visitor);
+    }
+
+    @Override
+    public long findWatermark() {
+        return endpointHitRepository.findMaxId();
+    }
+
+    @Override
+    public void streamHitsAfter(long watermark, Consumer<EndpointHit> consumer) {
+        endpointHitRepository.streamHitsAfter(watermark, consumer);
+    }
+}
@@ -1,12 +1,37 @@
 package ru.practicum.EndpointHit.service;
 
 import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.HeavyHitter.model.IpStats;
+import ru.practicum.Latency.model.LatencyStats;
+import ru.practicum.Rollup.model.RollupGranularity;
+import ru.practicum.ViewStats.model.StatsWindow;
+import ru.practicum.ViewStats.model.ViewHistogram;
 import ru.practicum.ViewStats.model.ViewStats;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface EndpointHitService {
     void save(EndpointHit endpointHit);
 
-    List<ViewStats> findByParams(String start, String end, List<String> uris, boolean unique);
+    void saveAll(List<EndpointHit> endpointHits);
+
+    long importHits(Iterator<EndpointHit> endpointHits);
+
+    List<ViewStats> findByParams(String start, String end, List<String> uris, boolean unique, boolean approximate);
+
+    List<List<ViewStats>> findByWindows(List<String> uris, List<StatsWindow> windows);
+
+    List<ViewStats> findTop(String start, String end, String uriPrefix, int limit);
+
+    List<ViewStats> findHotUris(String uriPrefix, int limit);
+
+    List<IpStats> findHotIps(int limit);
+
+    ViewHistogram findHistogram(String start, String end, List<String> uris, RollupGranularity granularity);
+
+    List<LatencyStats> findLatency(String start, String end, List<String> uris);
+
+    void findAll(String start, String end, boolean unique, boolean approximate, Consumer<ViewStats> consumer);
 }
@@ -6,60 +6,280 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 import ru.practicum.Constants;
+import ru.practicum.Dictionary.model.UriFilter;
+import ru.practicum.Dictionary.service.DictionaryService;
+import ru.practicum.EndpointHit.buffer.HitWriteBuffer;
 import ru.practicum.EndpointHit.model.EndpointHit;
-import ru.practicum.EndpointHit.repository.EndpointHitRepository;
+import ru.practicum.EndpointHit.model.IpAddresses;
+import ru.practicum.EndpointHit.repository.HitStore;
+import ru.practicum.HeavyHitter.model.IpStats;
+import ru.practicum.HeavyHitter.service.HeavyHitterService;
+import ru.practicum.HitFilter.service.HitFilterService;
+import ru.practicum.Latency.model.LatencyStats;
+import ru.practicum.Latency.service.LatencyService;
+import ru.practicum.Rollup.model.RollupGranularity;
+import ru.practicum.Rollup.service.RollupService;
+import ru.practicum.Sketch.service.SketchService;
+import ru.practicum.StatsCache.service.StatsCacheService;
+import ru.practicum.ViewStats.model.EncodedViewStats;
+import ru.practicum.ViewStats.model.StatsWindow;
+import ru.practicum.ViewStats.model.ViewHistogram;
 import ru.practicum.ViewStats.model.ViewStats;
 import ru.practicum.exception.DataTimeException;
 
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class EndpointHitServiceImpl implements EndpointHitService {
-    private final EndpointHitRepository endpointHitRepository;
+    private final HitStore hitStore;
+    private final EndpointHitWriter endpointHitWriter;
+    private final HitWriteBuffer hitWriteBuffer;
+    private final RollupService rollupService;
+    private final SketchService sketchService;
+    private final DictionaryService dictionaryService;
+    private final StatsCacheService statsCacheService;
+    private final HitFilterService hitFilterService;
+    private final LatencyService latencyService;
+    private final HeavyHitterService heavyHitterService;
 
-    @Transactional
     @Override
     public void save(EndpointHit endpointHit) {
         log.info("The beginning of the process of creating a statistics record");
-        endpointHitRepository.save(endpointHit);
+        write(List.of(endpointHit));
         log.info("The statistics record has been created");
     }
 
+    @Override
+    public void saveAll(List<EndpointHit> endpointHits) {
+        log.info("The beginning of the process of creating {} statistics records", endpointHits.size());
+        write(endpointHits);
+        log.info("{} statistics records have been created", endpointHits.size());
+    }
+
+    @Override
+    public long importHits(Iterator<EndpointHit> endpointHits) {
+        log.info("The beginning of the process of importing statistics records");
+        long imported = endpointHitWriter.writeStream(new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return endpointHits.hasNext();
+            }
+
+            @Override
+            public EndpointHit next() {
+                EndpointHit endpointHit = endpointHits.next();
+                encode(List.of(endpointHit));
+                return endpointHit;
+            }
+        });
+        log.info("{} statistics records have been imported", imported);
+        return imported;
+    }
+
     @Transactional(readOnly = true)
     @Override
-    public List<ViewStats> findByParams(String start, String end, List<String> uris, boolean unique) {
+    public List<ViewStats> findByParams(String start, String end, List<String> uris, boolean unique,
+                                        boolean approximate) {
         log.info("The beginning of the process of obtaining statistics of views");
         List<ViewStats> listViewStats;
         LocalDateTime startTime = decodeTime(start);
         LocalDateTime endTime = decodeTime(end);
-
-        if (startTime.isAfter(endTime)) {
-            throw new DataTimeException("The start time must be later than the end time");
-        }
+        checkRange(startTime, endTime);
 
         if (CollectionUtils.isEmpty(uris)) {
-            uris = endpointHitRepository.findUniqueUri();
+            listViewStats = new ArrayList<>();
+            findAll(startTime, endTime, unique, approximate, listViewStats::add);
+            log.info("Getting the statistics of the views is completed");
+            return listViewStats;
         }
 
-        if (unique) {
-            listViewStats = endpointHitRepository.findViewStatsByStartAndEndAndUriAndUniqueIp(startTime,
-                    endTime,
-                    uris);
-        } else {
-            listViewStats = endpointHitRepository.findViewStatsByStartAndEndAndUri(startTime,
-                    endTime,
-                    uris);
+        UriFilter uriFilter = dictionaryService.findUriFilter(uris);
+        if (uriFilter.isEmpty()) {
+            log.info("None of the requested uris has been visited");
+            return List.of();
         }
 
+        listViewStats = findByUriFilter(startTime, endTime, uriFilter, unique, approximate);
         log.info("Getting the statistics of the views is completed");
         return listViewStats;
     }
 
+    @Transactional(readOnly = true)
+    @Override
+    public List<List<ViewStats>> findByWindows(List<String> uris, List<StatsWindow> windows) {
+        log.info("The beginning of the process of obtaining statistics of views for {} uris in {} windows",
+                uris.size(), windows.size());
+        for (StatsWindow window : windows) {
+            checkRange(window.getStart(), window.getEnd());
+        }
+
+        UriFilter uriFilter = dictionaryService.findUriFilter(uris);
+        List<List<ViewStats>> listViewStats = new ArrayList<>(windows.size());
+        for (StatsWindow window : windows) {
+            if (uriFilter.isEmpty()) {
+                listViewStats.add(List.of());
+            } else {
+                listViewStats.add(findByUriFilter(window.getStart(), window.getEnd(), uriFilter, window.isUnique(),
+                        window.isApproximate()));
+            }
+        }
+
+        log.info("Getting the statistics of the views for {} windows is completed", windows.size());
+        return listViewStats;
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<ViewStats> findTop(String start, String end, String uriPrefix, int limit) {
+        log.info("The beginning of the process of obtaining the top {} uris", limit);
+        LocalDateTime startTime = decodeTime(start);
+        LocalDateTime endTime = decodeTime(end);
+        checkRange(startTime, endTime);
+        List<ViewStats> listViewStats = rollupService.findTopViewStats(startTime, endTime, uriPrefix, limit);
+        log.info("Getting the top uris is completed");
+        return listViewStats;
+    }
+
+    @Override
+    public List<ViewStats> findHotUris(String uriPrefix, int limit) {
+        if (!heavyHitterService.isEnabled()) {
+            log.info("Heavy hitter tracking is disabled");
+            return List.of();
+        }
+        return heavyHitterService.findHotUris(uriPrefix, limit);
+    }
+
+    @Override
+    public List<IpStats> findHotIps(int limit) {
+        if (!heavyHitterService.isEnabled()) {
+            log.info("Heavy hitter tracking is disabled");
+            return List.of();
+        }
+        return heavyHitterService.findHotIps(limit);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public ViewHistogram findHistogram(String start, String end, List<String> uris, RollupGranularity granularity) {
+        log.info("The beginning of the process of obtaining the {} views histogram", granularity);
+        LocalDateTime startTime = decodeTime(start);
+        LocalDateTime endTime = decodeTime(end);
+        checkRange(startTime, endTime);
+        ViewHistogram viewHistogram = rollupService.findHistogram(startTime, endTime,
+                dictionaryService.findUriFilter(uris), granularity);
+        log.info("Getting the views histogram is completed");
+        return viewHistogram;
+    }
+
+    @Override
+    public List<LatencyStats> findLatency(String start, String end, List<String> uris) {
+        log.info("The beginning of the process of obtaining latency percentiles");
+        LocalDateTime startTime = decodeTime(start);
+        LocalDateTime endTime = decodeTime(end);
+        checkRange(startTime, endTime);
+        if (!latencyService.isEnabled()) {
+            log.info("Latency histograms are disabled");
+            return List.of();
+        }
+        List<LatencyStats> latencyStats = latencyService.findLatencyStats(startTime, endTime,
+                dictionaryService.findUriFilter(uris));
+        log.info("Getting the latency percentiles is completed");
+        return latencyStats;
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public void findAll(String start, String end, boolean unique, boolean approximate, Consumer<ViewStats> consumer) {
+        log.info("The beginning of the process of streaming statistics of views for all uris");
+        LocalDateTime startTime = decodeTime(start);
+        LocalDateTime endTime = decodeTime(end);
+        checkRange(startTime, endTime);
+        findAll(startTime, endTime, unique, approximate, consumer);
+        log.info("Streaming the statistics of the views is completed");
+    }
+
+    private List<ViewStats> findByUriFilter(LocalDateTime start, LocalDateTime end, UriFilter uriFilter,
+                                            boolean unique, boolean approximate) {
+        if (unique && approximate && sketchService.isEnabled()) {
+            return sketchService.findViewStats(start, end, uriFilter);
+        }
+
+        List<EncodedViewStats> encodedViewStats;
+        if (statsCacheService.isEnabled()) {
+            encodedViewStats = statsCacheService.find(start, end, uriFilter, unique, this::findEncodedViewStats);
+        } else {
+            encodedViewStats = findEncodedViewStats(start, end, uriFilter, unique);
+        }
+        return encodedViewStats.stream()
+                .filter(stats -> dictionaryService.matches(uriFilter, stats.getUriId()))
+                .map(stats -> dictionaryService.toViewStats(stats.getAppId(), stats.getUriId(), stats.getHits()))
+                .toList();
+    }
+
+    private List<EncodedViewStats> findEncodedViewStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter,
+                                                        boolean unique) {
+        if (!unique && rollupService.isEnabled()) {
+            return rollupService.findViewStats(start, end, uriFilter);
+        }
+        return hitStore.findViewStats(start, end, uriFilter, unique);
+    }
+
+    private void findAll(LocalDateTime start, LocalDateTime end, boolean unique, boolean approximate,
+                         Consumer<ViewStats> consumer) {
+        if (!unique && rollupService.isEnabled()) {
+            rollupService.streamViewStats(start, end, consumer);
+        } else if (unique && approximate && sketchService.isEnabled()) {
+            sketchService.findViewStats(start, end, null).forEach(consumer);
+        } else {
+            hitStore.streamViewStats(start, end, unique, consumer);
+        }
+    }
+
+    private void write(List<EndpointHit> endpointHits) {
+        List<EndpointHit> accepted = endpointHits;
+        parseIps(accepted);
+        if (hitFilterService.isEnabled()) {
+            accepted = hitFilterService.applyRules(accepted);
+        }
+        dictionaryService.encode(accepted);
+        if (hitFilterService.isEnabled()) {
+            accepted = hitFilterService.dropDuplicates(accepted);
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+        if (hitWriteBuffer.isEnabled()) {
+            hitWriteBuffer.write(accepted);
+        } else {
+            endpointHitWriter.write(accepted);
+        }
+    }
+
+    private void encode(List<EndpointHit> endpointHits) {
+        parseIps(endpointHits);
+        dictionaryService.encode(endpointHits);
+    }
+
+    private void parseIps(List<EndpointHit> endpointHits) {
+        for (EndpointHit endpointHit : endpointHits) {
+            endpointHit.setIpAddress(IpAddresses.parse(endpointHit.getIp()));
+        }
+    }
+
+    private void checkRange(LocalDateTime start, LocalDateTime end) {
+        if (start.isAfter(end)) {
+            throw new DataTimeException("The start time must be later than the end time");
+        }
+    }
+
     private LocalDateTime decodeTime(String time) {
         String decodeTime = URLDecoder.decode(time, StandardCharsets.UTF_8);
         return LocalDateTime.parse(decodeTime, Constants.FORMATTER);
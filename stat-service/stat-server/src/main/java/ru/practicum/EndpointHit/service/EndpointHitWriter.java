@@ -0,0 +1,82 @@
+package ru.practicum.EndpointHit.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.EndpointHit.repository.HitStore;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+@Component
+@Slf4j
+public class EndpointHitWriter {
+    private final HitStore hitStore;
+    private final List<HitIngestListener> hitIngestListeners;
+    private final int streamChunkSize;
+    private final ReadWriteLock persistLock = new ReentrantReadWriteLock();
+
+    public EndpointHitWriter(HitStore hitStore,
+                             List<HitIngestListener> hitIngestListeners,
+                             @Value("${stat-server.ingest.stream-chunk-size:10000}") int streamChunkSize) {
+        this.hitStore = hitStore;
+        this.hitIngestListeners = hitIngestListeners;
+        this.streamChunkSize = streamChunkSize;
+    }
+
+    @Transactional
+    public void write(List<EndpointHit> endpointHits) {
+        persist(endpointHits);
+    }
+
+    @Transactional
+    public long writeStream(Iterator<EndpointHit> endpointHits) {
+        long written = 0;
+        List<EndpointHit> chunk = new ArrayList<>(streamChunkSize);
+        while (endpointHits.hasNext()) {
+            chunk.add(endpointHits.next());
+            if (chunk.size() == streamChunkSize) {
+                persist(chunk);
+                written += chunk.size();
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            persist(chunk);
+            written += chunk.size();
+        }
+        return written;
+    }
+
+    /**
+     * Runs the action while no batch is between being stored and being passed to the listeners, so a watermark read
+     * inside it does not cover records the in-memory aggregates have not seen yet.
+     */
+    public <T> T whileIdle(Supplier<T> action) {
+        persistLock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            persistLock.writeLock().unlock();
+        }
+    }
+
+    private void persist(List<EndpointHit> endpointHits) {
+        persistLock.readLock().lock();
+        try {
+            hitStore.saveAll(endpointHits);
+            for (HitIngestListener hitIngestListener : hitIngestListeners) {
+                hitIngestListener.onHits(endpointHits);
+            }
+        } finally {
+            persistLock.readLock().unlock();
+        }
+        log.debug("{} statistics records have been written", endpointHits.size());
+    }
+}
@@ -0,0 +1,9 @@
+package ru.practicum.EndpointHit.service;
+
+import ru.practicum.EndpointHit.model.EndpointHit;
+
+import java.util.List;
+
+public interface HitIngestListener {
+    void onHits(List<EndpointHit> endpointHits);
+}
@@ -0,0 +1,118 @@
+package ru.practicum.EndpointHit.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.EndpointHit.model.EndpointHit;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+@Component
+@Slf4j
+public class HitStreamIngester {
+    private static final Object END_OF_STREAM = new Object();
+
+    private final EndpointHitService endpointHitService;
+    private final int ackSize;
+    private final long ackIntervalNanos;
+
+    public HitStreamIngester(EndpointHitService endpointHitService,
+                             @Value("${stat-server.ingest.stream-ack-size:1000}") int ackSize,
+                             @Value("${stat-server.ingest.stream-ack-interval-ms:1000}") long ackIntervalMillis) {
+        this.endpointHitService = endpointHitService;
+        this.ackSize = ackSize;
+        this.ackIntervalNanos = TimeUnit.MILLISECONDS.toNanos(ackIntervalMillis);
+    }
+
+    /**
+     * Saves the hits as they are read, in chunks of up to ackSize hits, and after every chunk passes the number of
+     * hits saved so far to the acknowledger. The hits are read on a separate thread, so a chunk is also closed once
+     * it has been open for the ack interval while the client sends nothing; the end of the stream is always
+     * acknowledged. An exception of the iterator is rethrown here, without saving the open chunk.
+     */
+    public long ingest(Iterator<EndpointHit> endpointHits, LongConsumer acknowledger) {
+        BlockingQueue<Object> records = new ArrayBlockingQueue<>(ackSize);
+        Thread reader = Thread.ofVirtual()
+                .name("hit-stream-reader")
+                .start(() -> read(endpointHits, records));
+        try {
+            return ingest(records, acknowledger);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading the statistics records stream", e);
+        } finally {
+            reader.interrupt();
+        }
+    }
+
+    private long ingest(BlockingQueue<Object> records, LongConsumer acknowledger) throws InterruptedException {
+        long saved = 0;
+        List<EndpointHit> chunk = new ArrayList<>(ackSize);
+        long deadline = 0;
+        while (true) {
+            Object record = chunk.isEmpty() ? records.take() :
+                    records.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (record == END_OF_STREAM) {
+                break;
+            }
+            if (record instanceof RuntimeException e) {
+                throw e;
+            }
+            if (record instanceof Error e) {
+                throw e;
+            }
+            if (record != null) {
+                if (chunk.isEmpty()) {
+                    deadline = System.nanoTime() + ackIntervalNanos;
+                }
+                chunk.add((EndpointHit) record);
+            }
+            if (chunk.size() >= ackSize || System.nanoTime() - deadline >= 0) {
+                endpointHitService.saveAll(chunk);
+                saved += chunk.size();
+                chunk = new ArrayList<>(ackSize);
+                acknowledger.accept(saved);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            endpointHitService.saveAll(chunk);
+            saved += chunk.size();
+        }
+        acknowledger.accept(saved);
+        return saved;
+    }
+
+    /**
+     * Runs on the reader thread until the stream ends, the iterator fails or {@link #ingest} has given up and
+     * interrupted it.
+     */
+    private void read(Iterator<EndpointHit> endpointHits, BlockingQueue<Object> records) {
+        Object last = END_OF_STREAM;
+        try {
+            while (endpointHits.hasNext()) {
+                if (!put(records, endpointHits.next())) {
+                    return;
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            last = e;
+        }
+        put(records, last);
+    }
+
+    private boolean put(BlockingQueue<Object> records, Object record) {
+        try {
+            records.put(record);
+            return true;
+        } catch (InterruptedException e) {
+            log.debug("The statistics records stream has been abandoned");
+            return false;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package ru.practicum.HeavyHitter.mapper;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.MappingConstants;
+import ru.practicum.HeavyHitter.model.IpStats;
+import ru.practicum.IpStatsDto;
+
+import java.util.List;
+
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING)
+public interface IpStatsMapper {
+    List<IpStatsDto> listIpStatsToListIpStatsDto(List<IpStats> ipStats);
+}
@@ -0,0 +1,79 @@
+package ru.practicum.HeavyHitter.model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Count-Min sketch of {@code depth} rows of {@code width} counters. An estimate never undercounts and overcounts by at
+ * most {@code e / width} of the total with probability {@code 1 - e^-depth}.
+ */
+public class CountMinSketch {
+    private final int depth;
+    private final int mask;
+    private final long[] counters;
+
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 2 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("The sketch needs at least one row and a power of two width, got " +
+                    depth + " x " + width);
+        }
+        this.depth = depth;
+        this.mask = width - 1;
+        this.counters = new long[depth * width];
+    }
+
+    public void add(long hash, long count) {
+        for (int row = 0; row < depth; row++) {
+            counters[index(hash, row)] += count;
+        }
+    }
+
+    public long estimate(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[index(hash, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimates the key in the sum of several sketches of the same shape without materializing the sum.
+     */
+    public static long estimate(CountMinSketch[] sketches, long hash) {
+        CountMinSketch first = sketches[0];
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < first.depth; row++) {
+            int index = first.index(hash, row);
+            long sum = 0;
+            for (CountMinSketch sketch : sketches) {
+                sum += sketch.counters[index];
+            }
+            estimate = Math.min(estimate, sum);
+        }
+        return estimate;
+    }
+
+    public void clear() {
+        Arrays.fill(counters, 0);
+    }
+
+    public int getSizeBytes() {
+        return counters.length * Long.BYTES;
+    }
+
+    public void writeTo(ByteBuffer buffer) {
+        buffer.asLongBuffer().put(counters);
+        buffer.position(buffer.position() + getSizeBytes());
+    }
+
+    public void readFrom(ByteBuffer buffer) {
+        buffer.asLongBuffer().get(counters);
+        buffer.position(buffer.position() + getSizeBytes());
+    }
+
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * (mask + 1) + (h1 + row * h2 & mask);
+    }
+}
@@ -0,0 +1,4 @@
+package ru.practicum.HeavyHitter.model;
+
+public record HeavyHitter<T>(T key, long hits) {
+}
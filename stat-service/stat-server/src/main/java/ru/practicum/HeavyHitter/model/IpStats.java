@@ -0,0 +1,11 @@
+package ru.practicum.HeavyHitter.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class IpStats {
+    private String ip;
+    private long hits;
+}
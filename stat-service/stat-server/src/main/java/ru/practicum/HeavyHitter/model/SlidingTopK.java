@@ -0,0 +1,166 @@
+package ru.practicum.HeavyHitter.model;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Tracks the most frequent keys of a sliding window. The window is a ring of Count-Min sketches, one per slot of
+ * {@code slotSeconds}; a slot is cleared when time moves past the window. Up to {@code capacity} candidate keys are
+ * ordered by their estimated count in the window, a new key replaces the smallest candidate once its estimate is
+ * larger. Candidates are re-estimated whenever a slot expires so that keys which cooled down fall behind.
+ * Keys are identified by a 64-bit hash. Not thread-safe.
+ */
+public class SlidingTopK<T> {
+    private final long slotSeconds;
+    private final CountMinSketch[] sketches;
+    private final int capacity;
+    private final Map<Long, Candidate<T>> candidates = new HashMap<>();
+    private final TreeSet<Candidate<T>> byEstimate = new TreeSet<>(Comparator
+            .comparingLong((Candidate<T> candidate) -> candidate.estimate)
+            .thenComparingLong(candidate -> candidate.hash));
+    private long currentSlot = Long.MIN_VALUE;
+
+    public SlidingTopK(long windowSeconds, int slots, int depth, int width, int capacity) {
+        if (slots < 1 || windowSeconds < slots || capacity < 1) {
+            throw new IllegalArgumentException("Invalid sliding window settings: " + windowSeconds + " s window, " +
+                    slots + " slots, " + capacity + " candidates");
+        }
+        this.slotSeconds = windowSeconds / slots;
+        this.sketches = new CountMinSketch[slots];
+        for (int i = 0; i < slots; i++) {
+            sketches[i] = new CountMinSketch(depth, width);
+        }
+        this.capacity = capacity;
+    }
+
+    public void add(long hash, T key, long count, long epochSecond) {
+        advance(epochSecond);
+        sketches[(int) Math.floorMod(currentSlot, sketches.length)].add(hash, count);
+        long estimate = CountMinSketch.estimate(sketches, hash);
+        Candidate<T> candidate = candidates.get(hash);
+        if (candidate != null) {
+            byEstimate.remove(candidate);
+            candidate.estimate = estimate;
+            byEstimate.add(candidate);
+            return;
+        }
+        if (candidates.size() >= capacity) {
+            Candidate<T> smallest = byEstimate.first();
+            if (smallest.estimate >= estimate) {
+                return;
+            }
+            byEstimate.pollFirst();
+            candidates.remove(smallest.hash);
+        }
+        candidate = new Candidate<>(hash, key, estimate);
+        candidates.put(hash, candidate);
+        byEstimate.add(candidate);
+    }
+
+    /**
+     * Returns the candidates with the largest estimates, most frequent first, that {@code filter} accepts.
+     */
+    public List<HeavyHitter<T>> top(int limit, long epochSecond, Predicate<T> filter) {
+        advance(epochSecond);
+        List<HeavyHitter<T>> result = new ArrayList<>(Math.min(limit, candidates.size()));
+        Iterator<Candidate<T>> iterator = byEstimate.descendingIterator();
+        while (result.size() < limit && iterator.hasNext()) {
+            Candidate<T> candidate = iterator.next();
+            if (filter.test(candidate.key)) {
+                result.add(new HeavyHitter<>(candidate.key, candidate.estimate));
+            }
+        }
+        return result;
+    }
+
+    public byte[] toBytes(Function<T, byte[]> keyEncoder) {
+        List<byte[]> keys = new ArrayList<>(candidates.size());
+        int size = 5 * Long.BYTES + Integer.BYTES + sketches.length * sketches[0].getSizeBytes();
+        for (Candidate<T> candidate : candidates.values()) {
+            byte[] key = keyEncoder.apply(candidate.key);
+            keys.add(key);
+            size += 2 * Long.BYTES + Integer.BYTES + key.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putLong(slotSeconds).putLong(sketches.length).putLong(sketches[0].getSizeBytes()).putLong(capacity)
+                .putLong(currentSlot);
+        for (CountMinSketch sketch : sketches) {
+            sketch.writeTo(buffer);
+        }
+        buffer.putInt(candidates.size());
+        Iterator<byte[]> key = keys.iterator();
+        for (Candidate<T> candidate : candidates.values()) {
+            byte[] encodedKey = key.next();
+            buffer.putLong(candidate.hash).putLong(candidate.estimate).putInt(encodedKey.length).put(encodedKey);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Replaces the state with one written by {@link #toBytes} for a window of the same shape.
+     */
+    public void restore(ByteBuffer buffer, Function<byte[], T> keyDecoder) {
+        if (buffer.getLong() != slotSeconds || buffer.getLong() != sketches.length ||
+                buffer.getLong() != sketches[0].getSizeBytes() || buffer.getLong() != capacity) {
+            throw new IllegalArgumentException("The saved window has a different shape");
+        }
+        currentSlot = buffer.getLong();
+        for (CountMinSketch sketch : sketches) {
+            sketch.readFrom(buffer);
+        }
+        candidates.clear();
+        byEstimate.clear();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            long hash = buffer.getLong();
+            long estimate = buffer.getLong();
+            byte[] key = new byte[buffer.getInt()];
+            buffer.get(key);
+            Candidate<T> candidate = new Candidate<>(hash, keyDecoder.apply(key), estimate);
+            candidates.put(hash, candidate);
+            byEstimate.add(candidate);
+        }
+    }
+
+    private void advance(long epochSecond) {
+        long slot = Math.floorDiv(epochSecond, slotSeconds);
+        if (slot <= currentSlot) {
+            return;
+        }
+        long expired = currentSlot == Long.MIN_VALUE ? sketches.length : Math.min(slot - currentSlot, sketches.length);
+        for (long i = 1; i <= expired; i++) {
+            sketches[(int) Math.floorMod(slot - expired + i, sketches.length)].clear();
+        }
+        currentSlot = slot;
+        byEstimate.clear();
+        for (Iterator<Candidate<T>> iterator = candidates.values().iterator(); iterator.hasNext(); ) {
+            Candidate<T> candidate = iterator.next();
+            candidate.estimate = CountMinSketch.estimate(sketches, candidate.hash);
+            if (candidate.estimate == 0) {
+                iterator.remove();
+            } else {
+                byEstimate.add(candidate);
+            }
+        }
+    }
+
+    private static final class Candidate<T> {
+        private final long hash;
+        private final T key;
+        private long estimate;
+
+        private Candidate(long hash, T key, long estimate) {
+            this.hash = hash;
+            this.key = key;
+            this.estimate = estimate;
+        }
+    }
+}
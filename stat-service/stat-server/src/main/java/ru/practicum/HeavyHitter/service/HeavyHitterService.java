@@ -0,0 +1,139 @@
+package ru.practicum.HeavyHitter.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.practicum.Dictionary.model.DictionaryType;
+import ru.practicum.Dictionary.service.DictionaryService;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.EndpointHit.model.IpAddresses;
+import ru.practicum.EndpointHit.service.HitIngestListener;
+import ru.practicum.HeavyHitter.model.IpStats;
+import ru.practicum.HeavyHitter.model.SlidingTopK;
+import ru.practicum.Sketch.model.HyperLogLog;
+import ru.practicum.Snapshot.service.SnapshotParticipant;
+import ru.practicum.ViewStats.model.ViewStats;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Keeps the hottest uris and client ips of the last {@code window} of ingest time in memory, for hot-spot detection
+ * that cannot wait for a query over the statistics table. Counts are Count-Min estimates and may be slightly high.
+ */
+@Service
+@Slf4j
+public class HeavyHitterService implements HitIngestListener, SnapshotParticipant {
+    private final DictionaryService dictionaryService;
+    private final boolean enabled;
+    private final long windowSeconds;
+    private final SlidingTopK<Long> uris;
+    private final SlidingTopK<byte[]> ips;
+
+    public HeavyHitterService(DictionaryService dictionaryService,
+                              @Value("${stat-server.heavy-hitters.enabled:true}") boolean enabled,
+                              @Value("${stat-server.heavy-hitters.window:5m}") Duration window,
+                              @Value("${stat-server.heavy-hitters.slots:10}") int slots,
+                              @Value("${stat-server.heavy-hitters.depth:4}") int depth,
+                              @Value("${stat-server.heavy-hitters.width:2048}") int width,
+                              @Value("${stat-server.heavy-hitters.capacity:256}") int capacity) {
+        this.dictionaryService = dictionaryService;
+        this.enabled = enabled;
+        this.windowSeconds = window.toSeconds();
+        if (enabled) {
+            this.uris = new SlidingTopK<>(window.toSeconds(), slots, depth, width, capacity);
+            this.ips = new SlidingTopK<>(window.toSeconds(), slots, depth, width, capacity);
+        } else {
+            this.uris = null;
+            this.ips = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> endpointHits) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis() / 1_000;
+        synchronized (this) {
+            for (EndpointHit endpointHit : endpointHits) {
+                add(endpointHit, now);
+            }
+        }
+    }
+
+    @Override
+    public String getSnapshotName() {
+        return "heavy-hitters";
+    }
+
+    @Override
+    public boolean isSnapshotEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public synchronized byte[] snapshot() {
+        byte[] uriState = uris.toBytes(appUri -> ByteBuffer.allocate(Long.BYTES).putLong(appUri).array());
+        byte[] ipState = ips.toBytes(ip -> ip);
+        return ByteBuffer.allocate(Integer.BYTES + uriState.length + ipState.length)
+                .putInt(uriState.length)
+                .put(uriState)
+                .put(ipState)
+                .array();
+    }
+
+    @Override
+    public synchronized void restore(ByteBuffer state) {
+        int uriStateLength = state.getInt();
+        uris.restore(state.slice(state.position(), uriStateLength), appUri -> ByteBuffer.wrap(appUri).getLong());
+        state.position(state.position() + uriStateLength);
+        ips.restore(state, ip -> ip);
+    }
+
+    /**
+     * Counts the replayed hits as ingested now. Ingest time is not stored, so hits whose own timestamp is older than
+     * the window are left out; they would have expired by now.
+     */
+    @Override
+    public synchronized void replay(List<EndpointHit> endpointHits) {
+        long now = System.currentTimeMillis() / 1_000;
+        for (EndpointHit endpointHit : endpointHits) {
+            if (endpointHit.getTimestamp().toEpochSecond(ZoneOffset.UTC) > now - windowSeconds) {
+                add(endpointHit, now);
+            }
+        }
+    }
+
+    public synchronized List<ViewStats> findHotUris(String uriPrefix, int limit) {
+        long now = System.currentTimeMillis() / 1_000;
+        return uris.top(limit, now, appUri -> uriPrefix == null ||
+                        dictionaryService.decode(DictionaryType.URI, uriId(appUri)).startsWith(uriPrefix)).stream()
+                .map(heavyHitter -> dictionaryService.toViewStats((int) (heavyHitter.key() >>> 32),
+                        uriId(heavyHitter.key()), heavyHitter.hits()))
+                .toList();
+    }
+
+    public synchronized List<IpStats> findHotIps(int limit) {
+        long now = System.currentTimeMillis() / 1_000;
+        return ips.top(limit, now, ip -> true).stream()
+                .map(heavyHitter -> new IpStats(IpAddresses.format(heavyHitter.key()), heavyHitter.hits()))
+                .toList();
+    }
+
+    private void add(EndpointHit endpointHit, long now) {
+        long appUri = (long) endpointHit.getAppId() << 32 | endpointHit.getUriId() & 0xffffffffL;
+        uris.add(HyperLogLog.mix(appUri), appUri, endpointHit.getHits(), now);
+        ips.add(HyperLogLog.hash(endpointHit.getIpAddress()), endpointHit.getIpAddress(), endpointHit.getHits(), now);
+    }
+
+    private static int uriId(long appUri) {
+        return (int) appUri;
+    }
+}
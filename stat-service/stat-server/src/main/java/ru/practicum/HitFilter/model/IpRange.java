@@ -0,0 +1,49 @@
+package ru.practicum.HitFilter.model;
+
+import ru.practicum.EndpointHit.model.IpAddresses;
+import ru.practicum.exception.IpAddressException;
+
+/**
+ * A CIDR block such as {@code 66.249.64.0/19} or {@code 2001:4860::/32}; a bare address is a block of one.
+ */
+public record IpRange(byte[] network, int prefixLength) {
+    public static IpRange parse(String cidr) {
+        String value = cidr.trim();
+        int slash = value.indexOf('/');
+        byte[] network = IpAddresses.parse(slash < 0 ? value : value.substring(0, slash));
+        int maxLength = network.length * Byte.SIZE;
+        int prefixLength;
+        try {
+            prefixLength = slash < 0 ? maxLength : Integer.parseInt(value.substring(slash + 1));
+        } catch (NumberFormatException e) {
+            throw new IpAddressException("Invalid ip range: " + cidr);
+        }
+        if (prefixLength < 0 || prefixLength > maxLength) {
+            throw new IpAddressException("Invalid ip range: " + cidr);
+        }
+        return new IpRange(network, prefixLength);
+    }
+
+    public boolean contains(byte[] address) {
+        if (address.length != network.length) {
+            return false;
+        }
+        int fullBytes = prefixLength / Byte.SIZE;
+        for (int i = 0; i < fullBytes; i++) {
+            if (address[i] != network[i]) {
+                return false;
+            }
+        }
+        int remainingBits = prefixLength % Byte.SIZE;
+        if (remainingBits == 0) {
+            return true;
+        }
+        int mask = 0xff << (Byte.SIZE - remainingBits) & 0xff;
+        return (address[fullBytes] & mask) == (network[fullBytes] & mask);
+    }
+
+    @Override
+    public String toString() {
+        return IpAddresses.format(network) + "/" + prefixLength;
+    }
+}
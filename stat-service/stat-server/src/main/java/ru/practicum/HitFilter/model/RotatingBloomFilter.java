@@ -0,0 +1,113 @@
+package ru.practicum.HitFilter.model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Remembers keys for a sliding window of time with a ring of Bloom filters, one per generation of
+ * {@code window / generations} seconds. A key counts as seen when any live generation may contain it; the oldest
+ * generation is cleared and reused when time moves past it, so the effective window is between
+ * {@code window * (generations - 1) / generations} and {@code window}. Time is the hit's own timestamp, keys older
+ * than the whole ring are always reported as new. Not thread-safe.
+ */
+public class RotatingBloomFilter {
+    private final int generations;
+    private final long generationSeconds;
+    private final long bitCount;
+    private final int hashCount;
+    private final long[][] bits;
+    private final long[] slots;
+    private long currentSlot = Long.MIN_VALUE;
+
+    public RotatingBloomFilter(int generations, long windowSeconds, long expectedKeys, double falsePositiveRate) {
+        if (generations < 2 || windowSeconds < generations || expectedKeys < 1 ||
+                falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter settings: " + generations + " generations, " +
+                    windowSeconds + " s window, " + expectedKeys + " keys, false positive rate " + falsePositiveRate);
+        }
+        this.generations = generations;
+        this.generationSeconds = windowSeconds / generations;
+        long optimalBits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = (optimalBits + Long.SIZE - 1) / Long.SIZE * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedKeys * Math.log(2)));
+        this.bits = new long[generations][(int) (bitCount / Long.SIZE)];
+        this.slots = new long[generations];
+        Arrays.fill(slots, Long.MIN_VALUE);
+    }
+
+    /**
+     * Records the key at the given time and returns {@code true} when it has not been seen inside the window.
+     * A key that has been seen is not recorded again, so a steady stream of repeats does not extend its lifetime.
+     */
+    public boolean put(long hash, long epochSecond) {
+        long slot = Math.floorDiv(epochSecond, generationSeconds);
+        if (slot > currentSlot) {
+            currentSlot = slot;
+        }
+        if (slot <= currentSlot - generations) {
+            return true;
+        }
+        for (int i = 0; i < generations; i++) {
+            if (slots[i] > currentSlot - generations && mightContain(bits[i], hash)) {
+                return false;
+            }
+        }
+        int index = (int) Math.floorMod(slot, generations);
+        if (slots[index] != slot) {
+            Arrays.fill(bits[index], 0);
+            slots[index] = slot;
+        }
+        long[] generation = bits[index];
+        long h1 = (int) hash;
+        long h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+            generation[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        return true;
+    }
+
+    public long getMemoryBytes() {
+        return (long) generations * bitCount / Byte.SIZE;
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate((5 + generations) * Long.BYTES + (int) getMemoryBytes());
+        buffer.putLong(generations).putLong(generationSeconds).putLong(bitCount).putLong(hashCount)
+                .putLong(currentSlot);
+        for (int i = 0; i < generations; i++) {
+            buffer.putLong(slots[i]);
+            buffer.asLongBuffer().put(bits[i]);
+            buffer.position(buffer.position() + bits[i].length * Long.BYTES);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Replaces the state with one written by {@link #toBytes} for a filter of the same shape.
+     */
+    public void restore(ByteBuffer buffer) {
+        if (buffer.getLong() != generations || buffer.getLong() != generationSeconds || buffer.getLong() != bitCount ||
+                buffer.getLong() != hashCount) {
+            throw new IllegalArgumentException("The saved filter has a different shape");
+        }
+        currentSlot = buffer.getLong();
+        for (int i = 0; i < generations; i++) {
+            slots[i] = buffer.getLong();
+            buffer.asLongBuffer().get(bits[i]);
+            buffer.position(buffer.position() + bits[i].length * Long.BYTES);
+        }
+    }
+
+    private boolean mightContain(long[] generation, long hash) {
+        long h1 = (int) hash;
+        long h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+            if ((generation[(int) (bit >>> 6)] & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
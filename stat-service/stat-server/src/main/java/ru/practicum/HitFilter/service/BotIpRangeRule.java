@@ -0,0 +1,40 @@
+package ru.practicum.HitFilter.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.HitFilter.model.IpRange;
+
+import java.util.List;
+
+@Component
+@Slf4j
+public class BotIpRangeRule implements HitRule {
+    private final List<IpRange> ranges;
+
+    public BotIpRangeRule(@Value("${stat-server.ingest-filter.bot-ip-ranges:}") List<String> ranges) {
+        this.ranges = ranges.stream()
+                .filter(range -> !range.isBlank())
+                .map(IpRange::parse)
+                .toList();
+        if (!this.ranges.isEmpty()) {
+            log.info("Hits from {} bot ip ranges will be dropped", this.ranges.size());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "bot-ip-range";
+    }
+
+    @Override
+    public boolean rejects(EndpointHit endpointHit) {
+        for (IpRange range : ranges) {
+            if (range.contains(endpointHit.getIpAddress())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
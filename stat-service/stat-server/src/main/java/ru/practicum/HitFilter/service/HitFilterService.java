@@ -0,0 +1,154 @@
+package ru.practicum.HitFilter.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.HitFilter.model.RotatingBloomFilter;
+import ru.practicum.Sketch.model.HyperLogLog;
+import ru.practicum.Snapshot.service.SnapshotParticipant;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@Slf4j
+public class HitFilterService implements SnapshotParticipant {
+    private final boolean enabled;
+    private final List<HitRule> hitRules;
+    private final List<Counter> ruleDrops;
+    private final RotatingBloomFilter duplicates;
+    private final Counter duplicateDrops;
+    private final Counter accepted;
+
+    public HitFilterService(MeterRegistry meterRegistry,
+                            List<HitRule> hitRules,
+                            @Value("${stat-server.ingest-filter.enabled:false}") boolean enabled,
+                            @Value("${stat-server.ingest-filter.dedup-window:10m}") Duration dedupWindow,
+                            @Value("${stat-server.ingest-filter.dedup-generations:4}") int dedupGenerations,
+                            @Value("${stat-server.ingest-filter.dedup-expected-hits:1000000}") long expectedHits,
+                            @Value("${stat-server.ingest-filter.dedup-false-positive-rate:0.001}")
+                            double falsePositiveRate) {
+        this.enabled = enabled;
+        this.hitRules = hitRules;
+        this.ruleDrops = hitRules.stream()
+                .map(hitRule -> meterRegistry.counter("stat.ingest-filter.dropped", "reason", hitRule.getName()))
+                .toList();
+        this.duplicateDrops = meterRegistry.counter("stat.ingest-filter.dropped", "reason", "duplicate");
+        this.accepted = meterRegistry.counter("stat.ingest-filter.accepted");
+        if (enabled && !dedupWindow.isZero()) {
+            this.duplicates = new RotatingBloomFilter(dedupGenerations, dedupWindow.toSeconds(), expectedHits,
+                    falsePositiveRate);
+            log.info("Duplicate hits inside {} will be dropped, the filter takes {} bytes", dedupWindow,
+                    duplicates.getMemoryBytes());
+        } else {
+            this.duplicates = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the hits that pass every rule. Rules only look at the parsed ip, so this runs before the hits are
+     * encoded and a rejected hit never adds its app or uri to the dictionaries.
+     */
+    public List<EndpointHit> applyRules(List<EndpointHit> endpointHits) {
+        List<EndpointHit> result = new ArrayList<>(endpointHits.size());
+        for (EndpointHit endpointHit : endpointHits) {
+            int rule = rejectingRule(endpointHit);
+            if (rule >= 0) {
+                ruleDrops.get(rule).increment(endpointHit.getHits());
+                continue;
+            }
+            result.add(endpointHit);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the hits that have not been seen for the same app, uri and ip inside the dedup window. A weighted hit
+     * that passes counts as a single view, the rest of its weight are repeats of it. The hits must already be
+     * encoded; a repeat refers to the app and uri of a hit that has been stored, so encoding it adds no entry.
+     */
+    public List<EndpointHit> dropDuplicates(List<EndpointHit> endpointHits) {
+        List<EndpointHit> result = new ArrayList<>(endpointHits.size());
+        for (EndpointHit endpointHit : endpointHits) {
+            if (duplicates != null) {
+                if (!isFirstInWindow(endpointHit)) {
+                    duplicateDrops.increment(endpointHit.getHits());
+                    continue;
+                }
+                if (endpointHit.getHits() > 1) {
+                    duplicateDrops.increment(endpointHit.getHits() - 1);
+                    endpointHit.setHits(1);
+                }
+            }
+            result.add(endpointHit);
+        }
+        accepted.increment(result.size());
+        if (result.size() < endpointHits.size()) {
+            log.debug("{} of {} hits have been dropped by the ingest filter", endpointHits.size() - result.size(),
+                    endpointHits.size());
+        }
+        return result;
+    }
+
+    @Override
+    public String getSnapshotName() {
+        return "ingest-filter";
+    }
+
+    @Override
+    public boolean isSnapshotEnabled() {
+        return duplicates != null;
+    }
+
+    @Override
+    public byte[] snapshot() {
+        synchronized (duplicates) {
+            return duplicates.toBytes();
+        }
+    }
+
+    @Override
+    public void restore(ByteBuffer state) {
+        synchronized (duplicates) {
+            duplicates.restore(state);
+        }
+    }
+
+    /**
+     * Records the replayed hits in the dedup window. They have been accepted already, so the result is not used.
+     */
+    @Override
+    public void replay(List<EndpointHit> endpointHits) {
+        for (EndpointHit endpointHit : endpointHits) {
+            isFirstInWindow(endpointHit);
+        }
+    }
+
+    private int rejectingRule(EndpointHit endpointHit) {
+        for (int i = 0; i < hitRules.size(); i++) {
+            if (hitRules.get(i).rejects(endpointHit)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isFirstInWindow(EndpointHit endpointHit) {
+        long key = HyperLogLog.mix(HyperLogLog.hash(endpointHit.getIpAddress()) ^
+                ((long) endpointHit.getAppId() << 32 | endpointHit.getUriId() & 0xffffffffL));
+        long epochSecond = endpointHit.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+        synchronized (duplicates) {
+            return duplicates.put(key, epochSecond);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package ru.practicum.HitFilter.service;
+
+import ru.practicum.EndpointHit.model.EndpointHit;
+
+/**
+ * A rule that rejects hits before they are stored. Every rule bean is picked up by {@link HitFilterService}; the
+ * name tags the rule's counter of dropped hits. Rules run before the hits are encoded, so the app and uri ids are
+ * not set yet.
+ */
+public interface HitRule {
+    String getName();
+
+    boolean rejects(EndpointHit endpointHit);
+}
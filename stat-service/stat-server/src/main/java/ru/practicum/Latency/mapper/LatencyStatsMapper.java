@@ -0,0 +1,13 @@
+package ru.practicum.Latency.mapper;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.MappingConstants;
+import ru.practicum.Latency.model.LatencyStats;
+import ru.practicum.LatencyStatsDto;
+
+import java.util.List;
+
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING)
+public interface LatencyStatsMapper {
+    List<LatencyStatsDto> listLatencyStatsToListLatencyStatsDto(List<LatencyStats> latencyStats);
+}
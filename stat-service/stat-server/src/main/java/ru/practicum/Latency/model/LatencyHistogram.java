@@ -0,0 +1,138 @@
+package ru.practicum.Latency.model;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A mergeable log-linear latency histogram in the style of HdrHistogram. Values below 2^PRECISION get a bucket each,
+ * larger values are split into 2^(PRECISION - 1) linear sub-buckets per power of two, so a reported percentile is
+ * within 1/64 of the recorded value. Counts are stored sparsely as varint pairs of index delta and count.
+ */
+public class LatencyHistogram {
+    private static final int PRECISION = 7;
+    private static final int SUB_BUCKETS = 1 << PRECISION;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    private long[] counts = new long[SUB_BUCKETS];
+    private long totalCount;
+    private long maxValue;
+
+    public static LatencyHistogram fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.maxValue = readVarLong(buffer);
+        int index = -1;
+        while (buffer.hasRemaining()) {
+            index += (int) readVarLong(buffer) + 1;
+            long count = readVarLong(buffer);
+            histogram.ensureIndex(index);
+            histogram.counts[index] += count;
+            histogram.totalCount += count;
+        }
+        return histogram;
+    }
+
+    public void record(long value, long count) {
+        long clamped = Math.max(0, value);
+        int index = indexOf(clamped);
+        ensureIndex(index);
+        counts[index] += count;
+        totalCount += count;
+        maxValue = Math.max(maxValue, clamped);
+    }
+
+    public void merge(LatencyHistogram other) {
+        long[] otherCounts = other.counts;
+        ensureIndex(otherCounts.length - 1);
+        for (int i = 0; i < otherCounts.length; i++) {
+            counts[i] += otherCounts[i];
+        }
+        totalCount += other.totalCount;
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * Returns the highest value equivalent to the recorded value at the given percentile, capped by the maximum.
+     */
+    public long valueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writeVarLong(output, maxValue);
+        int previous = -1;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                writeVarLong(output, i - previous - 1);
+                writeVarLong(output, counts[i]);
+                previous = i;
+            }
+        }
+        return output.toByteArray();
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - PRECISION;
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) (value >>> shift) - HALF_SUB_BUCKETS;
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    private void ensureIndex(int index) {
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length * 2));
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream output, long value) {
+        long remaining = value;
+        while ((remaining & ~0x7fL) != 0) {
+            output.write((int) (remaining & 0x7f | 0x80));
+            remaining >>>= 7;
+        }
+        output.write((int) remaining);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
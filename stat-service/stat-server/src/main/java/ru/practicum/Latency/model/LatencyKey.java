@@ -0,0 +1,8 @@
+package ru.practicum.Latency.model;
+
+import ru.practicum.Rollup.model.RollupGranularity;
+
+import java.time.LocalDateTime;
+
+public record LatencyKey(RollupGranularity granularity, LocalDateTime bucket, Integer appId, Integer uriId) {
+}
@@ -0,0 +1,16 @@
+package ru.practicum.Latency.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class LatencyStats {
+    private String app;
+    private String uri;
+    private long count;
+    private long p50Micros;
+    private long p95Micros;
+    private long p99Micros;
+    private long maxMicros;
+}
@@ -0,0 +1,74 @@
+package ru.practicum.Latency.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.Dictionary.model.UriFilter;
+import ru.practicum.Dictionary.repository.UriFilterSql;
+import ru.practicum.Latency.model.LatencyKey;
+import ru.practicum.Rollup.model.BucketRange;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@Repository
+public class LatencyRepository {
+    private static final String UPDATE_SQL = "update statistics_latency set histogram = ?, flush_sequence = ? " +
+            "where granularity = ? and bucket = ? and app_id = ? and uri_id = ?";
+    private static final String INSERT_SQL = "insert into statistics_latency " +
+            "(histogram, flush_sequence, granularity, bucket, app_id, uri_id) values (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public LatencyRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    public byte[] find(LatencyKey key) {
+        List<byte[]> histograms = jdbcTemplate.query("select histogram from statistics_latency " +
+                        "where granularity = ? and bucket = ? and app_id = ? and uri_id = ?",
+                (rs, rowNum) -> rs.getBytes("histogram"),
+                key.granularity().name(), Timestamp.valueOf(key.bucket()), key.appId(), key.uriId());
+        return histograms.isEmpty() ? null : histograms.getFirst();
+    }
+
+    /**
+     * Returns the sequence of the last flush of the histogram, or {@code null} if it has not been stored yet.
+     */
+    public Long findFlushSequence(LatencyKey key) {
+        List<Long> sequences = jdbcTemplate.query("select flush_sequence from statistics_latency " +
+                        "where granularity = ? and bucket = ? and app_id = ? and uri_id = ?",
+                (rs, rowNum) -> rs.getLong("flush_sequence"),
+                key.granularity().name(), Timestamp.valueOf(key.bucket()), key.appId(), key.uriId());
+        return sequences.isEmpty() ? null : sequences.getFirst();
+    }
+
+    public long findMaxFlushSequence() {
+        Long sequence = jdbcTemplate.queryForObject("select max(flush_sequence) from statistics_latency", Long.class);
+        return sequence == null ? 0 : sequence;
+    }
+
+    public void save(LatencyKey key, byte[] histogram, long flushSequence) {
+        Object[] args = {histogram, flushSequence, key.granularity().name(), Timestamp.valueOf(key.bucket()),
+                key.appId(), key.uriId()};
+        if (jdbcTemplate.update(UPDATE_SQL, args) == 0) {
+            jdbcTemplate.update(INSERT_SQL, args);
+        }
+    }
+
+    public void findHistograms(List<BucketRange> bucketRanges, UriFilter uriFilter, RowCallbackHandler handler) {
+        for (BucketRange range : bucketRanges) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("granularity", range.granularity().name())
+                    .addValue("from", Timestamp.valueOf(range.from()))
+                    .addValue("to", Timestamp.valueOf(range.to()));
+            namedParameterJdbcTemplate.query("select app_id, uri_id, histogram from statistics_latency " +
+                    "where granularity = :granularity and bucket >= :from and bucket < :to " +
+                    "and " + UriFilterSql.predicate("uri_id", uriFilter, params), params, handler);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package ru.practicum.Latency.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.Dictionary.model.DictionaryType;
+import ru.practicum.Dictionary.model.UriFilter;
+import ru.practicum.Dictionary.service.DictionaryService;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.EndpointHit.service.HitIngestListener;
+import ru.practicum.Latency.model.LatencyHistogram;
+import ru.practicum.Latency.model.LatencyKey;
+import ru.practicum.Latency.model.LatencyStats;
+import ru.practicum.Latency.repository.LatencyRepository;
+import ru.practicum.Rollup.model.BucketRange;
+import ru.practicum.Rollup.model.RollupGranularity;
+import ru.practicum.Rollup.model.RollupPlan;
+import ru.practicum.Snapshot.service.SnapshotParticipant;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps latency histograms per hour and day bucket. Recorded latencies are added to in-memory histograms and merged
+ * into the latency table periodically. Latencies are not stored with the hits, so the histograms not flushed yet are
+ * kept in the snapshot: every stored histogram carries the sequence number of the flush that wrote it, and a restored
+ * histogram is dropped if its bucket has been flushed after the snapshot was taken.
+ */
+@Service
+@Slf4j
+public class LatencyService implements HitIngestListener, SnapshotParticipant {
+    private static final List<RollupGranularity> GRANULARITIES = List.of(RollupGranularity.HOUR, RollupGranularity.DAY);
+    private static final int KEY_BYTES = 1 + Long.BYTES + 2 * Integer.BYTES;
+
+    private final LatencyRepository latencyRepository;
+    private final DictionaryService dictionaryService;
+    private final boolean enabled;
+    private final Map<LatencyKey, LatencyHistogram> pending = new ConcurrentHashMap<>();
+    private final Map<LatencyKey, LatencyHistogram> flushing = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private long flushSequence;
+
+    public LatencyService(LatencyRepository latencyRepository,
+                          DictionaryService dictionaryService,
+                          @Value("${stat-server.latency.enabled:true}") boolean enabled) {
+        this.latencyRepository = latencyRepository;
+        this.dictionaryService = dictionaryService;
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            flushSequence = latencyRepository.findMaxFlushSequence();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> endpointHits) {
+        if (!enabled) {
+            return;
+        }
+        for (EndpointHit endpointHit : endpointHits) {
+            Long latencyMicros = endpointHit.getLatencyMicros();
+            List<Long> latenciesMicros = endpointHit.getLatenciesMicros();
+            if (latencyMicros == null && latenciesMicros == null) {
+                continue;
+            }
+            for (RollupGranularity granularity : GRANULARITIES) {
+                LatencyKey key = new LatencyKey(granularity, granularity.floor(endpointHit.getTimestamp()),
+                        endpointHit.getAppId(), endpointHit.getUriId());
+                pending.compute(key, (k, histogram) -> {
+                    LatencyHistogram result = histogram == null ? new LatencyHistogram() : histogram;
+                    if (latenciesMicros != null) {
+                        latenciesMicros.forEach(sample -> result.record(sample, 1));
+                    } else {
+                        result.record(latencyMicros, endpointHit.getHits());
+                    }
+                    return result;
+                });
+            }
+        }
+    }
+
+    /**
+     * Moves each pending histogram to {@code flushing} in one step under its map entry, so no hit is recorded into
+     * it afterwards, and merges it with the stored histogram into a new one. Histograms a reader can see are never
+     * modified by the flush. Each histogram is flushed under the flush lock, so a snapshot sees it either pending or
+     * stored with its flush sequence. A histogram that cannot be stored is merged back into the pending one of its
+     * bucket and retried with the next flush; the other buckets are flushed regardless.
+     */
+    @Scheduled(fixedDelayString = "${stat-server.latency.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        int failed = 0;
+        RuntimeException lastFailure = null;
+        for (LatencyKey key : List.copyOf(pending.keySet())) {
+            synchronized (flushLock) {
+                pending.computeIfPresent(key, (k, histogram) -> {
+                    flushing.put(k, histogram);
+                    return null;
+                });
+                LatencyHistogram histogram = flushing.get(key);
+                if (histogram == null) {
+                    continue;
+                }
+                try {
+                    byte[] stored = latencyRepository.find(key);
+                    LatencyHistogram merged = stored == null ? new LatencyHistogram() :
+                            LatencyHistogram.fromBytes(stored);
+                    merged.merge(histogram);
+                    latencyRepository.save(key, merged.toBytes(), ++flushSequence);
+                } catch (RuntimeException e) {
+                    failed++;
+                    lastFailure = e;
+                    pending.merge(key, histogram, (current, unflushed) -> {
+                        current.merge(unflushed);
+                        return current;
+                    });
+                } finally {
+                    flushing.remove(key);
+                }
+            }
+        }
+        if (lastFailure != null) {
+            log.warn("Flushing {} latency histograms failed, they stay pending until the next flush: {}", failed,
+                    lastFailure.getMessage());
+        } else {
+            log.debug("Latency histograms have been flushed");
+        }
+    }
+
+    @Override
+    public String getSnapshotName() {
+        return "latency";
+    }
+
+    @Override
+    public boolean isSnapshotEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public byte[] snapshot() {
+        List<LatencyKey> keys = new ArrayList<>();
+        List<byte[]> histograms = new ArrayList<>();
+        long sequence;
+        synchronized (flushLock) {
+            sequence = flushSequence;
+            for (Map<LatencyKey, LatencyHistogram> inMemory : List.of(pending, flushing)) {
+                inMemory.keySet().forEach(key -> inMemory.computeIfPresent(key, (k, histogram) -> {
+                    keys.add(k);
+                    histograms.add(histogram.toBytes());
+                    return histogram;
+                }));
+            }
+        }
+        int size = Long.BYTES + Integer.BYTES;
+        for (byte[] bytes : histograms) {
+            size += KEY_BYTES + Integer.BYTES + bytes.length;
+        }
+        ByteBuffer state = ByteBuffer.allocate(size).putLong(sequence).putInt(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            LatencyKey key = keys.get(i);
+            state.put((byte) key.granularity().ordinal())
+                    .putLong(key.bucket().toEpochSecond(ZoneOffset.UTC))
+                    .putInt(key.appId())
+                    .putInt(key.uriId())
+                    .putInt(histograms.get(i).length)
+                    .put(histograms.get(i));
+        }
+        return state.array();
+    }
+
+    /**
+     * Takes back the histograms of the snapshot whose bucket has not been flushed since: a later flush would have
+     * moved the whole pending histogram, including the part in the snapshot, into the table.
+     */
+    @Override
+    public void restore(ByteBuffer state) {
+        long sequence = state.getLong();
+        int count = state.getInt();
+        int restored = 0;
+        for (int i = 0; i < count; i++) {
+            LatencyKey key = new LatencyKey(RollupGranularity.values()[state.get()],
+                    LocalDateTime.ofEpochSecond(state.getLong(), 0, ZoneOffset.UTC), state.getInt(), state.getInt());
+            byte[] bytes = new byte[state.getInt()];
+            state.get(bytes);
+            Long flushed = latencyRepository.findFlushSequence(key);
+            if (flushed != null && flushed > sequence) {
+                continue;
+            }
+            pending.merge(key, LatencyHistogram.fromBytes(bytes), (a, b) -> {
+                a.merge(b);
+                return a;
+            });
+            restored++;
+        }
+        log.info("Restored {} of {} latency histograms from the snapshot", restored, count);
+    }
+
+    /**
+     * Latencies are not stored with the hits, so the hits stored since the snapshot cannot add to the histograms.
+     */
+    @Override
+    public void replay(List<EndpointHit> endpointHits) {
+    }
+
+    @PreDestroy
+    public void close() {
+        if (enabled) {
+            flush();
+        }
+    }
+
+    /**
+     * Merges the hourly and daily histograms of every bucket that overlaps the range. Histograms are kept per bucket
+     * only, so a range that does not start and end on whole hours also takes in the rest of its edge hours.
+     */
+    public List<LatencyStats> findLatencyStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter) {
+        if (uriFilter.isEmpty()) {
+            return List.of();
+        }
+        RollupPlan plan = RollupPlan.covering(start, end, GRANULARITIES);
+        Map<AppUri, LatencyHistogram> merged = new HashMap<>();
+
+        mergeInMemory(pending, plan.bucketRanges(), uriFilter, merged);
+        mergeInMemory(flushing, plan.bucketRanges(), uriFilter, merged);
+        latencyRepository.findHistograms(plan.bucketRanges(), uriFilter, rs -> {
+            int uriId = rs.getInt("uri_id");
+            if (dictionaryService.matches(uriFilter, uriId)) {
+                histogramFor(merged, rs.getInt("app_id"), uriId)
+                        .merge(LatencyHistogram.fromBytes(rs.getBytes("histogram")));
+            }
+        });
+
+        List<LatencyStats> latencyStats = new ArrayList<>(merged.size());
+        merged.forEach((appUri, histogram) -> latencyStats.add(new LatencyStats(
+                dictionaryService.decode(DictionaryType.APP, appUri.appId()),
+                dictionaryService.decode(DictionaryType.URI, appUri.uriId()),
+                histogram.getTotalCount(),
+                histogram.valueAtPercentile(50),
+                histogram.valueAtPercentile(95),
+                histogram.valueAtPercentile(99),
+                histogram.getMaxValue())));
+        latencyStats.sort((a, b) -> Long.compare(b.getP99Micros(), a.getP99Micros()));
+        return latencyStats;
+    }
+
+    private void mergeInMemory(Map<LatencyKey, LatencyHistogram> histograms, List<BucketRange> bucketRanges,
+                               UriFilter uriFilter, Map<AppUri, LatencyHistogram> merged) {
+        histograms.keySet().forEach(key -> {
+            if (!dictionaryService.matches(uriFilter, key.uriId())) {
+                return;
+            }
+            for (BucketRange range : bucketRanges) {
+                if (range.granularity() == key.granularity() && !key.bucket().isBefore(range.from())
+                        && key.bucket().isBefore(range.to())) {
+                    // Read under the map entry, onHits records into pending histograms inside compute
+                    histograms.computeIfPresent(key, (k, current) -> {
+                        histogramFor(merged, k.appId(), k.uriId()).merge(current);
+                        return current;
+                    });
+                    return;
+                }
+            }
+        });
+    }
+
+    private LatencyHistogram histogramFor(Map<AppUri, LatencyHistogram> merged, Integer appId, Integer uriId) {
+        return merged.computeIfAbsent(new AppUri(appId, uriId), k -> new LatencyHistogram());
+    }
+
+    private record AppUri(Integer appId, Integer uriId) {
+    }
+}
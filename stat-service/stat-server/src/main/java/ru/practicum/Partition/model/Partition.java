@@ -0,0 +1,14 @@
+package ru.practicum.Partition.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@AllArgsConstructor
+public class Partition {
+    private String name;
+    private LocalDateTime from;
+    private LocalDateTime to;
+}
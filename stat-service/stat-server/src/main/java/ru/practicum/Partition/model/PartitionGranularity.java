@@ -0,0 +1,43 @@
+package ru.practicum.Partition.model;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+public enum PartitionGranularity {
+    DAY(DateTimeFormatter.ofPattern("yyyyMMdd")) {
+        @Override
+        public LocalDate floor(LocalDate date) {
+            return date;
+        }
+
+        @Override
+        public LocalDate next(LocalDate from) {
+            return from.plusDays(1);
+        }
+    },
+    MONTH(DateTimeFormatter.ofPattern("yyyyMM")) {
+        @Override
+        public LocalDate floor(LocalDate date) {
+            return date.withDayOfMonth(1);
+        }
+
+        @Override
+        public LocalDate next(LocalDate from) {
+            return from.plusMonths(1);
+        }
+    };
+
+    private final DateTimeFormatter suffixFormatter;
+
+    PartitionGranularity(DateTimeFormatter suffixFormatter) {
+        this.suffixFormatter = suffixFormatter;
+    }
+
+    public abstract LocalDate floor(LocalDate date);
+
+    public abstract LocalDate next(LocalDate from);
+
+    public String partitionName(String table, LocalDate from) {
+        return table + "_p" + from.format(suffixFormatter);
+    }
+}
@@ -0,0 +1,98 @@
+package ru.practicum.Partition.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.Partition.model.Partition;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Repository
+@RequiredArgsConstructor
+public class PartitionRepository {
+    private static final Pattern BOUNDS = Pattern.compile("FROM \\('([^']+)'\\) TO \\('([^']+)'\\)");
+    private static final DateTimeFormatter BOUND_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean isPartitioned(String table) {
+        List<String> kinds = jdbcTemplate.queryForList("select relkind::text from pg_class " +
+                "where relname = ? and relnamespace = current_schema()::regnamespace", String.class, table);
+        return kinds.contains("p");
+    }
+
+    public boolean exists(String relation) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("select to_regclass(?) is not null", Boolean.class,
+                relation));
+    }
+
+    public String findDefaultPartition(String table) {
+        List<String> partitions = jdbcTemplate.queryForList("select c.relname from pg_inherits i " +
+                "join pg_class c on c.oid = i.inhrelid " +
+                "join pg_class p on p.oid = i.inhparent " +
+                "where p.relname = ? and p.relnamespace = current_schema()::regnamespace " +
+                "and pg_get_expr(c.relpartbound, c.oid) = 'DEFAULT'", String.class, table);
+        return partitions.isEmpty() ? null : partitions.getFirst();
+    }
+
+    /**
+     * Creates the partition as a plain table, moves the rows of its range out of the default partition into it and
+     * attaches it; must run inside a transaction. {@code CREATE TABLE ... PARTITION OF} would fail once the default
+     * partition holds such rows, and it locks the parent exclusively, while attaching lets writers continue. Inserts
+     * into the default partition wait from the move until the commit.
+     */
+    public long createMovingDefaultRows(String table, String partition, String defaultPartition, LocalDate from,
+                                        LocalDate to) {
+        jdbcTemplate.execute("CREATE TABLE " + partition + " (LIKE " + table +
+                " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        long moved = 0;
+        if (defaultPartition != null) {
+            jdbcTemplate.execute("LOCK TABLE " + defaultPartition + " IN SHARE ROW EXCLUSIVE MODE");
+            moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + defaultPartition +
+                    " WHERE timestamp >= ? AND timestamp < ? RETURNING *) INSERT INTO " + partition +
+                    " SELECT * FROM moved", Timestamp.valueOf(from.atStartOfDay()),
+                    Timestamp.valueOf(to.atStartOfDay()));
+        }
+        jdbcTemplate.execute("ALTER TABLE " + table + " ATTACH PARTITION " + partition +
+                " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        return moved;
+    }
+
+    public void drop(String partition) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition);
+    }
+
+    public int deleteHitsBefore(String partition, LocalDateTime before) {
+        return jdbcTemplate.update("delete from " + partition + " where timestamp < ?", Timestamp.valueOf(before));
+    }
+
+    public int deleteBuckets(String table, String granularity, LocalDateTime through) {
+        return jdbcTemplate.update("delete from " + table + " where granularity = ? and bucket <= ?", granularity,
+                Timestamp.valueOf(through));
+    }
+
+    public List<Partition> findRangePartitions(String table) {
+        return jdbcTemplate.query("select c.relname, pg_get_expr(c.relpartbound, c.oid) as bound " +
+                        "from pg_inherits i " +
+                        "join pg_class c on c.oid = i.inhrelid " +
+                        "join pg_class p on p.oid = i.inhparent " +
+                        "where p.relname = ? and p.relnamespace = current_schema()::regnamespace",
+                (rs, rowNum) -> {
+                    Matcher matcher = BOUNDS.matcher(rs.getString("bound"));
+                    if (!matcher.find()) {
+                        return null;
+                    }
+                    return new Partition(rs.getString("relname"), LocalDateTime.parse(matcher.group(1), BOUND_FORMATTER),
+                            LocalDateTime.parse(matcher.group(2), BOUND_FORMATTER));
+                }, table).stream()
+                .filter(Objects::nonNull)
+                .toList();
+    }
+}
@@ -0,0 +1,127 @@
+package ru.practicum.Partition.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.Partition.model.Partition;
+import ru.practicum.Partition.model.PartitionGranularity;
+import ru.practicum.Partition.repository.PartitionRepository;
+import ru.practicum.Rollup.model.RollupGranularity;
+import ru.practicum.config.DatabasePlatform;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "stat-server.partition.enabled", havingValue = "true")
+public class PartitionService {
+    private static final String TABLE = "statistics";
+    private static final List<String> AGGREGATE_TABLES = List.of("statistics_rollup",
+            "statistics_rollup_threshold", "statistics_sketch", "statistics_latency");
+
+    private final PartitionRepository partitionRepository;
+    private final PartitionGranularity granularity;
+    private final int premake;
+    private final Duration retention;
+    private final boolean active;
+    private final TransactionTemplate transactionTemplate;
+
+    public PartitionService(PartitionRepository partitionRepository,
+                            DatabasePlatform databasePlatform,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${stat-server.partition.granularity:DAY}") PartitionGranularity granularity,
+                            @Value("${stat-server.partition.premake:7}") int premake,
+                            @Value("${stat-server.partition.retention:0d}") Duration retention) {
+        this.partitionRepository = partitionRepository;
+        this.granularity = granularity;
+        this.premake = premake;
+        this.retention = retention;
+        this.active = databasePlatform.isPostgres() && partitionRepository.isPartitioned(TABLE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        if (!active) {
+            log.warn("The {} table is not range partitioned, partition maintenance is disabled", TABLE);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${stat-server.partition.cron:0 5 * * * *}")
+    public void maintain() {
+        if (!active) {
+            return;
+        }
+        createAhead();
+        if (!retention.isZero()) {
+            dropExpired();
+        }
+    }
+
+    private void createAhead() {
+        LocalDate from = granularity.floor(LocalDate.now());
+        for (int i = 0; i <= premake; i++) {
+            LocalDate to = granularity.next(from);
+            String partition = granularity.partitionName(TABLE, from);
+            if (!partitionRepository.exists(partition)) {
+                create(partition, from, to);
+            }
+            from = to;
+        }
+    }
+
+    private void create(String partition, LocalDate from, LocalDate to) {
+        String defaultPartition = partitionRepository.findDefaultPartition(TABLE);
+        Long moved = transactionTemplate.execute(status ->
+                partitionRepository.createMovingDefaultRows(TABLE, partition, defaultPartition, from, to));
+        if (moved != null && moved > 0) {
+            log.info("Created partition {} and moved {} hits into it from {}", partition, moved, defaultPartition);
+        } else {
+            log.info("Created partition {} for hits from {} to {}", partition, from, to);
+        }
+    }
+
+    private void dropExpired() {
+        LocalDateTime threshold = LocalDateTime.now().minus(retention);
+        for (Partition partition : partitionRepository.findRangePartitions(TABLE)) {
+            if (!partition.getTo().isAfter(threshold)) {
+                log.info("Dropping partition {} with hits from {} to {}", partition.getName(), partition.getFrom(),
+                        partition.getTo());
+                partitionRepository.drop(partition.getName());
+            }
+        }
+        deleteExpiredRows(granularity.floor(threshold.toLocalDate()).atStartOfDay());
+    }
+
+    /**
+     * Deletes what the dropped partitions leave behind: hits before the oldest partition kept that sit in the default
+     * partition, and the rollup, sketch and latency buckets that end by its start.
+     */
+    private void deleteExpiredRows(LocalDateTime horizon) {
+        String defaultPartition = partitionRepository.findDefaultPartition(TABLE);
+        int[] deleted = transactionTemplate.execute(status -> {
+            int hits = defaultPartition == null ? 0 : partitionRepository.deleteHitsBefore(defaultPartition, horizon);
+            int buckets = 0;
+            for (String table : AGGREGATE_TABLES) {
+                for (RollupGranularity bucketGranularity : RollupGranularity.values()) {
+                    buckets += partitionRepository.deleteBuckets(table, bucketGranularity.name(),
+                            horizon.minus(bucketGranularity.getDuration()));
+                }
+            }
+            return new int[]{hits, buckets};
+        });
+        if (deleted != null && deleted[0] + deleted[1] > 0) {
+            log.info("Deleted {} hits of {} and {} aggregate buckets before {}", deleted[0], defaultPartition,
+                    deleted[1], horizon);
+        }
+    }
+}
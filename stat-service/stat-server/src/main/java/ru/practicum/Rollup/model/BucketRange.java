@@ -0,0 +1,6 @@
+package ru.practicum.Rollup.model;
+
+import java.time.LocalDateTime;
+
+public record BucketRange(RollupGranularity granularity, LocalDateTime from, LocalDateTime to) {
+}
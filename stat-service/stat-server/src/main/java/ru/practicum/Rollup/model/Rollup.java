@@ -0,0 +1,16 @@
+package ru.practicum.Rollup.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@AllArgsConstructor
+public class Rollup {
+    private RollupGranularity granularity;
+    private LocalDateTime bucket;
+    private Integer appId;
+    private Integer uriId;
+    private Long hits;
+}
@@ -0,0 +1,38 @@
+package ru.practicum.Rollup.model;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+public enum RollupGranularity {
+    MINUTE(ChronoUnit.MINUTES),
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    RollupGranularity(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? time : floor.plus(1, unit);
+    }
+
+    public LocalDateTime next(LocalDateTime time) {
+        return floor(time).plus(1, unit);
+    }
+
+    public long between(LocalDateTime from, LocalDateTime to) {
+        return unit.between(from, to);
+    }
+
+    public Duration getDuration() {
+        return unit.getDuration();
+    }
+}
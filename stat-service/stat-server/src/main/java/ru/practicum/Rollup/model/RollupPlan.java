@@ -0,0 +1,74 @@
+package ru.practicum.Rollup.model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the open interval (start, end) into raw edges and the coarsest whole buckets between them:
+ * raw hits are read for (start, rawHeadEnd) and [rawTailStart, end), rollups for every bucket range.
+ */
+public record RollupPlan(LocalDateTime start,
+                         LocalDateTime rawHeadEnd,
+                         LocalDateTime rawTailStart,
+                         LocalDateTime end,
+                         List<BucketRange> bucketRanges) {
+
+    public static RollupPlan of(LocalDateTime start, LocalDateTime end) {
+        return of(start, end, List.of(RollupGranularity.values()));
+    }
+
+    public static RollupPlan raw(LocalDateTime start, LocalDateTime end) {
+        return new RollupPlan(start, end, end, end, List.of());
+    }
+
+    public static RollupPlan of(LocalDateTime start, LocalDateTime end, List<RollupGranularity> granularities) {
+        RollupGranularity finest = granularities.getFirst();
+        LocalDateTime from = finest.next(start);
+        LocalDateTime to = finest.floor(end);
+        if (!from.isBefore(to)) {
+            return raw(start, end);
+        }
+        List<BucketRange> bucketRanges = new ArrayList<>();
+        cover(from, to, granularities, 0, bucketRanges);
+        return new RollupPlan(start, from, to, end, bucketRanges);
+    }
+
+    /**
+     * Covers every bucket of the finest granularity that overlaps (start, end), for aggregates kept without raw hits.
+     */
+    public static RollupPlan covering(LocalDateTime start, LocalDateTime end, List<RollupGranularity> granularities) {
+        RollupGranularity finest = granularities.getFirst();
+        LocalDateTime from = finest.floor(start);
+        LocalDateTime to = finest.ceil(end);
+        List<BucketRange> bucketRanges = new ArrayList<>();
+        if (from.isBefore(to)) {
+            cover(from, to, granularities, 0, bucketRanges);
+        }
+        return new RollupPlan(from, from, to, to, bucketRanges);
+    }
+
+    private static void cover(LocalDateTime from, LocalDateTime to, List<RollupGranularity> granularities, int level,
+                              List<BucketRange> bucketRanges) {
+        RollupGranularity granularity = granularities.get(level);
+        if (level + 1 < granularities.size()) {
+            RollupGranularity coarser = granularities.get(level + 1);
+            LocalDateTime coarserFrom = coarser.ceil(from);
+            LocalDateTime coarserTo = coarser.floor(to);
+            if (coarserFrom.isBefore(coarserTo)) {
+                addRange(granularity, from, coarserFrom, bucketRanges);
+                cover(coarserFrom, coarserTo, granularities, level + 1, bucketRanges);
+                addRange(granularity, coarserTo, to, bucketRanges);
+                return;
+            }
+        }
+        addRange(granularity, from, to, bucketRanges);
+    }
+
+    private static void addRange(RollupGranularity granularity, LocalDateTime from, LocalDateTime to,
+                                 List<BucketRange> bucketRanges) {
+        if (from.isBefore(to)) {
+            bucketRanges.add(new BucketRange(granularity, from, to));
+        }
+    }
+}
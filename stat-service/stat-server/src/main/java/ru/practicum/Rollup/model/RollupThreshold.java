@@ -0,0 +1,8 @@
+package ru.practicum.Rollup.model;
+
+/**
+ * The hits threshold of a rollup bucket and the number of its pairs above it. Only the listed pairs of a bucket can
+ * have more hits in it than the threshold.
+ */
+public record RollupThreshold(long threshold, int listed) {
+}
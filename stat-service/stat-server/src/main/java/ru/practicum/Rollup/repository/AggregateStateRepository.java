@@ -0,0 +1,36 @@
+package ru.practicum.Rollup.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Marks which aggregate tables are known to hold every stored hit. A row is written when an aggregate is left in
+ * sync and removed while it may fall behind, so a missing row on startup means the aggregate has to be rebuilt.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AggregateStateRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean isInSync(String name) {
+        return !jdbcTemplate.queryForList("select 1 from statistics_aggregate_state where name = ?", Integer.class,
+                name).isEmpty();
+    }
+
+    /**
+     * Removes the mark and returns whether it was there.
+     */
+    public boolean clearInSync(String name) {
+        return jdbcTemplate.update("delete from statistics_aggregate_state where name = ?", name) > 0;
+    }
+
+    public void markInSync(String name) {
+        jdbcTemplate.update("delete from statistics_aggregate_state where name = ?", name);
+        jdbcTemplate.update("insert into statistics_aggregate_state (name, updated_at) values (?, ?)", name,
+                Timestamp.valueOf(LocalDateTime.now()));
+    }
+}
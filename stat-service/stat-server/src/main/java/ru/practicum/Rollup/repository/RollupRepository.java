@@ -0,0 +1,260 @@
+package ru.practicum.Rollup.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.Dictionary.model.UriFilter;
+import ru.practicum.Dictionary.model.UriPattern;
+import ru.practicum.Dictionary.repository.UriFilterSql;
+import ru.practicum.Rollup.model.BucketRange;
+import ru.practicum.Rollup.model.Rollup;
+import ru.practicum.Rollup.model.RollupGranularity;
+import ru.practicum.Rollup.model.RollupPlan;
+import ru.practicum.ViewStats.model.EncodedViewStats;
+import ru.practicum.ViewStats.model.HistogramVisitor;
+import ru.practicum.ViewStats.model.ViewStats;
+import ru.practicum.config.DatabasePlatform;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Repository
+public class RollupRepository {
+    private static final String POSTGRES_UPSERT_SQL = "insert into statistics_rollup " +
+            "(granularity, bucket, app_id, uri_id, hits) values (?, ?, ?, ?, ?) " +
+            "on conflict (granularity, bucket, app_id, uri_id) " +
+            "do update set hits = statistics_rollup.hits + excluded.hits";
+    private static final String MERGE_SQL = "merge into statistics_rollup as r " +
+            "using (select cast(? as varchar) as granularity, cast(? as timestamp) as bucket, " +
+            "cast(? as integer) as app_id, cast(? as integer) as uri_id, cast(? as bigint) as hits) as s " +
+            "on r.granularity = s.granularity and r.bucket = s.bucket and r.app_id = s.app_id " +
+            "and r.uri_id = s.uri_id " +
+            "when matched then update set hits = r.hits + s.hits " +
+            "when not matched then insert (granularity, bucket, app_id, uri_id, hits) " +
+            "values (s.granularity, s.bucket, s.app_id, s.uri_id, s.hits)";
+    private static final String REBUILD_SQL = "insert into statistics_rollup (granularity, bucket, app_id, uri_id, hits) " +
+            "select '%1$s', date_trunc('%2$s', timestamp), app_id, uri_id, sum(hits) " +
+            "from statistics " +
+            "group by date_trunc('%2$s', timestamp), app_id, uri_id";
+
+    private static final int MAX_IN_LIST_SIZE = 1000;
+
+    private static final RowMapper<EncodedViewStats> ENCODED_VIEW_STATS_ROW_MAPPER = (rs, rowNum) ->
+            new EncodedViewStats(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("hits"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final NamedParameterJdbcTemplate streamingJdbcTemplate;
+    private final String upsertSql;
+    private final boolean postgres;
+
+    public RollupRepository(JdbcTemplate jdbcTemplate,
+                            DatabasePlatform databasePlatform,
+                            @Value("${stat-server.stats.stream-fetch-size:1000}") int streamFetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        JdbcTemplate streamingTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streamingTemplate.setFetchSize(streamFetchSize);
+        this.streamingJdbcTemplate = new NamedParameterJdbcTemplate(streamingTemplate);
+        this.postgres = databasePlatform.isPostgres();
+        this.upsertSql = postgres ? POSTGRES_UPSERT_SQL : MERGE_SQL;
+    }
+
+    public void addHits(List<Rollup> rollups) {
+        jdbcTemplate.batchUpdate(upsertSql, rollups, rollups.size(), (ps, rollup) -> {
+            ps.setString(1, rollup.getGranularity().name());
+            ps.setTimestamp(2, Timestamp.valueOf(rollup.getBucket()));
+            ps.setInt(3, rollup.getAppId());
+            ps.setInt(4, rollup.getUriId());
+            ps.setLong(5, rollup.getHits());
+        });
+    }
+
+    /**
+     * Replaces the rollups with sums over the statistics table; must run inside a transaction. On PostgreSQL the
+     * table is locked first, so the hits of a writer that is adding to the rollups are either in the sums or added
+     * after them, never both.
+     */
+    public void rebuild() {
+        if (postgres) {
+            jdbcTemplate.execute("lock table statistics_rollup in exclusive mode");
+        }
+        jdbcTemplate.update("delete from statistics_rollup");
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            jdbcTemplate.update(String.format(REBUILD_SQL, granularity.name(), granularity.name().toLowerCase()));
+        }
+    }
+
+    public List<EncodedViewStats> findViewStats(RollupPlan plan, UriFilter uriFilter) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = aggregateSql(plan, " and " + UriFilterSql.predicate("uri_id", uriFilter, params), params) +
+                " order by hits desc";
+        return namedParameterJdbcTemplate.query(sql, params, ENCODED_VIEW_STATS_ROW_MAPPER);
+    }
+
+    /**
+     * Not a bounded top-K: the database still groups every app and uri of the range, the limit only lets it sort the
+     * groups with a top-N heap and return {@code limit} rows.
+     */
+    public List<EncodedViewStats> findTopViewStats(RollupPlan plan, String uriPrefix, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("limit", limit);
+        String sql = aggregateSql(plan, uriPrefixPredicate("uri_id", uriPrefix, params), params) +
+                " order by hits desc, uri_id, app_id limit :limit";
+        return namedParameterJdbcTemplate.query(sql, params, ENCODED_VIEW_STATS_ROW_MAPPER);
+    }
+
+    /**
+     * Returns the sums over the raw edges of the plan only.
+     */
+    public List<EncodedViewStats> findRawViewStats(RollupPlan plan, String uriPrefix) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        RollupPlan rawEdges = new RollupPlan(plan.start(), plan.rawHeadEnd(), plan.rawTailStart(), plan.end(),
+                List.of());
+        String sql = aggregateSql(rawEdges, uriPrefixPredicate("uri_id", uriPrefix, params), params);
+        return namedParameterJdbcTemplate.query(sql, params, ENCODED_VIEW_STATS_ROW_MAPPER);
+    }
+
+    /**
+     * Returns the sums over the bucket ranges of the plan of the pairs with the given uris.
+     */
+    public List<EncodedViewStats> findBucketViewStats(RollupPlan plan, Collection<Integer> uriIds) {
+        List<BucketRange> bucketRanges = plan.bucketRanges();
+        if (bucketRanges.isEmpty() || uriIds.isEmpty()) {
+            return List.of();
+        }
+        List<EncodedViewStats> viewStats = new ArrayList<>();
+        for (List<Integer> chunk : chunks(uriIds)) {
+            MapSqlParameterSource params = new MapSqlParameterSource("uriIds", chunk);
+            List<String> predicates = new ArrayList<>();
+            for (int i = 0; i < bucketRanges.size(); i++) {
+                predicates.add("(" + RollupThresholdRepository.bucketPredicate("r", i, bucketRanges.get(i), params) +
+                        ")");
+            }
+            viewStats.addAll(namedParameterJdbcTemplate.query("select app_id, uri_id, sum(hits) as hits " +
+                    "from statistics_rollup as r where uri_id in (:uriIds) and (" + String.join(" or ", predicates) +
+                    ") group by app_id, uri_id", params, ENCODED_VIEW_STATS_ROW_MAPPER));
+        }
+        return viewStats;
+    }
+
+    /**
+     * Returns the hits of the bucket of the pairs with the given uris.
+     */
+    public List<EncodedViewStats> findHits(RollupGranularity granularity, LocalDateTime bucket,
+                                           Collection<Integer> uriIds) {
+        List<EncodedViewStats> viewStats = new ArrayList<>();
+        for (List<Integer> chunk : chunks(uriIds)) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("granularity", granularity.name())
+                    .addValue("bucket", toTimestamp(bucket))
+                    .addValue("uriIds", chunk);
+            viewStats.addAll(namedParameterJdbcTemplate.query("select app_id, uri_id, hits from statistics_rollup " +
+                    "where granularity = :granularity and bucket = :bucket and uri_id in (:uriIds)", params,
+                    ENCODED_VIEW_STATS_ROW_MAPPER));
+        }
+        return viewStats;
+    }
+
+    public void findHistogram(RollupPlan plan, RollupGranularity granularity, UriFilter uriFilter,
+                              HistogramVisitor visitor) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String uriPredicate = " and " + UriFilterSql.predicate("uri_id", uriFilter, params);
+        String rawBucket = "date_trunc('" + granularity.name().toLowerCase() + "', timestamp)";
+
+        List<String> parts = new ArrayList<>();
+        parts.add("select app_id, uri_id, " + rawBucket + " as bucket, sum(hits) as hits from statistics " +
+                "where timestamp > :start and timestamp < :rawHeadEnd" + uriPredicate +
+                " group by app_id, uri_id, " + rawBucket);
+        params.addValue("start", toTimestamp(plan.start()));
+        params.addValue("rawHeadEnd", toTimestamp(plan.rawHeadEnd()));
+        if (plan.rawTailStart().isBefore(plan.end())) {
+            parts.add("select app_id, uri_id, " + rawBucket + " as bucket, sum(hits) as hits from statistics " +
+                    "where timestamp >= :rawTailStart and timestamp < :end" + uriPredicate +
+                    " group by app_id, uri_id, " + rawBucket);
+            params.addValue("rawTailStart", toTimestamp(plan.rawTailStart()));
+            params.addValue("end", toTimestamp(plan.end()));
+        }
+        List<BucketRange> bucketRanges = plan.bucketRanges();
+        for (int i = 0; i < bucketRanges.size(); i++) {
+            BucketRange range = bucketRanges.get(i);
+            parts.add("select app_id, uri_id, bucket, hits from statistics_rollup " +
+                    "where granularity = :granularity" + i + " and bucket >= :from" + i + " and bucket < :to" + i +
+                    uriPredicate);
+            params.addValue("granularity" + i, range.granularity().name());
+            params.addValue("from" + i, toTimestamp(range.from()));
+            params.addValue("to" + i, toTimestamp(range.to()));
+        }
+
+        String sql = "select app_id, uri_id, bucket, sum(hits) as hits from (" + String.join(" union all ", parts) +
+                ") as v group by app_id, uri_id, bucket";
+        namedParameterJdbcTemplate.query(sql, params, (RowCallbackHandler) rs -> visitor.visit(rs.getInt("app_id"),
+                rs.getInt("uri_id"), rs.getTimestamp("bucket").toLocalDateTime(), rs.getLong("hits")));
+    }
+
+    public void streamViewStats(RollupPlan plan, Consumer<ViewStats> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = "select a.name as app, u.uri as uri, s.hits as hits from (" + aggregateSql(plan, "", params) +
+                ") as s join apps as a on a.id = s.app_id join uris as u on u.id = s.uri_id " +
+                "order by s.hits desc";
+        streamingJdbcTemplate.query(sql, params, (RowCallbackHandler) rs ->
+                consumer.accept(new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"))));
+    }
+
+    private String aggregateSql(RollupPlan plan, String uriPredicate, MapSqlParameterSource params) {
+        List<String> parts = new ArrayList<>();
+        parts.add("select app_id, uri_id, sum(hits) as hits from statistics " +
+                "where timestamp > :start and timestamp < :rawHeadEnd" + uriPredicate + " group by app_id, uri_id");
+        params.addValue("start", toTimestamp(plan.start()));
+        params.addValue("rawHeadEnd", toTimestamp(plan.rawHeadEnd()));
+        if (plan.rawTailStart().isBefore(plan.end())) {
+            parts.add("select app_id, uri_id, sum(hits) as hits from statistics " +
+                    "where timestamp >= :rawTailStart and timestamp < :end" + uriPredicate +
+                    " group by app_id, uri_id");
+            params.addValue("rawTailStart", toTimestamp(plan.rawTailStart()));
+            params.addValue("end", toTimestamp(plan.end()));
+        }
+        List<BucketRange> bucketRanges = plan.bucketRanges();
+        for (int i = 0; i < bucketRanges.size(); i++) {
+            BucketRange range = bucketRanges.get(i);
+            parts.add("select app_id, uri_id, sum(hits) as hits from statistics_rollup " +
+                    "where granularity = :granularity" + i + " and bucket >= :from" + i + " and bucket < :to" + i +
+                    uriPredicate + " group by app_id, uri_id");
+            params.addValue("granularity" + i, range.granularity().name());
+            params.addValue("from" + i, toTimestamp(range.from()));
+            params.addValue("to" + i, toTimestamp(range.to()));
+        }
+
+        return "select app_id, uri_id, sum(hits) as hits from (" + String.join(" union all ", parts) + ") " +
+                "as v group by app_id, uri_id";
+    }
+
+    static String uriPrefixPredicate(String column, String uriPrefix, MapSqlParameterSource params) {
+        if (uriPrefix == null || uriPrefix.isEmpty()) {
+            return "";
+        }
+        params.addValue("uriPattern", UriPattern.escapeLike(uriPrefix) + "%");
+        return " and " + column + " in (select id from uris where uri like :uriPattern escape '\\')";
+    }
+
+    private static List<List<Integer>> chunks(Collection<Integer> uriIds) {
+        List<Integer> ids = List.copyOf(uriIds);
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += MAX_IN_LIST_SIZE) {
+            chunks.add(ids.subList(from, Math.min(from + MAX_IN_LIST_SIZE, ids.size())));
+        }
+        return chunks;
+    }
+
+    private Timestamp toTimestamp(LocalDateTime time) {
+        return Timestamp.valueOf(time);
+    }
+}
@@ -0,0 +1,146 @@
+package ru.practicum.Rollup.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.Rollup.model.BucketRange;
+import ru.practicum.Rollup.model.RollupGranularity;
+import ru.practicum.Rollup.model.RollupPlan;
+import ru.practicum.Rollup.model.RollupThreshold;
+import ru.practicum.config.DatabasePlatform;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps a hits threshold per rollup bucket with a bounded number of pairs above it, which lets a top query read only
+ * those pairs of every bucket. Every bucket of {@code statistics_rollup} has a threshold row.
+ */
+@Repository
+public class RollupThresholdRepository {
+    private static final String POSTGRES_INSERT_SQL = "insert into statistics_rollup_threshold " +
+            "(granularity, bucket, threshold, listed) values (?, ?, 0, 0) on conflict (granularity, bucket) do nothing";
+    private static final String MERGE_SQL = "merge into statistics_rollup_threshold as t " +
+            "using (select cast(? as varchar) as granularity, cast(? as timestamp) as bucket) as s " +
+            "on t.granularity = s.granularity and t.bucket = s.bucket " +
+            "when not matched then insert (granularity, bucket, threshold, listed) " +
+            "values (s.granularity, s.bucket, 0, 0)";
+    private static final String REBUILD_SQL = "insert into statistics_rollup_threshold " +
+            "(granularity, bucket, threshold, listed) " +
+            "select granularity, bucket, coalesce(max(case when rn = ? then hits end), 0), 0 from (" +
+            "select granularity, bucket, hits, " +
+            "row_number() over (partition by granularity, bucket order by hits desc) as rn " +
+            "from statistics_rollup) as r " +
+            "group by granularity, bucket";
+    private static final String COUNT_LISTED_SQL = "update statistics_rollup_threshold as t set listed = (" +
+            "select count(*) from statistics_rollup as r " +
+            "where r.granularity = t.granularity and r.bucket = t.bucket and r.hits > t.threshold)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final String insertSql;
+    private final boolean postgres;
+
+    public RollupThresholdRepository(JdbcTemplate jdbcTemplate, DatabasePlatform databasePlatform) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.postgres = databasePlatform.isPostgres();
+        this.insertSql = postgres ? POSTGRES_INSERT_SQL : MERGE_SQL;
+    }
+
+    /**
+     * Returns the threshold of the bucket, creating it if needed, and locks it until the end of the transaction.
+     */
+    public RollupThreshold lock(RollupGranularity granularity, LocalDateTime bucket) {
+        jdbcTemplate.update(insertSql, granularity.name(), Timestamp.valueOf(bucket));
+        return jdbcTemplate.queryForObject("select threshold, listed from statistics_rollup_threshold " +
+                        "where granularity = ? and bucket = ? for update",
+                (rs, rowNum) -> new RollupThreshold(rs.getLong("threshold"), rs.getInt("listed")),
+                granularity.name(), Timestamp.valueOf(bucket));
+    }
+
+    public void update(RollupGranularity granularity, LocalDateTime bucket, RollupThreshold threshold) {
+        jdbcTemplate.update("update statistics_rollup_threshold set threshold = ?, listed = ? " +
+                        "where granularity = ? and bucket = ?", threshold.threshold(), threshold.listed(),
+                granularity.name(), Timestamp.valueOf(bucket));
+    }
+
+    /**
+     * Returns the hits of the pair at the given rank of the bucket as its threshold, with the number of pairs that
+     * have more; the bucket must be locked.
+     */
+    public RollupThreshold findAtRank(RollupGranularity granularity, LocalDateTime bucket, int rank) {
+        List<Long> hits = jdbcTemplate.queryForList("select hits from statistics_rollup " +
+                        "where granularity = ? and bucket = ? order by hits desc offset ? rows fetch next 1 rows only",
+                Long.class, granularity.name(), Timestamp.valueOf(bucket), rank - 1);
+        long threshold = hits.isEmpty() ? 0 : hits.getFirst();
+        Integer listed = jdbcTemplate.queryForObject("select count(*) from statistics_rollup " +
+                        "where granularity = ? and bucket = ? and hits > ?", Integer.class, granularity.name(),
+                Timestamp.valueOf(bucket), threshold);
+        return new RollupThreshold(threshold, listed == null ? 0 : listed);
+    }
+
+    /**
+     * Replaces the thresholds with the hits of the pair at the given rank of every bucket; must run inside a
+     * transaction. On PostgreSQL both tables are locked first, so no writer adds hits between the ranking and the
+     * counting.
+     */
+    public void rebuild(int rank) {
+        if (postgres) {
+            jdbcTemplate.execute("lock table statistics_rollup, statistics_rollup_threshold in exclusive mode");
+        }
+        jdbcTemplate.update("delete from statistics_rollup_threshold");
+        jdbcTemplate.update(REBUILD_SQL, rank);
+        jdbcTemplate.update(COUNT_LISTED_SQL);
+    }
+
+    /**
+     * Returns the uris of the pairs above the threshold of every bucket of the plan.
+     */
+    public List<Integer> findListedUriIds(RollupPlan plan, String uriPrefix) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String uriPredicate = RollupRepository.uriPrefixPredicate("r.uri_id", uriPrefix, params);
+        List<BucketRange> bucketRanges = plan.bucketRanges();
+        List<String> parts = new ArrayList<>();
+        for (int i = 0; i < bucketRanges.size(); i++) {
+            parts.add("select r.uri_id from statistics_rollup_threshold as t join statistics_rollup as r " +
+                    "on r.granularity = t.granularity and r.bucket = t.bucket and r.hits > t.threshold " +
+                    "where " + bucketPredicate("t", i, bucketRanges.get(i), params) + uriPredicate);
+        }
+        if (parts.isEmpty()) {
+            return List.of();
+        }
+        return namedParameterJdbcTemplate.queryForList("select distinct uri_id from (" +
+                String.join(" union all ", parts) + ") as l", params, Integer.class);
+    }
+
+    /**
+     * Returns the sum of the thresholds of the buckets of the plan, the most hits a pair that is not listed in any
+     * of them can have there.
+     */
+    public long sumThresholds(RollupPlan plan) {
+        List<BucketRange> bucketRanges = plan.bucketRanges();
+        if (bucketRanges.isEmpty()) {
+            return 0;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        List<String> predicates = new ArrayList<>();
+        for (int i = 0; i < bucketRanges.size(); i++) {
+            predicates.add("(" + bucketPredicate("t", i, bucketRanges.get(i), params) + ")");
+        }
+        Long sum = namedParameterJdbcTemplate.queryForObject("select coalesce(sum(threshold), 0) " +
+                "from statistics_rollup_threshold as t where " + String.join(" or ", predicates), params, Long.class);
+        return sum == null ? 0 : sum;
+    }
+
+    static String bucketPredicate(String alias, int index, BucketRange range, MapSqlParameterSource params) {
+        params.addValue("granularity" + index, range.granularity().name());
+        params.addValue("from" + index, Timestamp.valueOf(range.from()));
+        params.addValue("to" + index, Timestamp.valueOf(range.to()));
+        return alias + ".granularity = :granularity" + index + " and " + alias + ".bucket >= :from" + index +
+                " and " + alias + ".bucket < :to" + index;
+    }
+}
@@ -0,0 +1,292 @@
+package ru.practicum.Rollup.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.Dictionary.model.DictionaryType;
+import ru.practicum.Dictionary.model.UriFilter;
+import ru.practicum.Dictionary.service.DictionaryService;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.EndpointHit.model.StorageEngine;
+import ru.practicum.EndpointHit.repository.HitStore;
+import ru.practicum.EndpointHit.service.HitIngestListener;
+import ru.practicum.Rollup.model.Rollup;
+import ru.practicum.Rollup.model.RollupGranularity;
+import ru.practicum.Rollup.model.RollupPlan;
+import ru.practicum.Rollup.model.RollupThreshold;
+import ru.practicum.Rollup.repository.AggregateStateRepository;
+import ru.practicum.Rollup.repository.RollupRepository;
+import ru.practicum.Rollup.repository.RollupThresholdRepository;
+import ru.practicum.ViewStats.model.EncodedViewStats;
+import ru.practicum.ViewStats.model.HistogramVisitor;
+import ru.practicum.ViewStats.model.ViewHistogram;
+import ru.practicum.ViewStats.model.ViewSeries;
+import ru.practicum.ViewStats.model.ViewStats;
+import ru.practicum.exception.DataTimeException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Keeps per-minute, per-hour and per-day sums of the statistics table. They are updated in the transaction that
+ * stores the hits, so they stay in sync while enabled; a run with them disabled clears their in-sync mark, and the
+ * next run with them enabled rebuilds them in one transaction.
+ * <p>
+ * Every bucket also keeps a hits threshold with at most twice {@code top-size} of its pairs above it, raised at
+ * ingest once more pairs cross it. A top query reads only the raw edges and the pairs above the thresholds of its
+ * buckets, so its cost does not grow with the number of uris; any other pair has at most the sum of those thresholds,
+ * and when that cannot be shown to keep it out of the result, the query falls back to summing every pair.
+ */
+@Service
+@Slf4j
+public class RollupService implements HitIngestListener {
+    private static final Comparator<Rollup> LOCK_ORDER = Comparator.comparing(Rollup::getGranularity)
+            .thenComparing(Rollup::getBucket)
+            .thenComparing(Rollup::getAppId)
+            .thenComparing(Rollup::getUriId);
+    private static final Comparator<EncodedViewStats> TOP_ORDER = Comparator
+            .comparingLong((EncodedViewStats stats) -> -stats.getHits())
+            .thenComparing(EncodedViewStats::getUriId)
+            .thenComparing(EncodedViewStats::getAppId);
+    private static final String STATE_NAME = "rollup";
+    private static final String TOP_STATE_NAME = "rollup_top";
+
+    private final RollupRepository rollupRepository;
+    private final RollupThresholdRepository rollupThresholdRepository;
+    private final AggregateStateRepository aggregateStateRepository;
+    private final DictionaryService dictionaryService;
+    private final HitStore hitStore;
+    private final boolean enabled;
+    private final int maxHistogramBuckets;
+    private final int topSize;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate snapshotTransactionTemplate;
+
+    public RollupService(RollupRepository rollupRepository,
+                         RollupThresholdRepository rollupThresholdRepository,
+                         AggregateStateRepository aggregateStateRepository,
+                         DictionaryService dictionaryService,
+                         HitStore hitStore,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${stat-server.rollup.enabled:true}") boolean enabled,
+                         @Value("${stat-server.storage.engine:JDBC}") StorageEngine storageEngine,
+                         @Value("${stat-server.histogram.max-buckets:10000}") int maxHistogramBuckets,
+                         @Value("${stat-server.rollup.top-size:1000}") int topSize) {
+        this.rollupRepository = rollupRepository;
+        this.rollupThresholdRepository = rollupThresholdRepository;
+        this.aggregateStateRepository = aggregateStateRepository;
+        this.dictionaryService = dictionaryService;
+        this.hitStore = hitStore;
+        this.enabled = enabled && storageEngine == StorageEngine.JDBC;
+        this.maxHistogramBuckets = maxHistogramBuckets;
+        this.topSize = topSize;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTransactionTemplate = new TransactionTemplate(transactionManager);
+        snapshotTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        snapshotTransactionTemplate.setReadOnly(true);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            aggregateStateRepository.clearInSync(STATE_NAME);
+            aggregateStateRepository.clearInSync(TOP_STATE_NAME);
+            return;
+        }
+        if (!aggregateStateRepository.isInSync(STATE_NAME)) {
+            log.info("The rollup tables are not known to hold every stored hit, rebuilding them from the statistics " +
+                    "table");
+            transactionTemplate.executeWithoutResult(status -> {
+                rollupRepository.rebuild();
+                rollupThresholdRepository.rebuild(topSize + 1);
+                aggregateStateRepository.markInSync(STATE_NAME);
+                aggregateStateRepository.markInSync(TOP_STATE_NAME);
+            });
+            log.info("The rollup tables have been rebuilt");
+        } else if (!aggregateStateRepository.isInSync(TOP_STATE_NAME)) {
+            log.info("Rebuilding the rollup thresholds");
+            transactionTemplate.executeWithoutResult(status -> {
+                rollupThresholdRepository.rebuild(topSize + 1);
+                aggregateStateRepository.markInSync(TOP_STATE_NAME);
+            });
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> endpointHits) {
+        if (!enabled) {
+            return;
+        }
+        Map<RollupKey, Long> counts = new HashMap<>();
+        for (EndpointHit endpointHit : endpointHits) {
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                RollupKey key = new RollupKey(granularity, granularity.floor(endpointHit.getTimestamp()),
+                        endpointHit.getAppId(), endpointHit.getUriId());
+                counts.merge(key, (long) endpointHit.getHits(), Long::sum);
+            }
+        }
+        List<Rollup> rollups = new ArrayList<>(counts.size());
+        counts.forEach((key, hits) -> rollups.add(new Rollup(key.granularity(), key.bucket(), key.appId(),
+                key.uriId(), hits)));
+        rollups.sort(LOCK_ORDER);
+        rollupRepository.addHits(rollups);
+        int from = 0;
+        while (from < rollups.size()) {
+            Rollup first = rollups.get(from);
+            int to = from + 1;
+            while (to < rollups.size() && rollups.get(to).getGranularity() == first.getGranularity() &&
+                    rollups.get(to).getBucket().equals(first.getBucket())) {
+                to++;
+            }
+            updateThreshold(first.getGranularity(), first.getBucket(), rollups.subList(from, to));
+            from = to;
+        }
+    }
+
+    /**
+     * Counts the pairs that the added hits have lifted above the threshold of the bucket, and raises it to the hits
+     * at rank {@code top-size + 1} once more than twice {@code top-size} pairs are above it. The threshold is locked
+     * after the rollups, which are locked in order before it by every writer, so a pair is counted only once.
+     */
+    private void updateThreshold(RollupGranularity granularity, LocalDateTime bucket, List<Rollup> added) {
+        RollupThreshold threshold = rollupThresholdRepository.lock(granularity, bucket);
+        Map<EncodedSeries, Long> addedHits = new HashMap<>();
+        Set<Integer> uriIds = new HashSet<>();
+        for (Rollup rollup : added) {
+            addedHits.put(new EncodedSeries(rollup.getAppId(), rollup.getUriId()), rollup.getHits());
+            uriIds.add(rollup.getUriId());
+        }
+        int crossed = 0;
+        for (EncodedViewStats stats : rollupRepository.findHits(granularity, bucket, uriIds)) {
+            Long hits = addedHits.get(new EncodedSeries(stats.getAppId(), stats.getUriId()));
+            if (hits != null && stats.getHits() > threshold.threshold() &&
+                    stats.getHits() - hits <= threshold.threshold()) {
+                crossed++;
+            }
+        }
+        if (crossed == 0) {
+            return;
+        }
+        int listed = threshold.listed() + crossed;
+        rollupThresholdRepository.update(granularity, bucket, listed > 2 * topSize
+                ? rollupThresholdRepository.findAtRank(granularity, bucket, topSize + 1)
+                : new RollupThreshold(threshold.threshold(), listed));
+    }
+
+    public List<EncodedViewStats> findViewStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter) {
+        return rollupRepository.findViewStats(RollupPlan.of(start, end), uriFilter);
+    }
+
+    public List<ViewStats> findTopViewStats(LocalDateTime start, LocalDateTime end, String uriPrefix, int limit) {
+        List<EncodedViewStats> top;
+        if (enabled) {
+            RollupPlan plan = RollupPlan.of(start, end);
+            top = limit <= topSize ? findListedTopViewStats(plan, uriPrefix, limit) : null;
+            if (top == null) {
+                top = rollupRepository.findTopViewStats(plan, uriPrefix, limit);
+            }
+        } else {
+            top = hitStore.findTopViewStats(start, end, uriPrefix, limit);
+        }
+        return top.stream()
+                .map(stats -> dictionaryService.toViewStats(stats.getAppId(), stats.getUriId(), stats.getHits()))
+                .toList();
+    }
+
+    /**
+     * Sums the raw edges and the buckets of the pairs that are on a raw edge or above the threshold of a bucket.
+     * Returns null when a pair that is neither could still be in the top, that is when the sum of the thresholds is
+     * not below the hits of the last pair of a full top.
+     */
+    private List<EncodedViewStats> findListedTopViewStats(RollupPlan plan, String uriPrefix, int limit) {
+        return snapshotTransactionTemplate.execute(status -> {
+            Map<EncodedSeries, Long> hits = new HashMap<>();
+            Set<Integer> uriIds = new HashSet<>(rollupThresholdRepository.findListedUriIds(plan, uriPrefix));
+            for (EncodedViewStats stats : rollupRepository.findRawViewStats(plan, uriPrefix)) {
+                hits.merge(new EncodedSeries(stats.getAppId(), stats.getUriId()), stats.getHits(), Long::sum);
+                uriIds.add(stats.getUriId());
+            }
+            for (EncodedViewStats stats : rollupRepository.findBucketViewStats(plan, uriIds)) {
+                hits.merge(new EncodedSeries(stats.getAppId(), stats.getUriId()), stats.getHits(), Long::sum);
+            }
+            List<EncodedViewStats> top = hits.entrySet().stream()
+                    .map(entry -> new EncodedViewStats(entry.getKey().appId(), entry.getKey().uriId(),
+                            entry.getValue()))
+                    .sorted(TOP_ORDER)
+                    .limit(limit)
+                    .toList();
+            long bound = rollupThresholdRepository.sumThresholds(plan);
+            if (bound == 0 || top.size() == limit && top.getLast().getHits() > bound) {
+                return top;
+            }
+            log.debug("Pairs below the thresholds may reach {} hits, summing every pair for the top {}", bound, limit);
+            return null;
+        });
+    }
+
+    public ViewHistogram findHistogram(LocalDateTime start, LocalDateTime end, UriFilter uriFilter,
+                                       RollupGranularity granularity) {
+        LocalDateTime first = granularity.floor(start);
+        long bucketCount = granularity.between(first, granularity.ceil(end));
+        if (bucketCount > maxHistogramBuckets) {
+            throw new DataTimeException("The range contains " + bucketCount + " " + granularity +
+                    " buckets, the maximum is " + maxHistogramBuckets);
+        }
+        List<LocalDateTime> buckets = new ArrayList<>((int) bucketCount);
+        for (LocalDateTime bucket = first; bucket.isBefore(end); bucket = granularity.next(bucket)) {
+            buckets.add(bucket);
+        }
+        if (uriFilter.isEmpty() || buckets.isEmpty()) {
+            return new ViewHistogram(granularity, buckets, List.of());
+        }
+
+        Map<EncodedSeries, long[]> hits = new HashMap<>();
+        HistogramVisitor visitor = (appId, uriId, bucket, bucketHits) -> {
+            if (!dictionaryService.matches(uriFilter, uriId)) {
+                return;
+            }
+            hits.computeIfAbsent(new EncodedSeries(appId, uriId), k -> new long[buckets.size()])[
+                    (int) granularity.between(first, bucket)] += bucketHits;
+        };
+        if (enabled) {
+            rollupRepository.findHistogram(RollupPlan.of(start, end, List.of(granularity)), granularity, uriFilter,
+                    visitor);
+        } else {
+            hitStore.findHistogram(start, end, uriFilter, granularity, visitor);
+        }
+
+        List<ViewSeries> series = new ArrayList<>(hits.size());
+        hits.forEach((key, counts) -> series.add(new ViewSeries(dictionaryService.decode(DictionaryType.APP,
+                key.appId()), dictionaryService.decode(DictionaryType.URI, key.uriId()), counts)));
+        series.sort(Comparator.comparingLong((ViewSeries s) -> -Arrays.stream(s.getHits()).sum())
+                .thenComparing(ViewSeries::getUri)
+                .thenComparing(ViewSeries::getApp));
+        return new ViewHistogram(granularity, buckets, series);
+    }
+
+    public void streamViewStats(LocalDateTime start, LocalDateTime end, Consumer<ViewStats> consumer) {
+        rollupRepository.streamViewStats(RollupPlan.of(start, end), consumer);
+    }
+
+    private record RollupKey(RollupGranularity granularity, LocalDateTime bucket, Integer appId, Integer uriId) {
+    }
+
+    private record EncodedSeries(Integer appId, Integer uriId) {
+    }
+}
@@ -0,0 +1,252 @@
+package ru.practicum.Segment.model;
+
+import ru.practicum.EndpointHit.model.EndpointHit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * An append-only file of fixed-width hit records mapped into memory. The header keeps the record count and the
+ * min/max timestamps. Appended records are visible to scans at once, but the count in the header only covers the
+ * records forced to disk by the last {@link #sync()}, so even after a power loss it never exposes a half-written
+ * record; the appends after the last sync before such a crash are lost. A bitmap of the uri ids in the segment lets scans skip segments
+ * without reading them; it is saved next to the segment when the segment is sealed and rebuilt from the records
+ * otherwise.
+ */
+public final class Segment {
+    public static final int HEADER_BYTES = 64;
+    public static final int RECORD_BYTES = 40;
+
+    private static final int MAGIC = 0x53544753;
+    private static final int VERSION = 2;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int COUNT_OFFSET = 12;
+    private static final int MIN_TIMESTAMP_OFFSET = 16;
+    private static final int MAX_TIMESTAMP_OFFSET = 24;
+    private static final long MICROS_PER_SECOND = 1_000_000;
+    private static final long IPV4_MAPPED_PREFIX = 0xffffL << 32;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final BitSet uriIds;
+    private volatile int count;
+    private int syncedCount;
+    private volatile long minTimestamp;
+    private volatile long maxTimestamp;
+
+    private Segment(Path path, MappedByteBuffer buffer, int capacity, int count, long minTimestamp,
+                    long maxTimestamp, BitSet uriIds) {
+        this.path = path;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.count = count;
+        this.syncedCount = count;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.uriIds = uriIds;
+    }
+
+    public static Segment create(Path path, int capacity) throws IOException {
+        MappedByteBuffer buffer = map(path, (long) HEADER_BYTES + (long) capacity * RECORD_BYTES,
+                StandardOpenOption.CREATE_NEW);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putInt(COUNT_OFFSET, 0);
+        buffer.putLong(MIN_TIMESTAMP_OFFSET, Long.MAX_VALUE);
+        buffer.putLong(MAX_TIMESTAMP_OFFSET, Long.MIN_VALUE);
+        return new Segment(path, buffer, capacity, 0, Long.MAX_VALUE, Long.MIN_VALUE, new BitSet());
+    }
+
+    public static Segment open(Path path) throws IOException {
+        MappedByteBuffer buffer = map(path, Files.size(path));
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a segment file: " + path);
+        }
+        int capacity = buffer.getInt(CAPACITY_OFFSET);
+        int count = buffer.getInt(COUNT_OFFSET);
+        Segment segment = new Segment(path, buffer, capacity, count, buffer.getLong(MIN_TIMESTAMP_OFFSET),
+                buffer.getLong(MAX_TIMESTAMP_OFFSET), new BitSet());
+        Path indexPath = segment.indexPath();
+        if (count == capacity && Files.exists(indexPath)) {
+            segment.uriIds.or(BitSet.valueOf(Files.readAllBytes(indexPath)));
+        } else {
+            for (int i = 0; i < count; i++) {
+                segment.uriIds.set(buffer.getInt(HEADER_BYTES + i * RECORD_BYTES + 12));
+            }
+        }
+        return segment;
+    }
+
+    public static long toEpochMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * MICROS_PER_SECOND + time.getNano() / 1_000;
+    }
+
+    public static LocalDateTime fromEpochMicros(long epochMicros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMicros, MICROS_PER_SECOND),
+                (int) Math.floorMod(epochMicros, MICROS_PER_SECOND) * 1_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Turns a stored address back into its 4 or 16 bytes; IPv4 addresses are stored IPv4-mapped.
+     */
+    public static byte[] toIpAddress(long ipHigh, long ipLow) {
+        if (ipHigh == 0 && (ipLow & 0xffffffff00000000L) == IPV4_MAPPED_PREFIX) {
+            return ByteBuffer.allocate(4).putInt((int) ipLow).array();
+        }
+        return ByteBuffer.allocate(16).putLong(ipHigh).putLong(ipLow).array();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public boolean isFull() {
+        return count == capacity;
+    }
+
+    /**
+     * Appends hits starting at {@code from} until the segment is full and returns the index of the first hit that
+     * did not fit. Only one thread may append or sync at a time; scans may run concurrently.
+     */
+    public int append(List<EndpointHit> endpointHits, int from) {
+        int written = count;
+        long min = minTimestamp;
+        long max = maxTimestamp;
+        int index = from;
+        BitSet appended = new BitSet();
+        for (; index < endpointHits.size() && written < capacity; index++, written++) {
+            EndpointHit endpointHit = endpointHits.get(index);
+            long timestamp = toEpochMicros(endpointHit.getTimestamp());
+            int offset = HEADER_BYTES + written * RECORD_BYTES;
+            buffer.putLong(offset, timestamp);
+            buffer.putInt(offset + 8, endpointHit.getAppId());
+            buffer.putInt(offset + 12, endpointHit.getUriId());
+            buffer.putInt(offset + 16, endpointHit.getHits());
+            putIp(offset + 24, endpointHit.getIpAddress());
+            appended.set(endpointHit.getUriId());
+            min = Math.min(min, timestamp);
+            max = Math.max(max, timestamp);
+        }
+        buffer.putLong(MIN_TIMESTAMP_OFFSET, min);
+        buffer.putLong(MAX_TIMESTAMP_OFFSET, max);
+        synchronized (uriIds) {
+            uriIds.or(appended);
+        }
+        minTimestamp = min;
+        maxTimestamp = max;
+        count = written;
+        return index;
+    }
+
+    /**
+     * Visits the records with {@code start < timestamp < end} whose uri id is in {@code uriFilter}, or all of them
+     * when the filter is null. Records are read straight from the mapping without copying.
+     */
+    public void scan(long start, long end, BitSet uriFilter, SegmentHitVisitor visitor) {
+        int visible = count;
+        if (visible == 0 || maxTimestamp <= start || minTimestamp >= end) {
+            return;
+        }
+        if (uriFilter != null) {
+            synchronized (uriIds) {
+                if (!uriIds.intersects(uriFilter)) {
+                    return;
+                }
+            }
+        }
+        for (int i = 0; i < visible; i++) {
+            int offset = HEADER_BYTES + i * RECORD_BYTES;
+            long timestamp = buffer.getLong(offset);
+            if (timestamp <= start || timestamp >= end) {
+                continue;
+            }
+            int uriId = buffer.getInt(offset + 12);
+            if (uriFilter != null && !uriFilter.get(uriId)) {
+                continue;
+            }
+            visitor.visit(buffer.getInt(offset + 8), uriId, timestamp, buffer.getInt(offset + 16),
+                    buffer.getLong(offset + 24), buffer.getLong(offset + 32));
+        }
+    }
+
+    /**
+     * Visits every record from the given index on, in the order they were appended.
+     */
+    public void scanFrom(int from, SegmentHitVisitor visitor) {
+        int visible = count;
+        for (int i = from; i < visible; i++) {
+            int offset = HEADER_BYTES + i * RECORD_BYTES;
+            visitor.visit(buffer.getInt(offset + 8), buffer.getInt(offset + 12), buffer.getLong(offset),
+                    buffer.getInt(offset + 16), buffer.getLong(offset + 24), buffer.getLong(offset + 32));
+        }
+    }
+
+    /**
+     * Forces the records appended since the last sync to disk and only then lets the count in the header cover them.
+     * Pages of a mapping are written back in any order, so the count must not be written before its records are.
+     */
+    public void sync() {
+        int appended = count;
+        if (appended == syncedCount) {
+            return;
+        }
+        buffer.force(HEADER_BYTES + syncedCount * RECORD_BYTES, (appended - syncedCount) * RECORD_BYTES);
+        buffer.putInt(COUNT_OFFSET, appended);
+        syncedCount = appended;
+    }
+
+    public void seal() throws IOException {
+        sync();
+        buffer.force();
+        byte[] index;
+        synchronized (uriIds) {
+            index = uriIds.toByteArray();
+        }
+        Files.write(indexPath(), index);
+    }
+
+    public void force() {
+        sync();
+        buffer.force();
+    }
+
+    private void putIp(int offset, byte[] ipAddress) {
+        if (ipAddress.length == 4) {
+            buffer.putLong(offset, 0);
+            buffer.putLong(offset + 8, IPV4_MAPPED_PREFIX | ByteBuffer.wrap(ipAddress).getInt() & 0xffffffffL);
+        } else {
+            ByteBuffer ip = ByteBuffer.wrap(ipAddress);
+            buffer.putLong(offset, ip.getLong());
+            buffer.putLong(offset + 8, ip.getLong());
+        }
+    }
+
+    private Path indexPath() {
+        return path.resolveSibling(path.getFileName() + ".idx");
+    }
+
+    private static MappedByteBuffer map(Path path, long size, StandardOpenOption... options) throws IOException {
+        StandardOpenOption[] openOptions = new StandardOpenOption[options.length + 2];
+        openOptions[0] = StandardOpenOption.READ;
+        openOptions[1] = StandardOpenOption.WRITE;
+        System.arraycopy(options, 0, openOptions, 2, options.length);
+        try (FileChannel channel = FileChannel.open(path, openOptions)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+}
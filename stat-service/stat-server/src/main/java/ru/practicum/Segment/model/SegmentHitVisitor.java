@@ -0,0 +1,6 @@
+package ru.practicum.Segment.model;
+
+@FunctionalInterface
+public interface SegmentHitVisitor {
+    void visit(int appId, int uriId, long timestamp, int hits, long ipHigh, long ipLow);
+}
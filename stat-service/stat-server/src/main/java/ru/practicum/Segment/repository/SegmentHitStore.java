@@ -0,0 +1,199 @@
+package ru.practicum.Segment.repository;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import ru.practicum.Dictionary.model.UriFilter;
+import ru.practicum.Dictionary.service.DictionaryService;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.EndpointHit.repository.HitStore;
+import ru.practicum.Rollup.model.RollupGranularity;
+import ru.practicum.Segment.model.Segment;
+import ru.practicum.Segment.model.SegmentHitVisitor;
+import ru.practicum.ViewStats.model.EncodedViewStats;
+import ru.practicum.ViewStats.model.HistogramVisitor;
+import ru.practicum.ViewStats.model.ViewStats;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the hits in append-only segment files and answers every query by scanning them; the aggregates kept next to
+ * the statistics table are not maintained. Appended hits reach the disk with the next sync, at most
+ * {@code force-interval-ms} later.
+ */
+@Repository
+@ConditionalOnProperty(name = "stat-server.storage.engine", havingValue = "SEGMENT")
+public class SegmentHitStore implements HitStore {
+    private static final Comparator<EncodedViewStats> TOP_ORDER = Comparator
+            .comparingLong((EncodedViewStats stats) -> -stats.getHits())
+            .thenComparing(EncodedViewStats::getUriId)
+            .thenComparing(EncodedViewStats::getAppId);
+
+    private final DictionaryService dictionaryService;
+    private final SegmentRepository segmentRepository;
+
+    public SegmentHitStore(DictionaryService dictionaryService,
+                           @Value("${stat-server.storage.segment.directory:segments}") Path directory,
+                           @Value("${stat-server.storage.segment.capacity:1048576}") int capacity) {
+        this.dictionaryService = dictionaryService;
+        this.segmentRepository = new SegmentRepository(directory, capacity);
+    }
+
+    @Override
+    public void saveAll(List<EndpointHit> endpointHits) {
+        segmentRepository.append(endpointHits);
+    }
+
+    @Scheduled(fixedDelayString = "${stat-server.storage.segment.force-interval-ms:200}")
+    public void sync() {
+        segmentRepository.sync();
+    }
+
+    @PreDestroy
+    public void close() {
+        segmentRepository.close();
+    }
+
+    @Override
+    public List<EncodedViewStats> findViewStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter,
+                                                boolean unique) {
+        List<EncodedViewStats> viewStats = aggregate(start, end, dictionaryService.findUriIds(uriFilter), unique);
+        viewStats.sort(Comparator.comparingLong(stats -> -stats.getHits()));
+        return viewStats;
+    }
+
+    @Override
+    public void streamViewStats(LocalDateTime start, LocalDateTime end, boolean unique, Consumer<ViewStats> consumer) {
+        List<EncodedViewStats> viewStats = aggregate(start, end, null, unique);
+        viewStats.sort(Comparator.comparingLong(stats -> -stats.getHits()));
+        viewStats.forEach(stats -> consumer.accept(dictionaryService.toViewStats(stats.getAppId(), stats.getUriId(),
+                stats.getHits())));
+    }
+
+    /**
+     * Every app and uri in the range is still aggregated; only the selection of the first {@code limit} of them is
+     * bounded, with a heap of {@code limit} entries instead of sorting all of them.
+     */
+    @Override
+    public List<EncodedViewStats> findTopViewStats(LocalDateTime start, LocalDateTime end, String uriPrefix,
+                                                   int limit) {
+        List<Integer> uriIds = uriPrefix == null || uriPrefix.isEmpty() ? null
+                : dictionaryService.findUriIdsByPrefix(uriPrefix);
+        PriorityQueue<EncodedViewStats> top = new PriorityQueue<>(limit + 1, TOP_ORDER.reversed());
+        for (EncodedViewStats stats : aggregate(start, end, uriIds, false)) {
+            top.add(stats);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        return top.stream()
+                .sorted(TOP_ORDER)
+                .toList();
+    }
+
+    @Override
+    public void findHistogram(LocalDateTime start, LocalDateTime end, UriFilter uriFilter,
+                              RollupGranularity granularity, HistogramVisitor visitor) {
+        List<Integer> uriIds = dictionaryService.findUriIds(uriFilter);
+        if (uriIds.isEmpty()) {
+            return;
+        }
+        LocalDateTime first = granularity.floor(start);
+        long firstMicros = Segment.toEpochMicros(first);
+        long bucketMicros = granularity.getDuration().toNanos() / 1_000;
+        int bucketCount = (int) granularity.between(first, granularity.ceil(end));
+        Map<Long, long[]> hits = new HashMap<>();
+        scan(start, end, uriIds, (appId, uriId, timestamp, weight, ipHigh, ipLow) ->
+                hits.computeIfAbsent(key(appId, uriId), k -> new long[bucketCount])[(int) ((timestamp - firstMicros) /
+                        bucketMicros)] += weight);
+        hits.forEach((key, counts) -> {
+            LocalDateTime bucket = first;
+            for (long count : counts) {
+                if (count > 0) {
+                    visitor.visit((int) (key >>> 32), key.intValue(), bucket, count);
+                }
+                bucket = granularity.next(bucket);
+            }
+        });
+    }
+
+    @Override
+    public long findWatermark() {
+        return segmentRepository.getRecordCount();
+    }
+
+    @Override
+    public void streamHitsAfter(long watermark, Consumer<EndpointHit> consumer) {
+        segmentRepository.scanFrom(watermark, (appId, uriId, timestamp, hits, ipHigh, ipLow) -> {
+            EndpointHit endpointHit = new EndpointHit();
+            endpointHit.setAppId(appId);
+            endpointHit.setUriId(uriId);
+            endpointHit.setTimestamp(Segment.fromEpochMicros(timestamp));
+            endpointHit.setHits(hits);
+            endpointHit.setIpAddress(Segment.toIpAddress(ipHigh, ipLow));
+            consumer.accept(endpointHit);
+        });
+    }
+
+    private void scan(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, SegmentHitVisitor visitor) {
+        segmentRepository.scan(Segment.toEpochMicros(start), Segment.toEpochMicros(end), toBitSet(uriIds), visitor);
+    }
+
+    private List<EncodedViewStats> aggregate(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                             boolean unique) {
+        if (uriIds != null && uriIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, long[]> counts = new HashMap<>();
+        Map<Long, Set<Ip>> ips = new HashMap<>();
+        scan(start, end, uriIds, (appId, uriId, timestamp, hits, ipHigh, ipLow) -> {
+            long key = key(appId, uriId);
+            if (unique) {
+                ips.computeIfAbsent(key, k -> new HashSet<>()).add(new Ip(ipHigh, ipLow));
+            } else {
+                counts.computeIfAbsent(key, k -> new long[1])[0] += hits;
+            }
+        });
+
+        List<EncodedViewStats> viewStats = new ArrayList<>(unique ? ips.size() : counts.size());
+        if (unique) {
+            ips.forEach((key, keyIps) -> viewStats.add(toEncodedViewStats(key, keyIps.size())));
+        } else {
+            counts.forEach((key, count) -> viewStats.add(toEncodedViewStats(key, count[0])));
+        }
+        return viewStats;
+    }
+
+    private static long key(int appId, int uriId) {
+        return (long) appId << 32 | uriId & 0xffffffffL;
+    }
+
+    private EncodedViewStats toEncodedViewStats(long key, long hits) {
+        return new EncodedViewStats((int) (key >>> 32), (int) key, hits);
+    }
+
+    private BitSet toBitSet(List<Integer> uriIds) {
+        if (uriIds == null) {
+            return null;
+        }
+        BitSet bitSet = new BitSet();
+        uriIds.forEach(bitSet::set);
+        return bitSet;
+    }
+
+    private record Ip(long high, long low) {
+    }
+}
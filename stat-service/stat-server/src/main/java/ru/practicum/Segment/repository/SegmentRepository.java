@@ -0,0 +1,135 @@
+package ru.practicum.Segment.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.Segment.model.Segment;
+import ru.practicum.Segment.model.SegmentHitVisitor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+@Slf4j
+public class SegmentRepository {
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int capacity;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private Segment active;
+    private long nextSequence;
+
+    public SegmentRepository(Path directory, int capacity) {
+        if (capacity <= 0 || capacity > (Integer.MAX_VALUE - Segment.HEADER_BYTES) / Segment.RECORD_BYTES) {
+            throw new IllegalArgumentException("Invalid segment capacity: " + capacity);
+        }
+        this.directory = directory;
+        this.capacity = capacity;
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path path : files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .sorted()
+                        .toList()) {
+                    segments.add(Segment.open(path));
+                    nextSequence = sequence(path) + 1;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the segments in " + directory, e);
+        }
+        if (!segments.isEmpty() && !segments.getLast().isFull()) {
+            active = segments.getLast();
+        }
+        log.info("Opened {} segments in {}", segments.size(), directory);
+    }
+
+    public synchronized void append(List<EndpointHit> endpointHits) {
+        int index = 0;
+        while (index < endpointHits.size()) {
+            if (active == null) {
+                active = newSegment();
+            }
+            index = active.append(endpointHits, index);
+            if (active.isFull()) {
+                seal(active);
+                active = null;
+            }
+        }
+    }
+
+    public void scan(long start, long end, BitSet uriFilter, SegmentHitVisitor visitor) {
+        for (Segment segment : segments) {
+            segment.scan(start, end, uriFilter, visitor);
+        }
+    }
+
+    public synchronized long getRecordCount() {
+        long recordCount = 0;
+        for (Segment segment : segments) {
+            recordCount += segment.getCount();
+        }
+        return recordCount;
+    }
+
+    /**
+     * Visits the records appended after the first {@code position} records, in append order.
+     */
+    public void scanFrom(long position, SegmentHitVisitor visitor) {
+        long skipped = 0;
+        for (Segment segment : segments) {
+            int count = segment.getCount();
+            if (skipped + count > position) {
+                segment.scanFrom((int) Math.max(0, position - skipped), visitor);
+            }
+            skipped += count;
+        }
+    }
+
+    /**
+     * Makes the hits appended to the active segment since the last sync durable; full segments are synced when they
+     * are sealed.
+     */
+    public synchronized void sync() {
+        if (active != null) {
+            active.sync();
+        }
+    }
+
+    public synchronized void close() {
+        if (active != null) {
+            active.force();
+        }
+    }
+
+    private Segment newSegment() {
+        Path path = directory.resolve(String.format("%019d%s", nextSequence++, SEGMENT_SUFFIX));
+        try {
+            Segment segment = Segment.create(path, capacity);
+            segments.add(segment);
+            log.debug("Created segment {}", path);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create segment " + path, e);
+        }
+    }
+
+    private void seal(Segment segment) {
+        try {
+            segment.seal();
+            log.debug("Sealed segment {} with {} records", segment.getPath(), segment.getCount());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to seal segment " + segment.getPath(), e);
+        }
+    }
+
+    private long sequence(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,8 @@
+package ru.practicum.Sketch.model;
+
+import ru.practicum.Rollup.model.RollupGranularity;
+
+import java.time.LocalDateTime;
+
+public record SketchKey(RollupGranularity granularity, LocalDateTime bucket, Integer appId, Integer uriId) {
+}
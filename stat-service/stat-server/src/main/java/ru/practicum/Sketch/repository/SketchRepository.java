@@ -0,0 +1,90 @@
+package ru.practicum.Sketch.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.Dictionary.model.UriFilter;
+import ru.practicum.Dictionary.repository.UriFilterSql;
+import ru.practicum.Rollup.model.BucketRange;
+import ru.practicum.Rollup.model.RollupPlan;
+import ru.practicum.Sketch.model.SketchKey;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.List;
+
+@Repository
+public class SketchRepository {
+    private static final String UPDATE_SQL = "update statistics_sketch set registers = ? " +
+            "where granularity = ? and bucket = ? and app_id = ? and uri_id = ?";
+    private static final String INSERT_SQL = "insert into statistics_sketch " +
+            "(registers, granularity, bucket, app_id, uri_id) values (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public SketchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    public byte[] find(SketchKey key) {
+        List<byte[]> registers = jdbcTemplate.query("select registers from statistics_sketch " +
+                        "where granularity = ? and bucket = ? and app_id = ? and uri_id = ?",
+                (rs, rowNum) -> rs.getBytes("registers"),
+                key.granularity().name(), Timestamp.valueOf(key.bucket()), key.appId(), key.uriId());
+        return registers.isEmpty() ? null : registers.getFirst();
+    }
+
+    public void save(SketchKey key, byte[] registers) {
+        Object[] args = {registers, key.granularity().name(), Timestamp.valueOf(key.bucket()), key.appId(), key.uriId()};
+        if (jdbcTemplate.update(UPDATE_SQL, args) == 0) {
+            jdbcTemplate.update(INSERT_SQL, args);
+        }
+    }
+
+    public void deleteAll() {
+        jdbcTemplate.update("delete from statistics_sketch");
+    }
+
+    public void findAllHits(RowCallbackHandler handler) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement statement = con.prepareStatement("select app_id, uri_id, ip, timestamp from statistics " +
+                    "order by app_id, uri_id, timestamp");
+            statement.setFetchSize(10_000);
+            return statement;
+        }, handler);
+    }
+
+    public void findSketches(List<BucketRange> bucketRanges, UriFilter uriFilter, RowCallbackHandler handler) {
+        for (BucketRange range : bucketRanges) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("granularity", range.granularity().name())
+                    .addValue("from", Timestamp.valueOf(range.from()))
+                    .addValue("to", Timestamp.valueOf(range.to()));
+            String sql = "select app_id, uri_id, registers from statistics_sketch " +
+                    "where granularity = :granularity and bucket >= :from and bucket < :to";
+            if (uriFilter != null) {
+                sql += " and " + UriFilterSql.predicate("uri_id", uriFilter, params);
+            }
+            namedParameterJdbcTemplate.query(sql, params, handler);
+        }
+    }
+
+    public void findRawEdgeIps(RollupPlan plan, UriFilter uriFilter, RowCallbackHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(plan.start()))
+                .addValue("rawHeadEnd", Timestamp.valueOf(plan.rawHeadEnd()))
+                .addValue("rawTailStart", Timestamp.valueOf(plan.rawTailStart()))
+                .addValue("end", Timestamp.valueOf(plan.end()));
+        String sql = "select distinct app_id, uri_id, ip from statistics " +
+                "where ((timestamp > :start and timestamp < :rawHeadEnd) " +
+                "or (timestamp >= :rawTailStart and timestamp < :end))";
+        if (uriFilter != null) {
+            sql += " and " + UriFilterSql.predicate("uri_id", uriFilter, params);
+        }
+        namedParameterJdbcTemplate.query(sql, params, handler);
+    }
+}
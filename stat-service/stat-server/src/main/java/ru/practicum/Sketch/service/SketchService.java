@@ -0,0 +1,299 @@
+package ru.practicum.Sketch.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.Dictionary.model.UriFilter;
+import ru.practicum.Dictionary.service.DictionaryService;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.EndpointHit.model.StorageEngine;
+import ru.practicum.EndpointHit.service.HitIngestListener;
+import ru.practicum.Rollup.model.BucketRange;
+import ru.practicum.Rollup.model.RollupGranularity;
+import ru.practicum.Rollup.model.RollupPlan;
+import ru.practicum.Rollup.repository.AggregateStateRepository;
+import ru.practicum.Sketch.model.HyperLogLog;
+import ru.practicum.Sketch.model.SketchKey;
+import ru.practicum.Sketch.repository.SketchRepository;
+import ru.practicum.Snapshot.service.SnapshotParticipant;
+import ru.practicum.ViewStats.model.ViewStats;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the unique visitor sketches of the statistics table. Committed hits are added to in-memory sketches and
+ * flushed periodically; the sketches are marked in sync only after the final flush of a clean shutdown. After a crash
+ * the in-memory sketches come back from the snapshot and the hits stored since are replayed into them; adding a hit
+ * to a sketch twice changes nothing, so hits that were flushed after the snapshot do no harm. Without a snapshot, or
+ * after a run with the sketches disabled, they are rebuilt from the statistics table.
+ */
+@Service
+@Slf4j
+public class SketchService implements HitIngestListener, SnapshotParticipant {
+    private static final List<RollupGranularity> GRANULARITIES = List.of(RollupGranularity.HOUR, RollupGranularity.DAY);
+    private static final String STATE_NAME = "sketch";
+    private static final int KEY_BYTES = 1 + Long.BYTES + 2 * Integer.BYTES;
+
+    private final SketchRepository sketchRepository;
+    private final AggregateStateRepository aggregateStateRepository;
+    private final DictionaryService dictionaryService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Map<SketchKey, HyperLogLog> pending = new ConcurrentHashMap<>();
+    private final Map<SketchKey, HyperLogLog> flushing = new ConcurrentHashMap<>();
+    private volatile boolean rebuildNeeded;
+
+    public SketchService(SketchRepository sketchRepository,
+                         AggregateStateRepository aggregateStateRepository,
+                         DictionaryService dictionaryService,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${stat-server.sketch.enabled:true}") boolean enabled,
+                         @Value("${stat-server.storage.engine:JDBC}") StorageEngine storageEngine) {
+        this.sketchRepository = sketchRepository;
+        this.aggregateStateRepository = aggregateStateRepository;
+        this.dictionaryService = dictionaryService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled && storageEngine == StorageEngine.JDBC;
+    }
+
+    @PostConstruct
+    public void init() {
+        boolean inSync = aggregateStateRepository.clearInSync(STATE_NAME);
+        rebuildNeeded = enabled && !inSync;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> endpointHits) {
+        if (!enabled) {
+            return;
+        }
+        Map<SketchKey, List<Long>> hashes = hashes(endpointHits);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addHashes(hashes);
+                }
+            });
+        } else {
+            addHashes(hashes);
+        }
+    }
+
+    @Override
+    public String getSnapshotName() {
+        return STATE_NAME;
+    }
+
+    @Override
+    public boolean isSnapshotEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Saves the sketches that are not in the sketch table yet. A sketch being flushed may be merged with its stored
+     * registers meanwhile; either state holds all of its hits.
+     */
+    @Override
+    public byte[] snapshot() {
+        List<SketchKey> keys = new ArrayList<>();
+        List<byte[]> registers = new ArrayList<>();
+        for (Map<SketchKey, HyperLogLog> sketches : List.of(pending, flushing)) {
+            sketches.keySet().forEach(key -> sketches.computeIfPresent(key, (k, sketch) -> {
+                keys.add(k);
+                registers.add(sketch.toBytes());
+                return sketch;
+            }));
+        }
+        int size = Integer.BYTES;
+        for (byte[] bytes : registers) {
+            size += KEY_BYTES + Integer.BYTES + bytes.length;
+        }
+        ByteBuffer state = ByteBuffer.allocate(size).putInt(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            SketchKey key = keys.get(i);
+            state.put((byte) key.granularity().ordinal())
+                    .putLong(key.bucket().toEpochSecond(ZoneOffset.UTC))
+                    .putInt(key.appId())
+                    .putInt(key.uriId())
+                    .putInt(registers.get(i).length)
+                    .put(registers.get(i));
+        }
+        return state.array();
+    }
+
+    @Override
+    public void restore(ByteBuffer state) {
+        int count = state.getInt();
+        Map<SketchKey, HyperLogLog> restored = new HashMap<>(count);
+        for (int i = 0; i < count; i++) {
+            SketchKey key = new SketchKey(RollupGranularity.values()[state.get()],
+                    LocalDateTime.ofEpochSecond(state.getLong(), 0, ZoneOffset.UTC), state.getInt(), state.getInt());
+            byte[] registers = new byte[state.getInt()];
+            state.get(registers);
+            restored.merge(key, HyperLogLog.fromBytes(registers), (a, b) -> {
+                a.merge(b);
+                return a;
+            });
+        }
+        restored.forEach((key, sketch) -> pending.merge(key, sketch, (a, b) -> {
+            a.merge(b);
+            return a;
+        }));
+        rebuildNeeded = false;
+    }
+
+    @Override
+    public void replay(List<EndpointHit> endpointHits) {
+        addHashes(hashes(endpointHits));
+    }
+
+    @Override
+    public void startWithoutSnapshot() {
+        if (!rebuildNeeded) {
+            return;
+        }
+        log.info("The sketches may miss hits since the last clean shutdown, rebuilding them from the statistics table");
+        // In one transaction, PostgreSQL honours the fetch size of the scan only with autocommit off
+        transactionTemplate.executeWithoutResult(status -> rebuild());
+        rebuildNeeded = false;
+        log.info("The sketch table has been rebuilt");
+    }
+
+    @Scheduled(fixedDelayString = "${stat-server.sketch.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (SketchKey key : List.copyOf(pending.keySet())) {
+            HyperLogLog sketch = pending.get(key);
+            if (sketch == null) {
+                continue;
+            }
+            flushing.put(key, sketch);
+            pending.remove(key, sketch);
+            byte[] stored = sketchRepository.find(key);
+            if (stored != null) {
+                sketch.merge(HyperLogLog.fromBytes(stored));
+            }
+            sketchRepository.save(key, sketch.toBytes());
+            flushing.remove(key);
+        }
+        log.debug("Unique visitor sketches have been flushed");
+    }
+
+    @PreDestroy
+    public void close() {
+        if (enabled) {
+            flush();
+            aggregateStateRepository.markInSync(STATE_NAME);
+        }
+    }
+
+    public List<ViewStats> findViewStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter) {
+        RollupPlan plan = RollupPlan.of(start, end, GRANULARITIES);
+        Map<AppUri, HyperLogLog> merged = new HashMap<>();
+
+        mergeInMemory(pending, plan.bucketRanges(), uriFilter, merged);
+        mergeInMemory(flushing, plan.bucketRanges(), uriFilter, merged);
+        sketchRepository.findSketches(plan.bucketRanges(), uriFilter, rs -> sketchFor(merged, rs.getInt("app_id"),
+                rs.getInt("uri_id")).merge(HyperLogLog.fromBytes(rs.getBytes("registers"))));
+        sketchRepository.findRawEdgeIps(plan, uriFilter, rs -> sketchFor(merged, rs.getInt("app_id"),
+                rs.getInt("uri_id")).add(rs.getBytes("ip")));
+
+        List<ViewStats> viewStats = new ArrayList<>(merged.size());
+        merged.forEach((appUri, sketch) -> {
+            if (uriFilter == null || dictionaryService.matches(uriFilter, appUri.uriId())) {
+                viewStats.add(dictionaryService.toViewStats(appUri.appId(), appUri.uriId(), sketch.estimate()));
+            }
+        });
+        viewStats.sort((a, b) -> Long.compare(b.getHits(), a.getHits()));
+        return viewStats;
+    }
+
+    private void mergeInMemory(Map<SketchKey, HyperLogLog> sketches, List<BucketRange> bucketRanges,
+                               UriFilter uriFilter, Map<AppUri, HyperLogLog> merged) {
+        sketches.forEach((key, sketch) -> {
+            if (uriFilter != null && !dictionaryService.matches(uriFilter, key.uriId())) {
+                return;
+            }
+            for (BucketRange range : bucketRanges) {
+                if (range.granularity() == key.granularity() && !key.bucket().isBefore(range.from())
+                        && key.bucket().isBefore(range.to())) {
+                    sketchFor(merged, key.appId(), key.uriId()).merge(sketch);
+                    return;
+                }
+            }
+        });
+    }
+
+    private Map<SketchKey, List<Long>> hashes(List<EndpointHit> endpointHits) {
+        Map<SketchKey, List<Long>> hashes = new HashMap<>();
+        for (EndpointHit endpointHit : endpointHits) {
+            long hash = HyperLogLog.hash(endpointHit.getIpAddress());
+            for (RollupGranularity granularity : GRANULARITIES) {
+                SketchKey key = new SketchKey(granularity, granularity.floor(endpointHit.getTimestamp()),
+                        endpointHit.getAppId(), endpointHit.getUriId());
+                hashes.computeIfAbsent(key, k -> new ArrayList<>()).add(hash);
+            }
+        }
+        return hashes;
+    }
+
+    private void addHashes(Map<SketchKey, List<Long>> hashes) {
+        hashes.forEach((key, keyHashes) -> pending.compute(key, (k, sketch) -> {
+            HyperLogLog result = sketch == null ? new HyperLogLog() : sketch;
+            keyHashes.forEach(result::addHash);
+            return result;
+        }));
+    }
+
+    private HyperLogLog sketchFor(Map<AppUri, HyperLogLog> merged, Integer appId, Integer uriId) {
+        return merged.computeIfAbsent(new AppUri(appId, uriId), k -> new HyperLogLog());
+    }
+
+    private void rebuild() {
+        sketchRepository.deleteAll();
+        Map<RollupGranularity, SketchKey> currentKeys = new HashMap<>();
+        Map<RollupGranularity, HyperLogLog> currentSketches = new HashMap<>();
+        sketchRepository.findAllHits(rs -> {
+            Integer appId = rs.getInt("app_id");
+            Integer uriId = rs.getInt("uri_id");
+            LocalDateTime timestamp = rs.getTimestamp("timestamp").toLocalDateTime();
+            for (RollupGranularity granularity : GRANULARITIES) {
+                SketchKey key = new SketchKey(granularity, granularity.floor(timestamp), appId, uriId);
+                if (!key.equals(currentKeys.get(granularity))) {
+                    SketchKey previous = currentKeys.put(granularity, key);
+                    HyperLogLog sketch = currentSketches.put(granularity, new HyperLogLog());
+                    if (previous != null) {
+                        sketchRepository.save(previous, sketch.toBytes());
+                    }
+                }
+                currentSketches.get(granularity).add(rs.getBytes("ip"));
+            }
+        });
+        currentKeys.forEach((granularity, key) -> sketchRepository.save(key,
+                currentSketches.get(granularity).toBytes()));
+    }
+
+    private record AppUri(Integer appId, Integer uriId) {
+    }
+}
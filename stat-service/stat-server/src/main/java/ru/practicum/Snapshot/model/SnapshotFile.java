@@ -0,0 +1,121 @@
+package ru.practicum.Snapshot.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A snapshot of in-memory aggregates as named sections in one memory-mapped file, together with the watermark of the
+ * last hit the aggregates contain. The file is written next to its final name, forced to disk and then moved over
+ * the previous snapshot, so a crash leaves either the old or the new snapshot. A CRC32 of the whole file is kept in
+ * the last eight bytes and checked when the file is read.
+ */
+public final class SnapshotFile {
+    private static final int MAGIC = 0x534e4150;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int CHECKSUM_BYTES = Long.BYTES;
+
+    private final long watermark;
+    private final Instant createdAt;
+    private final Map<String, ByteBuffer> sections;
+
+    private SnapshotFile(long watermark, Instant createdAt, Map<String, ByteBuffer> sections) {
+        this.watermark = watermark;
+        this.createdAt = createdAt;
+        this.sections = sections;
+    }
+
+    public static void write(Path path, long watermark, Map<String, byte[]> sections) throws IOException {
+        long size = HEADER_BYTES + CHECKSUM_BYTES;
+        for (Map.Entry<String, byte[]> section : sections.entrySet()) {
+            size += Short.BYTES + section.getKey().getBytes(StandardCharsets.UTF_8).length + Integer.BYTES +
+                    section.getValue().length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The snapshot of " + size + " bytes is too large");
+        }
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporary = parent.resolve(path.getFileName() + ".tmp");
+        Files.deleteIfExists(temporary);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(watermark);
+            buffer.putLong(System.currentTimeMillis());
+            buffer.putInt(sections.size());
+            buffer.position(HEADER_BYTES);
+            for (Map.Entry<String, byte[]> section : sections.entrySet()) {
+                byte[] name = section.getKey().getBytes(StandardCharsets.UTF_8);
+                buffer.putShort((short) name.length);
+                buffer.put(name);
+                buffer.putInt(section.getValue().length);
+                buffer.put(section.getValue());
+            }
+            buffer.putLong(checksum(buffer, buffer.position()));
+            buffer.force();
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Maps the snapshot read-only; the sections are views of the mapping and are not copied.
+     */
+    public static SnapshotFile read(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_BYTES + CHECKSUM_BYTES || buffer.getInt(0) != MAGIC ||
+                buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a snapshot file: " + path);
+        }
+        int checksumOffset = buffer.capacity() - CHECKSUM_BYTES;
+        if (buffer.getLong(checksumOffset) != checksum(buffer, checksumOffset)) {
+            throw new IOException("The snapshot file is corrupted: " + path);
+        }
+        int sectionCount = buffer.getInt(24);
+        Map<String, ByteBuffer> sections = new LinkedHashMap<>();
+        buffer.position(HEADER_BYTES);
+        for (int i = 0; i < sectionCount; i++) {
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            int length = buffer.getInt();
+            sections.put(new String(name, StandardCharsets.UTF_8), buffer.slice(buffer.position(), length));
+            buffer.position(buffer.position() + length);
+        }
+        return new SnapshotFile(buffer.getLong(8), Instant.ofEpochMilli(buffer.getLong(16)), sections);
+    }
+
+    public long getWatermark() {
+        return watermark;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public ByteBuffer getSection(String name) {
+        ByteBuffer section = sections.get(name);
+        return section == null ? null : section.duplicate();
+    }
+
+    private static long checksum(ByteBuffer buffer, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, length));
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,30 @@
+package ru.practicum.Snapshot.service;
+
+import ru.practicum.EndpointHit.model.EndpointHit;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * In-memory state that {@link SnapshotService} saves periodically and restores on startup. After a restore the hits
+ * stored since the snapshot are passed to {@link #replay}, which must bring the state up to date without filtering
+ * or storing them again.
+ */
+public interface SnapshotParticipant {
+    String getSnapshotName();
+
+    boolean isSnapshotEnabled();
+
+    byte[] snapshot();
+
+    void restore(ByteBuffer state);
+
+    void replay(List<EndpointHit> endpointHits);
+
+    /**
+     * Called on startup instead of {@link #restore} and {@link #replay} when there is no snapshot state for this
+     * participant, so it can bring its state up to date from other sources.
+     */
+    default void startWithoutSnapshot() {
+    }
+}
@@ -0,0 +1,164 @@
+package ru.practicum.Snapshot.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.EndpointHit.repository.HitStore;
+import ru.practicum.EndpointHit.service.EndpointHitWriter;
+import ru.practicum.Snapshot.model.SnapshotFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves the in-memory aggregates of every {@link SnapshotParticipant} to a snapshot file and restores them on
+ * startup, so a restart does not lose them and does not have to rebuild them from the whole statistics table.
+ * The watermark is the one of the {@link HitStore}: the last statistics id, or the number of segment records. It is
+ * read together with the copy of the aggregates while no batch is between being stored and reaching the listeners, so
+ * every hit up to it is in the snapshot. A batch whose listeners have run but whose transaction commits later may still be replayed into
+ * aggregates that already hold it.
+ */
+@Service
+@Slf4j
+public class SnapshotService {
+    private final List<SnapshotParticipant> snapshotParticipants;
+    private final HitStore hitStore;
+    private final EndpointHitWriter endpointHitWriter;
+    private final boolean enabled;
+    private final Path file;
+    private final int replayChunkSize;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public SnapshotService(List<SnapshotParticipant> snapshotParticipants,
+                           HitStore hitStore,
+                           EndpointHitWriter endpointHitWriter,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${stat-server.snapshot.enabled:false}") boolean enabled,
+                           @Value("${stat-server.snapshot.file:snapshots/aggregates.snap}") Path file,
+                           @Value("${stat-server.snapshot.replay-chunk-size:1000}") int replayChunkSize) {
+        this.snapshotParticipants = snapshotParticipants;
+        this.hitStore = hitStore;
+        this.endpointHitWriter = endpointHitWriter;
+        this.enabled = enabled;
+        this.file = file;
+        this.replayChunkSize = replayChunkSize;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void init() {
+        List<SnapshotParticipant> restored = enabled ? restore() : List.of();
+        enabledParticipants().stream()
+                .filter(snapshotParticipant -> !restored.contains(snapshotParticipant))
+                .forEach(SnapshotParticipant::startWithoutSnapshot);
+    }
+
+    @Scheduled(fixedDelayString = "${stat-server.snapshot.interval-ms:60000}",
+            initialDelayString = "${stat-server.snapshot.interval-ms:60000}")
+    public synchronized void snapshot() {
+        if (!enabled) {
+            return;
+        }
+        Map<String, byte[]> sections = new LinkedHashMap<>();
+        long watermark = endpointHitWriter.whileIdle(() -> {
+            for (SnapshotParticipant snapshotParticipant : enabledParticipants()) {
+                sections.put(snapshotParticipant.getSnapshotName(), snapshotParticipant.snapshot());
+            }
+            return hitStore.findWatermark();
+        });
+        try {
+            SnapshotFile.write(file, watermark, sections);
+            log.debug("The aggregates have been saved to {} up to watermark {}", file, watermark);
+        } catch (IOException e) {
+            log.error("Saving the snapshot to {} failed", file, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        snapshot();
+    }
+
+    private List<SnapshotParticipant> restore() {
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        long startNanos = System.nanoTime();
+        SnapshotFile snapshotFile;
+        try {
+            snapshotFile = SnapshotFile.read(file);
+        } catch (IOException e) {
+            log.warn("The snapshot {} cannot be read, the aggregates start without it: {}", file, e.getMessage());
+            return List.of();
+        }
+        long watermark = snapshotFile.getWatermark();
+        if (watermark > hitStore.findWatermark()) {
+            log.warn("The snapshot {} is ahead of the stored hits, it belongs to another database and is ignored",
+                    file);
+            return List.of();
+        }
+        List<SnapshotParticipant> restored = new ArrayList<>();
+        for (SnapshotParticipant snapshotParticipant : enabledParticipants()) {
+            ByteBuffer state = snapshotFile.getSection(snapshotParticipant.getSnapshotName());
+            if (state == null) {
+                continue;
+            }
+            try {
+                snapshotParticipant.restore(state);
+                restored.add(snapshotParticipant);
+            } catch (RuntimeException e) {
+                log.warn("The {} snapshot cannot be restored, it starts without it: {}",
+                        snapshotParticipant.getSnapshotName(), e.getMessage());
+            }
+        }
+        // PostgreSQL streams the tail with the fetch size only inside a transaction
+        Long replayed = readOnlyTransaction.execute(status -> replay(watermark, restored));
+        log.info("Restored {} aggregates from the snapshot of {} and replayed {} newer hits in {} ms",
+                restored.size(), snapshotFile.getCreatedAt(), replayed, (System.nanoTime() - startNanos) / 1_000_000);
+        return restored;
+    }
+
+    private long replay(long watermark, List<SnapshotParticipant> restored) {
+        if (restored.isEmpty()) {
+            return 0;
+        }
+        List<EndpointHit> chunk = new ArrayList<>(replayChunkSize);
+        long[] replayed = {0};
+        hitStore.streamHitsAfter(watermark, endpointHit -> {
+            chunk.add(endpointHit);
+            if (chunk.size() == replayChunkSize) {
+                restored.forEach(snapshotParticipant -> snapshotParticipant.replay(chunk));
+                replayed[0] += chunk.size();
+                chunk.clear();
+            }
+        });
+        if (!chunk.isEmpty()) {
+            restored.forEach(snapshotParticipant -> snapshotParticipant.replay(chunk));
+            replayed[0] += chunk.size();
+        }
+        return replayed[0];
+    }
+
+    private List<SnapshotParticipant> enabledParticipants() {
+        return snapshotParticipants.stream()
+                .filter(SnapshotParticipant::isSnapshotEnabled)
+                .toList();
+    }
+}
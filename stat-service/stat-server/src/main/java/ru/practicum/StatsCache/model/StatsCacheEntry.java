@@ -0,0 +1,113 @@
+package ru.practicum.StatsCache.model;
+
+import lombok.Getter;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.ViewStats.model.EncodedViewStats;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cached per app/uri counts for one {@link StatsCacheKey}. Committed hits are added to non-unique counts in place;
+ * a uri whose count cannot be updated that way (unique counts, a load or refresh still running, or an ingest that
+ * was in flight when the counts were loaded and may be part of them) is marked stale and reloaded on the next read.
+ */
+public class StatsCacheEntry {
+    @Getter
+    private final StatsCacheKey key;
+    @Getter
+    private final long createdNanos;
+    private final Map<AppUri, Long> counts = new HashMap<>();
+    private final Set<Integer> stale = new HashSet<>();
+    private final Set<Integer> refreshing = new HashSet<>();
+    private final Set<Long> untrustedIngests = new HashSet<>();
+    private boolean ready;
+
+    public StatsCacheEntry(StatsCacheKey key, long createdNanos) {
+        this.key = key;
+        this.createdNanos = createdNanos;
+    }
+
+    public synchronized boolean isReady() {
+        return ready;
+    }
+
+    public synchronized void load(List<EncodedViewStats> viewStats, Set<Long> inFlightIngests) {
+        untrustedIngests.addAll(inFlightIngests);
+        put(viewStats);
+        ready = true;
+    }
+
+    public synchronized Set<Integer> beginRefresh() {
+        if (!refreshing.isEmpty()) {
+            return null;
+        }
+        Set<Integer> refresh = new HashSet<>(stale);
+        refreshing.addAll(stale);
+        stale.clear();
+        return refresh;
+    }
+
+    public synchronized void completeRefresh(Set<Integer> refresh, List<EncodedViewStats> viewStats,
+                                             Set<Long> inFlightIngests) {
+        untrustedIngests.addAll(inFlightIngests);
+        counts.keySet().removeIf(appUri -> refresh.contains(appUri.uriId()));
+        put(viewStats);
+        refreshing.removeAll(refresh);
+    }
+
+    public synchronized void abortRefresh(Set<Integer> refresh) {
+        refreshing.removeAll(refresh);
+        stale.addAll(refresh);
+    }
+
+    public synchronized void apply(long ingest, List<EndpointHit> endpointHits) {
+        boolean untrusted = untrustedIngests.remove(ingest);
+        for (EndpointHit endpointHit : endpointHits) {
+            Integer uriId = endpointHit.getUriId();
+            if (!covers(endpointHit)) {
+                continue;
+            }
+            if (untrusted || !ready || key.unique() || stale.contains(uriId) || refreshing.contains(uriId)) {
+                stale.add(uriId);
+            } else {
+                counts.merge(new AppUri(endpointHit.getAppId(), uriId), (long) endpointHit.getHits(), Long::sum);
+            }
+        }
+    }
+
+    public synchronized void invalidate(List<EndpointHit> endpointHits) {
+        for (EndpointHit endpointHit : endpointHits) {
+            if (covers(endpointHit)) {
+                stale.add(endpointHit.getUriId());
+            }
+        }
+    }
+
+    public synchronized List<EncodedViewStats> toViewStats() {
+        List<EncodedViewStats> viewStats = new ArrayList<>(counts.size());
+        counts.forEach((appUri, hits) -> viewStats.add(new EncodedViewStats(appUri.appId(), appUri.uriId(), hits)));
+        viewStats.sort((a, b) -> Long.compare(b.getHits(), a.getHits()));
+        return viewStats;
+    }
+
+    private boolean covers(EndpointHit endpointHit) {
+        LocalDateTime timestamp = endpointHit.getTimestamp();
+        return key.uriFilter().matches(endpointHit.getUriId(), endpointHit.getUri()) &&
+                timestamp.isAfter(key.start()) && timestamp.isBefore(key.end());
+    }
+
+    private void put(List<EncodedViewStats> viewStats) {
+        for (EncodedViewStats stats : viewStats) {
+            counts.put(new AppUri(stats.getAppId(), stats.getUriId()), stats.getHits());
+        }
+    }
+
+    private record AppUri(Integer appId, Integer uriId) {
+    }
+}
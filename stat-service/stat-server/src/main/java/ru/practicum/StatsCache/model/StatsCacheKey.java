@@ -0,0 +1,8 @@
+package ru.practicum.StatsCache.model;
+
+import ru.practicum.Dictionary.model.UriFilter;
+
+import java.time.LocalDateTime;
+
+public record StatsCacheKey(UriFilter uriFilter, boolean unique, LocalDateTime start, LocalDateTime end) {
+}
@@ -0,0 +1,235 @@
+package ru.practicum.StatsCache.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.Dictionary.model.UriFilter;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.EndpointHit.service.HitIngestListener;
+import ru.practicum.StatsCache.model.StatsCacheEntry;
+import ru.practicum.StatsCache.model.StatsCacheKey;
+import ru.practicum.ViewStats.model.EncodedViewStats;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+@Service
+@Slf4j
+public class StatsCacheService implements HitIngestListener {
+    /**
+     * Hit timestamps are stored with microsecond precision, so (a, b] is the same range as (a, b + 1µs).
+     */
+    private static final Duration RESOLUTION = Duration.ofNanos(1_000);
+
+    private final boolean enabled;
+    private final long bucketSeconds;
+    private final long maxAgeNanos;
+    private final Map<StatsCacheKey, StatsCacheEntry> entries;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter refreshes;
+    private final Counter bypasses;
+    private final AtomicLong ingestSequence = new AtomicLong();
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    public StatsCacheService(MeterRegistry meterRegistry,
+                             @Value("${stat-server.stats-cache.enabled:true}") boolean enabled,
+                             @Value("${stat-server.stats-cache.bucket:1m}") Duration bucket,
+                             @Value("${stat-server.stats-cache.max-entries:1000}") int maxEntries,
+                             @Value("${stat-server.stats-cache.max-age:5m}") Duration maxAge) {
+        this.enabled = enabled;
+        this.bucketSeconds = Math.max(1, bucket.toSeconds());
+        this.maxAgeNanos = maxAge.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<StatsCacheKey, StatsCacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.hits = meterRegistry.counter("stat.stats-cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("stat.stats-cache.requests", "result", "miss");
+        this.refreshes = meterRegistry.counter("stat.stats-cache.requests", "result", "refresh");
+        this.bypasses = meterRegistry.counter("stat.stats-cache.requests", "result", "bypass");
+        Gauge.builder("stat.stats-cache.size", this, StatsCacheService::size)
+                .description("Number of cached statistics queries")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the counts of (start, end). The bucket-aligned core of the range is answered from the cache, so a
+     * sliding range like {@code (now - 20y, now)} keeps hitting the same entry within a bucket; the slices before and
+     * after the core are loaded directly and added. Unique counts of the slices cannot be added up, so an unaligned
+     * unique range is loaded directly, as is a range too short to have a core.
+     */
+    public List<EncodedViewStats> find(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, boolean unique,
+                                       ViewStatsLoader loader) {
+        LocalDateTime coreStart = ceil(start);
+        LocalDateTime coreEnd = floor(end);
+        boolean aligned = coreStart.equals(start) && coreEnd.equals(end);
+        if (!aligned && (unique || !coreStart.isBefore(coreEnd))) {
+            bypasses.increment();
+            return loader.load(start, end, uriFilter, unique);
+        }
+        List<EncodedViewStats> core = findCore(new StatsCacheKey(uriFilter, unique, coreStart, coreEnd), loader);
+        if (aligned) {
+            return core;
+        }
+        // Both the query and the cached core exclude their bounds, so each slice takes the core bound it borders
+        Map<AppUri, Long> counts = new HashMap<>();
+        add(counts, core);
+        if (start.isBefore(coreStart)) {
+            add(counts, loader.load(start, coreStart.plus(RESOLUTION), uriFilter, false));
+        }
+        if (coreEnd.isBefore(end)) {
+            add(counts, loader.load(coreEnd.minus(RESOLUTION), end, uriFilter, false));
+        }
+        List<EncodedViewStats> viewStats = new ArrayList<>(counts.size());
+        counts.forEach((appUri, hits) -> viewStats.add(new EncodedViewStats(appUri.appId(), appUri.uriId(), hits)));
+        viewStats.sort((a, b) -> Long.compare(b.getHits(), a.getHits()));
+        return viewStats;
+    }
+
+    private List<EncodedViewStats> findCore(StatsCacheKey key, ViewStatsLoader loader) {
+        boolean unique = key.unique();
+        long now = System.nanoTime();
+        StatsCacheEntry entry;
+        boolean created = false;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null || now - entry.getCreatedNanos() > maxAgeNanos) {
+                entry = new StatsCacheEntry(key, now);
+                entries.put(key, entry);
+                created = true;
+            }
+        }
+
+        if (created) {
+            misses.increment();
+            try {
+                entry.load(loader.load(key.start(), key.end(), key.uriFilter(), unique), Set.copyOf(inFlight));
+            } catch (RuntimeException e) {
+                remove(entry);
+                throw e;
+            }
+            return entry.toViewStats();
+        }
+        if (!entry.isReady()) {
+            misses.increment();
+            return loader.load(key.start(), key.end(), key.uriFilter(), unique);
+        }
+
+        Set<Integer> refresh = entry.beginRefresh();
+        if (refresh == null) {
+            misses.increment();
+            return loader.load(key.start(), key.end(), key.uriFilter(), unique);
+        }
+        if (refresh.isEmpty()) {
+            hits.increment();
+            return entry.toViewStats();
+        }
+        refreshes.increment();
+        try {
+            entry.completeRefresh(refresh, loader.load(key.start(), key.end(), UriFilter.ofIds(refresh), unique),
+                    Set.copyOf(inFlight));
+        } catch (RuntimeException e) {
+            entry.abortRefresh(refresh);
+            throw e;
+        }
+        return entry.toViewStats();
+    }
+
+    /**
+     * Runs inside the ingest transaction. The hits are added to the cached counts after the commit, and until then
+     * the ingest is in flight: a load that returns while it is in flight may or may not have seen its rows, so the
+     * entries loaded then mark its uris stale instead of adding its hits a second time.
+     */
+    @Override
+    public void onHits(List<EndpointHit> endpointHits) {
+        if (!enabled) {
+            return;
+        }
+        List<EndpointHit> committedHits = List.copyOf(endpointHits);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // The rows are visible already, a concurrent load may have counted them
+            forEachEntry(entry -> entry.invalidate(committedHits));
+            return;
+        }
+        long ingest = ingestSequence.incrementAndGet();
+        inFlight.add(ingest);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                forEachEntry(entry -> entry.apply(ingest, committedHits));
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                inFlight.remove(ingest);
+            }
+        });
+    }
+
+    private void forEachEntry(Consumer<StatsCacheEntry> action) {
+        List<StatsCacheEntry> current;
+        synchronized (entries) {
+            current = List.copyOf(entries.values());
+        }
+        current.forEach(action);
+    }
+
+    private void remove(StatsCacheEntry entry) {
+        synchronized (entries) {
+            entries.remove(entry.getKey(), entry);
+        }
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static void add(Map<AppUri, Long> counts, List<EncodedViewStats> viewStats) {
+        for (EncodedViewStats stats : viewStats) {
+            counts.merge(new AppUri(stats.getAppId(), stats.getUriId()), stats.getHits(), Long::sum);
+        }
+    }
+
+    private LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? floor : floor.plusSeconds(bucketSeconds);
+    }
+
+    private LocalDateTime floor(LocalDateTime time) {
+        long epochSecond = time.toEpochSecond(ZoneOffset.UTC);
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochSecond, bucketSeconds) * bucketSeconds, 0,
+                ZoneOffset.UTC);
+    }
+
+    private record AppUri(Integer appId, Integer uriId) {
+    }
+
+    @FunctionalInterface
+    public interface ViewStatsLoader {
+        List<EncodedViewStats> load(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, boolean unique);
+    }
+}
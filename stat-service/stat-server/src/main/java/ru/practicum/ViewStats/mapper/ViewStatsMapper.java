@@ -1,7 +1,13 @@
 package ru.practicum.ViewStats.mapper;
 
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.MappingConstants;
+import ru.practicum.StatsWindowDto;
+import ru.practicum.StatsWindowResultDto;
+import ru.practicum.ViewHistogramDto;
+import ru.practicum.ViewStats.model.StatsWindow;
+import ru.practicum.ViewStats.model.ViewHistogram;
 import ru.practicum.ViewStats.model.ViewStats;
 import ru.practicum.ViewStatsDto;
 
@@ -9,5 +15,14 @@ import java.util.List;
 
 @Mapper(componentModel = MappingConstants.ComponentModel.SPRING)
 public interface ViewStatsMapper {
+    ViewStatsDto viewStatsToViewStatsDto(ViewStats viewStats);
+
+    ViewHistogramDto viewHistogramToViewHistogramDto(ViewHistogram viewHistogram);
+
+    List<StatsWindow> listStatsWindowDtoToListStatsWindow(List<StatsWindowDto> statsWindowDtos);
+
+    @Mapping(target = "stats", source = "viewStats")
+    StatsWindowResultDto toStatsWindowResultDto(StatsWindow statsWindow, List<ViewStats> viewStats);
+
     List<ViewStatsDto> listViewStatsToListViewStatsDto(List<ViewStats> viewStats);
 }
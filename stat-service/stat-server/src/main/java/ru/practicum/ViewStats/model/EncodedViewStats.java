@@ -0,0 +1,12 @@
+package ru.practicum.ViewStats.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class EncodedViewStats {
+    private Integer appId;
+    private Integer uriId;
+    private Long hits;
+}
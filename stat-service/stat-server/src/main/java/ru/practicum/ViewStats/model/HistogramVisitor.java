@@ -0,0 +1,8 @@
+package ru.practicum.ViewStats.model;
+
+import java.time.LocalDateTime;
+
+@FunctionalInterface
+public interface HistogramVisitor {
+    void visit(int appId, int uriId, LocalDateTime bucket, long hits);
+}
@@ -0,0 +1,19 @@
+package ru.practicum.ViewStats.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatsWindow {
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private boolean unique;
+    private boolean approximate;
+}
@@ -0,0 +1,16 @@
+package ru.practicum.ViewStats.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.practicum.Rollup.model.RollupGranularity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class ViewHistogram {
+    private RollupGranularity granularity;
+    private List<LocalDateTime> buckets;
+    private List<ViewSeries> series;
+}
@@ -0,0 +1,12 @@
+package ru.practicum.ViewStats.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class ViewSeries {
+    private String app;
+    private String uri;
+    private long[] hits;
+}
@@ -0,0 +1,23 @@
+package ru.practicum.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+@Component
+@Slf4j
+public class DatabasePlatform {
+    private final boolean postgres;
+
+    public DatabasePlatform(JdbcTemplate jdbcTemplate) {
+        String productName = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        this.postgres = "PostgreSQL".equalsIgnoreCase(productName);
+        log.info("Statistics database: {}", productName);
+    }
+
+    public boolean isPostgres() {
+        return postgres;
+    }
+}
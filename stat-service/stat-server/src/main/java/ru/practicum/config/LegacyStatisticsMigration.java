@@ -0,0 +1,184 @@
+package ru.practicum.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.EndpointHit.model.IpAddresses;
+import ru.practicum.exception.IpAddressException;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Brings a {@code statistics} table of an older layout up to the current one.
+ * <ul>
+ *     <li>The app and uri stored as strings in every row: {@link #prepare} runs before the schema script and renames
+ *     the old table out of the way, {@link #complete} runs after it, fills {@code apps} and {@code uris} and copies
+ *     the rows over with their ids.</li>
+ *     <li>Dictionary ids with the ip as text: {@link #prepare} converts the ip column to bytes in place, which keeps
+ *     the partitions of a partitioned table where they are.</li>
+ * </ul>
+ * Rows whose ip cannot be parsed are dropped and counted in the log.
+ */
+@Slf4j
+class LegacyStatisticsMigration {
+    static final String LEGACY_TABLE = "statistics_legacy";
+
+    private static final Set<Integer> TEXT_TYPES = Set.of(Types.VARCHAR, Types.CHAR, Types.LONGVARCHAR,
+            Types.NVARCHAR, Types.NCHAR);
+    private static final String INSERT_SQL =
+            "insert into statistics (id, app_id, uri_id, ip, hits, timestamp) values (?, ?, ?, ?, 1, ?)";
+    private static final String UPDATE_IP_SQL = "update statistics set ip_address = ? where id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    LegacyStatisticsMigration(DataSource dataSource, int batchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(batchSize);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.batchSize = batchSize;
+    }
+
+    void prepare() {
+        Map<String, Integer> columns = columns("statistics");
+        if (columns.containsKey("app")) {
+            log.info("Found the statistics table of the string layout, renaming it to {} for migration",
+                    LEGACY_TABLE);
+            jdbcTemplate.execute("ALTER TABLE statistics RENAME TO " + LEGACY_TABLE);
+            return;
+        }
+        if (columns.containsKey("ip") && TEXT_TYPES.contains(columns.get("ip"))) {
+            transactionTemplate.executeWithoutResult(status -> convertIpColumn());
+        }
+        if (!columns.isEmpty() && !columns.containsKey("hits")) {
+            jdbcTemplate.execute("ALTER TABLE statistics ADD COLUMN hits INTEGER NOT NULL DEFAULT 1");
+        }
+    }
+
+    void complete() {
+        if (columns(LEGACY_TABLE).isEmpty()) {
+            return;
+        }
+        long[] counts = transactionTemplate.execute(status -> {
+            jdbcTemplate.update("insert into apps (name) select distinct l.app from " + LEGACY_TABLE + " l " +
+                    "where not exists (select 1 from apps a where a.name = l.app)");
+            jdbcTemplate.update("insert into uris (uri) select distinct l.uri from " + LEGACY_TABLE + " l " +
+                    "where not exists (select 1 from uris u where u.uri = l.uri)");
+            long[] copied = copyRows();
+            Long maxId = jdbcTemplate.queryForObject("select max(id) from statistics", Long.class);
+            if (maxId != null) {
+                jdbcTemplate.execute("ALTER TABLE statistics ALTER COLUMN id RESTART WITH " + (maxId + 1));
+            }
+            jdbcTemplate.execute("DROP TABLE " + LEGACY_TABLE);
+            return copied;
+        });
+        log.info("Migrated {} hits from {} to the dictionary-encoded statistics table, dropped {} with an invalid ip",
+                counts[0], LEGACY_TABLE, counts[1]);
+    }
+
+    private long[] copyRows() {
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        long[] counts = {0, 0};
+        RowCallbackHandler handler = rs -> {
+            byte[] address = address(rs.getString(4));
+            if (address == null) {
+                counts[1]++;
+                return;
+            }
+            batch.add(new Object[]{rs.getLong(1), rs.getInt(2), rs.getInt(3), address, rs.getTimestamp(5)});
+            if (batch.size() == batchSize) {
+                counts[0] += insert(batch);
+            }
+        };
+        jdbcTemplate.query("select l.id, a.id, u.id, l.ip, l.timestamp from " + LEGACY_TABLE + " l " +
+                "join apps a on a.name = l.app join uris u on u.uri = l.uri order by l.id", handler);
+        counts[0] += insert(batch);
+        return counts;
+    }
+
+    private void convertIpColumn() {
+        jdbcTemplate.execute("ALTER TABLE statistics ADD COLUMN ip_address BYTEA");
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        List<Object[]> invalid = new ArrayList<>();
+        long[] converted = {0};
+        RowCallbackHandler handler = rs -> {
+            byte[] address = address(rs.getString(2));
+            if (address == null) {
+                invalid.add(new Object[]{rs.getLong(1)});
+                return;
+            }
+            batch.add(new Object[]{address, rs.getLong(1)});
+            if (batch.size() == batchSize) {
+                converted[0] += update(UPDATE_IP_SQL, batch);
+            }
+        };
+        jdbcTemplate.query("select id, ip from statistics", handler);
+        converted[0] += update(UPDATE_IP_SQL, batch);
+        int dropped = update("delete from statistics where id = ?", invalid);
+        jdbcTemplate.execute("ALTER TABLE statistics DROP COLUMN ip");
+        jdbcTemplate.execute("ALTER TABLE statistics RENAME COLUMN ip_address TO ip");
+        jdbcTemplate.execute("ALTER TABLE statistics ALTER COLUMN ip SET NOT NULL");
+        log.info("Converted the ip of {} hits to bytes, dropped {} with an invalid ip", converted[0], dropped);
+    }
+
+    private int insert(List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, row) -> {
+            ps.setLong(1, (Long) row[0]);
+            ps.setInt(2, (Integer) row[1]);
+            ps.setInt(3, (Integer) row[2]);
+            ps.setBytes(4, (byte[]) row[3]);
+            ps.setTimestamp(5, (Timestamp) row[4]);
+        });
+        int size = batch.size();
+        batch.clear();
+        return size;
+    }
+
+    private int update(String sql, List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(sql, batch);
+        int size = batch.size();
+        batch.clear();
+        return size;
+    }
+
+    private static byte[] address(String ip) {
+        try {
+            return IpAddresses.parse(ip == null ? null : ip.trim());
+        } catch (IpAddressException e) {
+            return null;
+        }
+    }
+
+    private Map<String, Integer> columns(String table) {
+        return jdbcTemplate.execute((ConnectionCallback<Map<String, Integer>>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            Map<String, Integer> columns = new HashMap<>();
+            try (ResultSet rs = metaData.getColumns(connection.getCatalog(), connection.getSchema(), table, null)) {
+                while (rs.next()) {
+                    columns.put(rs.getString("COLUMN_NAME").toLowerCase(Locale.ROOT), rs.getInt("DATA_TYPE"));
+                }
+            }
+            return columns;
+        });
+    }
+}
@@ -0,0 +1,39 @@
+package ru.practicum.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Runs the schema scripts like Spring Boot does and migrates a database of an older layout around them.
+ */
+@Configuration
+@EnableConfigurationProperties(SqlInitializationProperties.class)
+public class SchemaInitializationConfig {
+    @Bean
+    public SqlDataSourceScriptDatabaseInitializer dataSourceScriptDatabaseInitializer(
+            DataSource dataSource, SqlInitializationProperties properties,
+            @Value("${stat-server.ingest.jdbc-batch-size:1000}") int batchSize) {
+        LegacyStatisticsMigration migration = new LegacyStatisticsMigration(dataSource, batchSize);
+        return new SqlDataSourceScriptDatabaseInitializer(dataSource, properties) {
+            @Override
+            public boolean initializeDatabase() {
+                DatabaseInitializationMode mode = properties.getMode();
+                if (mode == DatabaseInitializationMode.NEVER ||
+                        mode == DatabaseInitializationMode.EMBEDDED && !isEmbeddedDatabase()) {
+                    return super.initializeDatabase();
+                }
+                migration.prepare();
+                boolean initialized = super.initializeDatabase();
+                migration.complete();
+                return initialized;
+            }
+        };
+    }
+}
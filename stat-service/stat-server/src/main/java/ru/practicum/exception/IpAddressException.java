@@ -0,0 +1,7 @@
+package ru.practicum.exception;
+
+public class IpAddressException extends RuntimeException {
+    public IpAddressException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+CREATE TABLE IF NOT EXISTS statistics (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    app_id      INTEGER NOT NULL,
+    uri_id      INTEGER NOT NULL,
+    ip          BYTEA NOT NULL,
+    hits        INTEGER NOT NULL DEFAULT 1,
+    timestamp   TIMESTAMP NOT NULL,
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+CREATE TABLE IF NOT EXISTS statistics_default PARTITION OF statistics DEFAULT;
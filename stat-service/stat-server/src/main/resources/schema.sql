@@ -1,7 +1,73 @@
+CREATE TABLE IF NOT EXISTS apps (
+    id          INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name        varchar NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS uris (
+    id          INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    uri         varchar NOT NULL UNIQUE
+);
+
 CREATE TABLE IF NOT EXISTS statistics (
     id          INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    app         varchar NOT NULL,
-    uri         varchar NOT NULL,
-    ip          varchar(16) NOT NULL,
+    app_id      INTEGER NOT NULL,
+    uri_id      INTEGER NOT NULL,
+    ip          BYTEA NOT NULL,
+    hits        INTEGER NOT NULL DEFAULT 1,
     timestamp   TIMESTAMP NOT NULL
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS statistics_uri_timestamp_idx ON statistics (uri_id, timestamp);
+
+CREATE INDEX IF NOT EXISTS statistics_timestamp_idx ON statistics (timestamp);
+
+CREATE TABLE IF NOT EXISTS statistics_rollup (
+    granularity varchar(8) NOT NULL,
+    bucket      TIMESTAMP NOT NULL,
+    app_id      INTEGER NOT NULL,
+    uri_id      INTEGER NOT NULL,
+    hits        BIGINT NOT NULL,
+    PRIMARY KEY (granularity, bucket, app_id, uri_id)
+);
+
+CREATE INDEX IF NOT EXISTS statistics_rollup_uri_idx ON statistics_rollup (granularity, uri_id, bucket);
+
+CREATE INDEX IF NOT EXISTS statistics_rollup_bucket_hits_idx ON statistics_rollup (granularity, bucket, hits);
+
+CREATE TABLE IF NOT EXISTS statistics_rollup_threshold (
+    granularity varchar(8) NOT NULL,
+    bucket      TIMESTAMP NOT NULL,
+    threshold   BIGINT NOT NULL,
+    listed      INTEGER NOT NULL,
+    PRIMARY KEY (granularity, bucket)
+);
+
+CREATE TABLE IF NOT EXISTS statistics_sketch (
+    granularity varchar(8) NOT NULL,
+    bucket      TIMESTAMP NOT NULL,
+    app_id      INTEGER NOT NULL,
+    uri_id      INTEGER NOT NULL,
+    registers   BYTEA NOT NULL,
+    PRIMARY KEY (granularity, bucket, app_id, uri_id)
+);
+
+CREATE INDEX IF NOT EXISTS statistics_sketch_uri_idx ON statistics_sketch (granularity, uri_id, bucket);
+
+CREATE TABLE IF NOT EXISTS statistics_latency (
+    granularity varchar(8) NOT NULL,
+    bucket      TIMESTAMP NOT NULL,
+    app_id      INTEGER NOT NULL,
+    uri_id      INTEGER NOT NULL,
+    histogram   BYTEA NOT NULL,
+    flush_sequence BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (granularity, bucket, app_id, uri_id)
+);
+
+ALTER TABLE statistics_latency ADD COLUMN IF NOT EXISTS flush_sequence BIGINT NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS statistics_latency_uri_idx ON statistics_latency (granularity, uri_id, bucket);
+
+CREATE TABLE IF NOT EXISTS statistics_aggregate_state (
+    name       varchar(16) PRIMARY KEY,
+    updated_at TIMESTAMP NOT NULL
+);
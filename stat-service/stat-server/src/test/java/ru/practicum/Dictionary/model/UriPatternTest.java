@@ -0,0 +1,45 @@
+package ru.practicum.Dictionary.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UriPatternTest {
+    @Test
+    void singleStarMatchesOneSegment() {
+        UriPattern pattern = UriPattern.of("/events/*");
+
+        assertEquals("/events/", pattern.getPrefix());
+        assertTrue(pattern.matches("/events/1"));
+        assertFalse(pattern.matches("/events/1/requests"));
+        assertFalse(pattern.matches("/events"));
+    }
+
+    @Test
+    void doubleStarMatchesAnyDepthIncludingBase() {
+        UriPattern pattern = UriPattern.of("/compilations/**");
+
+        assertEquals("/compilations", pattern.getPrefix());
+        assertTrue(pattern.matches("/compilations"));
+        assertTrue(pattern.matches("/compilations/1/events"));
+        assertFalse(pattern.matches("/compilationsX"));
+    }
+
+    @Test
+    void literalPartsAreNotRegex() {
+        UriPattern pattern = UriPattern.of("/users/*/events.json");
+
+        assertEquals("/users/", pattern.getPrefix());
+        assertTrue(pattern.matches("/users/5/events.json"));
+        assertFalse(pattern.matches("/users/5/eventsXjson"));
+    }
+
+    @Test
+    void likePatternCoversEveryMatchAndEscapesLiterals() {
+        assertEquals("/events/%", UriPattern.of("/events/*").getLikePattern());
+        assertEquals("/compilations%", UriPattern.of("/compilations/**").getLikePattern());
+        assertEquals("/users/%/events\\_v2%", UriPattern.of("/users/**/events_v2*").getLikePattern());
+    }
+}
@@ -0,0 +1,102 @@
+package ru.practicum.EndpointHit.buffer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.EndpointHit.service.EndpointHitWriter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class HitWriteBufferTest {
+    private static final int PRODUCERS = 8;
+    private static final int WRITES_PER_PRODUCER = 500;
+
+    private final List<EndpointHit> written = new CopyOnWriteArrayList<>();
+    private final HitWriteBuffer hitWriteBuffer = new HitWriteBuffer(new RecordingWriter(written),
+            new SimpleMeterRegistry(), IngestMode.BUFFERED, IngestDurability.ACK_AFTER_FLUSH, 4, 1, 16);
+
+    @AfterEach
+    void tearDown() {
+        hitWriteBuffer.close();
+    }
+
+    @Test
+    void hitsOfConcurrentProducersAreWrittenInOrderThroughAFullRing() {
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            List<Thread> producers = startProducers(new CountDownLatch(0));
+            for (Thread producer : producers) {
+                producer.join();
+            }
+        });
+
+        assertWrittenInOrder();
+    }
+
+    @Test
+    void writesRacingCloseAndAfterItAreWrittenDirectly() {
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            CountDownLatch started = new CountDownLatch(PRODUCERS);
+            List<Thread> producers = startProducers(started);
+            started.await();
+            hitWriteBuffer.close();
+            for (Thread producer : producers) {
+                producer.join();
+            }
+        });
+
+        assertWrittenInOrder();
+    }
+
+    private List<Thread> startProducers(CountDownLatch started) {
+        List<Thread> producers = new ArrayList<>();
+        for (int producer = 0; producer < PRODUCERS; producer++) {
+            int appId = producer;
+            producers.add(Thread.ofPlatform().start(() -> {
+                for (int sequence = 0; sequence < WRITES_PER_PRODUCER; sequence++) {
+                    hitWriteBuffer.write(List.of(hit(appId, sequence)));
+                    if (sequence == WRITES_PER_PRODUCER / 10) {
+                        started.countDown();
+                    }
+                }
+            }));
+        }
+        return producers;
+    }
+
+    private void assertWrittenInOrder() {
+        int[] nextSequences = new int[PRODUCERS];
+        for (EndpointHit endpointHit : written) {
+            assertEquals(nextSequences[endpointHit.getAppId()]++, endpointHit.getUriId());
+        }
+        assertEquals(PRODUCERS * WRITES_PER_PRODUCER, written.size());
+    }
+
+    private static EndpointHit hit(int appId, int sequence) {
+        EndpointHit endpointHit = new EndpointHit();
+        endpointHit.setAppId(appId);
+        endpointHit.setUriId(sequence);
+        return endpointHit;
+    }
+
+    private static class RecordingWriter extends EndpointHitWriter {
+        private final List<EndpointHit> written;
+
+        RecordingWriter(List<EndpointHit> written) {
+            super(null, List.of(), 10_000);
+            this.written = written;
+        }
+
+        @Override
+        public synchronized void write(List<EndpointHit> endpointHits) {
+            written.addAll(endpointHits);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ru.practicum.EndpointHit.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RingBufferTest {
+    private static final int PRODUCERS = 8;
+    private static final int ELEMENTS_PER_PRODUCER = 10_000;
+
+    @Test
+    void fullRingRejectsUntilAnElementIsPolled() {
+        RingBuffer<Integer> ringBuffer = new RingBuffer<>(4);
+        for (int i = 0; i < ringBuffer.capacity(); i++) {
+            assertTrue(ringBuffer.offer(i));
+        }
+
+        assertFalse(ringBuffer.offer(4));
+        assertEquals(0, ringBuffer.poll());
+        assertTrue(ringBuffer.offer(4));
+        List<Integer> drained = new ArrayList<>();
+        ringBuffer.drainTo(drained, Integer.MAX_VALUE);
+        assertEquals(List.of(1, 2, 3, 4), drained);
+        assertNull(ringBuffer.poll());
+    }
+
+    @Test
+    void elementsOfConcurrentProducersAreNeitherLostNorReordered() throws InterruptedException {
+        RingBuffer<long[]> ringBuffer = new RingBuffer<>(16);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        List<Thread> producers = new ArrayList<>();
+        for (int producer = 0; producer < PRODUCERS; producer++) {
+            long id = producer;
+            producers.add(Thread.ofPlatform().start(() -> {
+                for (long sequence = 0; sequence < ELEMENTS_PER_PRODUCER; sequence++) {
+                    long[] element = {id, sequence};
+                    while (!ringBuffer.offer(element)) {
+                        if (System.nanoTime() > deadline) {
+                            return;
+                        }
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+
+        long[] nextSequences = new long[PRODUCERS];
+        long received = 0;
+        while (received < (long) PRODUCERS * ELEMENTS_PER_PRODUCER && System.nanoTime() < deadline) {
+            long[] element = ringBuffer.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(nextSequences[(int) element[0]]++, element[1]);
+            received++;
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertEquals((long) PRODUCERS * ELEMENTS_PER_PRODUCER, received);
+        assertNull(ringBuffer.poll());
+    }
+}
@@ -0,0 +1,155 @@
+package ru.practicum.EndpointHit.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.practicum.EndpointHit.service.EndpointHitService;
+import ru.practicum.HitStreamAckDto;
+import ru.practicum.ViewStats.model.ViewStats;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:controller;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "stat-server.ingest.stream-ack-size=2"
+})
+class EndpointHitControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private EndpointHitService endpointHitService;
+
+    @Test
+    void streamIsAcknowledgedInChunksAndAtItsEnd() throws Exception {
+        String body = records("2024-02-01", "/stream/1", "/stream/1", "/stream/2", "/stream/2", "/stream/2");
+
+        MvcResult result = mockMvc.perform(post("/hit/stream").contentType(APPLICATION_NDJSON).content(body))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertEquals(List.of(new HitStreamAckDto(2, null), new HitStreamAckDto(4, null),
+                new HitStreamAckDto(5, null)), acks(result));
+        assertEquals(List.of("/stream/2=3", "/stream/1=2"), stats("2024-02-01"));
+    }
+
+    @Test
+    void recordRejectedAfterTheFirstAckEndsTheStreamWithAnErrorFrame() throws Exception {
+        String body = records("2024-02-02", "/stream/3", "/stream/4", "/stream/4", "", "/stream/4");
+
+        MvcResult result = mockMvc.perform(post("/hit/stream").contentType(APPLICATION_NDJSON).content(body))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        List<HitStreamAckDto> acks = acks(result);
+        assertEquals(2, acks.size());
+        assertEquals(new HitStreamAckDto(2, null), acks.getFirst());
+        assertEquals(2, acks.getLast().getAcked());
+        assertNotNull(acks.getLast().getError());
+        // the records after the last ack, including the valid one of the rejected chunk, are not saved
+        assertEquals(List.of("/stream/3=1", "/stream/4=1"), stats("2024-02-02"));
+    }
+
+    @Test
+    void recordRejectedBeforeTheFirstAckFailsTheRequest() throws Exception {
+        String body = records("2024-02-03", "/stream/5", "");
+
+        MvcResult result = mockMvc.perform(post("/hit/stream").contentType(APPLICATION_NDJSON)
+                        .accept(APPLICATION_NDJSON).content(body))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        List<HitStreamAckDto> acks = acks(result);
+        assertEquals(1, acks.size());
+        assertEquals(0, acks.getFirst().getAcked());
+        assertNotNull(acks.getFirst().getError());
+        assertEquals(List.of(), stats("2024-02-03"));
+    }
+
+    @Test
+    void ndjsonBatchIsSavedInChunks() throws Exception {
+        String body = records("2024-02-04", "/batch/1", "/batch/2", "/batch/2", "/batch/2", "/batch/1");
+
+        mockMvc.perform(post("/hit/batch").contentType(APPLICATION_NDJSON).content(body))
+                .andExpect(status().isCreated());
+
+        assertEquals(List.of("/batch/2=3", "/batch/1=2"), stats("2024-02-04"));
+    }
+
+    @Test
+    void ndjsonBatchWithARejectedRecordFailsAfterSavingTheChunksBeforeIt() throws Exception {
+        String body = records("2024-02-05", "/batch/3", "/batch/3", "/batch/4", "");
+
+        mockMvc.perform(post("/hit/batch").contentType(APPLICATION_NDJSON).content(body))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(List.of("/batch/3=2"), stats("2024-02-05"));
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "application/cbor|application/cbor",
+            "application/json;q=0.9, application/cbor|application/cbor",
+            "application/cbor, application/json;q=0.9|application/cbor",
+            "application/json, application/cbor;q=0.5|application/json",
+            "application/cbor;q=0.5, application/json|application/json",
+            "application/cbor, */*|application/cbor",
+            "*/*;q=0.8, application/cbor;q=0.5|application/json",
+            "application/*, application/cbor;q=0|application/json",
+            "*/*|application/json"
+    })
+    void findAllNegotiatesCborByQuality(String accept, String contentType) throws Exception {
+        mockMvc.perform(get("/stats").param("start", "2024-02-04 00:00:00").param("end", "2024-02-05 00:00:00")
+                        .header(HttpHeaders.ACCEPT, accept))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(contentType));
+    }
+
+    private String records(String day, String... uris) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < uris.length; i++) {
+            body.append("{\"app\":\"ewm-main-service\",\"uri\":\"").append(uris[i])
+                    .append("\",\"ip\":\"10.0.0.").append(i + 1)
+                    .append("\",\"timestamp\":\"").append(day).append(" 10:00:0").append(i).append("\"}\n");
+        }
+        return body.toString();
+    }
+
+    private List<HitStreamAckDto> acks(MvcResult result) throws Exception {
+        List<HitStreamAckDto> acks = new ArrayList<>();
+        for (String line : result.getResponse().getContentAsString().split("\n")) {
+            acks.add(objectMapper.readValue(line, HitStreamAckDto.class));
+        }
+        return acks;
+    }
+
+    private List<String> stats(String day) {
+        List<ViewStats> viewStats = new ArrayList<>();
+        endpointHitService.findAll(day + " 00:00:00", day + " 23:59:59", false, false, viewStats::add);
+        return viewStats.stream()
+                .map(stats -> stats.getUri() + "=" + stats.getHits())
+                .toList();
+    }
+}
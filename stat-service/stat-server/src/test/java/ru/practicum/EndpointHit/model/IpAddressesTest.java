@@ -0,0 +1,34 @@
+package ru.practicum.EndpointHit.model;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.exception.IpAddressException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IpAddressesTest {
+    @Test
+    void parsesAndFormatsAddresses() {
+        assertArrayEquals(new byte[]{(byte) 192, (byte) 168, 0, 1}, IpAddresses.parse("192.168.0.1"));
+        assertEquals("192.168.0.1", IpAddresses.format(IpAddresses.parse("192.168.0.1")));
+        assertEquals("2001:db8::1", IpAddresses.format(IpAddresses.parse("2001:0DB8:0:0:0:0:0:1")));
+        assertEquals("::", IpAddresses.format(IpAddresses.parse("::")));
+        assertEquals("fe80::1:0:0:2", IpAddresses.format(IpAddresses.parse("fe80:0:0:0:1::2")));
+        assertEquals(16, IpAddresses.parse("::1").length);
+    }
+
+    @Test
+    void storesMappedIpv4AsIpv4() {
+        assertArrayEquals(IpAddresses.parse("10.0.0.7"), IpAddresses.parse("::ffff:10.0.0.7"));
+        assertArrayEquals(IpAddresses.parse("10.0.0.7"), IpAddresses.parse("::ffff:a00:7"));
+    }
+
+    @Test
+    void rejectsInvalidAddresses() {
+        for (String ip : new String[]{"", "localhost", "256.0.0.1", "1.2.3", "1.2.3.4.5", "1..2.3", "1:2:3",
+                "1::2::3", "12345::1", "1:2:3:4:5:6:7:8:9", "::1.2.3.4.5", "fe80::1%eth0"}) {
+            assertThrows(IpAddressException.class, () -> IpAddresses.parse(ip), ip);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package ru.practicum.EndpointHit.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.Rollup.model.RollupGranularity;
+import ru.practicum.ViewStats.model.ViewHistogram;
+import ru.practicum.ViewStats.model.ViewStats;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the same scenarios against every storage engine, the subclasses only select the engine.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+abstract class EndpointHitServiceImplTest {
+    private static final String APP = "ewm-main-service";
+
+    @Autowired
+    private EndpointHitService endpointHitService;
+
+    @Test
+    void findByParamsCountsHitsAndUniqueIpsInsideTheRange() {
+        endpointHitService.saveAll(List.of(
+                hit("/events/1", "10.0.0.1", "2024-01-01T10:00:00"),
+                hit("/events/1", "10.0.0.1", "2024-01-01T10:15:00"),
+                hit("/events/1", "::ffff:10.0.0.1", "2024-01-01T10:20:00"),
+                hit("/events/1", "2001:db8::1", "2024-01-01T11:59:59"),
+                hit("/events/2", "10.0.0.2", "2024-01-01T10:30:00"),
+                hit("/events/1", "10.0.0.3", "2024-01-01T12:00:00")));
+
+        assertEquals(List.of("/events/1=3", "/events/2=1"),
+                format(endpointHitService.findByParams("2024-01-01 10:00:00", "2024-01-01 12:00:00",
+                        List.of("/events/1", "/events/2"), false, false)));
+        assertEquals(List.of("/events/1=2", "/events/2=1"),
+                format(endpointHitService.findByParams("2024-01-01 10:00:00", "2024-01-01 12:00:00",
+                        List.of("/events/1", "/events/2"), true, false)));
+    }
+
+    @Test
+    void findByParamsExpandsUriPatterns() {
+        endpointHitService.saveAll(List.of(
+                hit("/events/1", "10.0.0.1", "2024-01-02T10:00:00"),
+                hit("/events/2", "10.0.0.1", "2024-01-02T10:00:00"),
+                hit("/events/2", "10.0.0.2", "2024-01-02T10:00:00"),
+                hit("/events/2/requests", "10.0.0.1", "2024-01-02T10:00:00"),
+                hit("/users/1", "10.0.0.1", "2024-01-02T10:00:00")));
+
+        assertEquals(List.of("/events/2=2", "/events/1=1"),
+                format(endpointHitService.findByParams("2024-01-02 00:00:00", "2024-01-03 00:00:00",
+                        List.of("/events/*"), false, false)));
+        assertEquals(List.of("/events/2=2", "/events/1=1"),
+                format(endpointHitService.findByParams("2024-01-02 00:00:00", "2024-01-03 00:00:00",
+                        List.of("/events/*"), true, false)));
+    }
+
+    @Test
+    void findAllStreamsEveryUri() {
+        endpointHitService.saveAll(List.of(
+                hit("/compilations", "10.0.0.1", "2024-01-03T10:00:00"),
+                hit("/compilations", "10.0.0.2", "2024-01-03T10:00:00"),
+                hit("/categories", "10.0.0.1", "2024-01-03T10:00:00")));
+
+        List<ViewStats> viewStats = new ArrayList<>();
+        endpointHitService.findAll("2024-01-03 00:00:00", "2024-01-04 00:00:00", false, false, viewStats::add);
+
+        assertEquals(List.of("/compilations=2", "/categories=1"), format(viewStats));
+    }
+
+    @Test
+    void findTopLimitsAndFiltersByPrefix() {
+        endpointHitService.saveAll(List.of(
+                hit("/top/1", "10.0.0.1", "2024-01-04T10:00:00"),
+                hit("/top/2", "10.0.0.1", "2024-01-04T10:00:00"),
+                hit("/top/2", "10.0.0.2", "2024-01-04T10:00:00"),
+                hit("/other", "10.0.0.1", "2024-01-04T10:00:00"),
+                hit("/other", "10.0.0.2", "2024-01-04T10:00:00"),
+                hit("/other", "10.0.0.3", "2024-01-04T10:00:00")));
+
+        assertEquals(List.of("/top/2=2", "/top/1=1"),
+                format(endpointHitService.findTop("2024-01-04 00:00:00", "2024-01-05 00:00:00", "/top/", 10)));
+        assertEquals(List.of("/other=3"),
+                format(endpointHitService.findTop("2024-01-04 00:00:00", "2024-01-05 00:00:00", null, 1)));
+    }
+
+    @Test
+    void findHistogramCountsHitsPerBucket() {
+        endpointHitService.saveAll(List.of(
+                hit("/histogram", "10.0.0.1", "2024-01-05T10:05:00"),
+                hit("/histogram", "10.0.0.1", "2024-01-05T10:55:00"),
+                hit("/histogram", "10.0.0.1", "2024-01-05T12:00:00")));
+
+        ViewHistogram histogram = endpointHitService.findHistogram("2024-01-05 10:00:00", "2024-01-05 13:00:00",
+                List.of("/histogram"), RollupGranularity.HOUR);
+
+        assertEquals(3, histogram.getBuckets().size());
+        assertEquals(1, histogram.getSeries().size());
+        assertArrayEquals(new long[]{2, 0, 1}, histogram.getSeries().getFirst().getHits());
+    }
+
+    @Test
+    void weightedHitsCountAsSeveralViews() {
+        EndpointHit weighted = hit("/weighted", "10.0.0.1", "2024-01-06T10:10:00");
+        weighted.setHits(5);
+        endpointHitService.saveAll(List.of(weighted, hit("/weighted", "10.0.0.2", "2024-01-06T10:20:00")));
+
+        assertEquals(List.of("/weighted=6"),
+                format(endpointHitService.findByParams("2024-01-06 00:00:00", "2024-01-07 00:00:00",
+                        List.of("/weighted"), false, false)));
+        assertEquals(List.of("/weighted=2"),
+                format(endpointHitService.findByParams("2024-01-06 00:00:00", "2024-01-07 00:00:00",
+                        List.of("/weighted"), true, false)));
+        assertArrayEquals(new long[]{6}, endpointHitService.findHistogram("2024-01-06 10:00:00",
+                "2024-01-06 11:00:00", List.of("/weighted"), RollupGranularity.HOUR).getSeries().getFirst().getHits());
+    }
+
+    @Test
+    void findByParamsDoesNotWidenRangesOffTheCacheBuckets() {
+        endpointHitService.saveAll(List.of(
+                hit("/unaligned", "10.0.0.1", "2024-01-07T10:00:10"),
+                hit("/unaligned", "10.0.0.1", "2024-01-07T10:00:40"),
+                hit("/unaligned", "10.0.0.1", "2024-01-07T10:01:20")));
+
+        assertEquals(List.of("/unaligned=3"),
+                format(endpointHitService.findByParams("2024-01-07 10:00:00", "2024-01-07 10:02:00",
+                        List.of("/unaligned"), false, false)));
+        assertEquals(List.of("/unaligned=1"),
+                format(endpointHitService.findByParams("2024-01-07 10:00:30", "2024-01-07 10:01:10",
+                        List.of("/unaligned"), false, false)));
+    }
+
+    private EndpointHit hit(String uri, String ip, String timestamp) {
+        EndpointHit endpointHit = new EndpointHit();
+        endpointHit.setApp(APP);
+        endpointHit.setUri(uri);
+        endpointHit.setIp(ip);
+        endpointHit.setTimestamp(LocalDateTime.parse(timestamp));
+        return endpointHit;
+    }
+
+    private List<String> format(List<ViewStats> viewStats) {
+        return viewStats.stream()
+                .map(stats -> stats.getUri() + "=" + stats.getHits())
+                .toList();
+    }
+}
@@ -0,0 +1,100 @@
+package ru.practicum.EndpointHit.service;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.EndpointHit.model.EndpointHit;
+
+import java.lang.reflect.Proxy;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HitStreamIngesterTest {
+    private static final EndpointHit END = new EndpointHit();
+
+    private final List<Integer> savedChunks = new CopyOnWriteArrayList<>();
+    private final EndpointHitService endpointHitService = (EndpointHitService) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[]{EndpointHitService.class}, (proxy, method, args) -> {
+                if (!method.getName().equals("saveAll")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                savedChunks.add(((List<?>) args[0]).size());
+                return null;
+            });
+
+    @Test
+    void openChunkIsAcknowledgedOnTheIntervalWhileTheClientIsSilent() throws InterruptedException {
+        HitStreamIngester ingester = new HitStreamIngester(endpointHitService, 100, 50);
+        BlockingQueue<Long> acks = new LinkedBlockingQueue<>();
+        BlockingQueue<EndpointHit> hits = new LinkedBlockingQueue<>();
+        Thread ingest = Thread.ofVirtual().start(() -> ingester.ingest(iterator(hits), acks::add));
+
+        hits.add(new EndpointHit());
+        // The client sends nothing more, the hit is still saved and acknowledged
+        assertEquals(1L, acks.poll(5, TimeUnit.SECONDS));
+        hits.add(new EndpointHit());
+        hits.add(new EndpointHit());
+        hits.add(END);
+        ingest.join(5_000);
+
+        assertEquals(3L, acks.poll(5, TimeUnit.SECONDS));
+        assertEquals(3, savedChunks.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    void fullChunksAreAcknowledgedAndAFailureOfTheReaderIsRethrown() {
+        HitStreamIngester ingester = new HitStreamIngester(endpointHitService, 2, 60_000);
+        List<Long> acks = new CopyOnWriteArrayList<>();
+        Iterator<EndpointHit> hits = new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public EndpointHit next() {
+                if (next++ == 3) {
+                    throw new IllegalArgumentException("Invalid record");
+                }
+                return new EndpointHit();
+            }
+        };
+
+        assertThrows(IllegalArgumentException.class, () -> ingester.ingest(hits, acks::add));
+        assertEquals(List.of(2L), acks);
+        assertEquals(List.of(2), savedChunks);
+    }
+
+    private static Iterator<EndpointHit> iterator(BlockingQueue<EndpointHit> hits) {
+        return new Iterator<>() {
+            private EndpointHit next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = hits.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+                return next != END;
+            }
+
+            @Override
+            public EndpointHit next() {
+                EndpointHit hit = next;
+                next = null;
+                return hit;
+            }
+        };
+    }
+}
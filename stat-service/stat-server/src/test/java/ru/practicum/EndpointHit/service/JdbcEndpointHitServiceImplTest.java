@@ -0,0 +1,10 @@
+package ru.practicum.EndpointHit.service;
+
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:jdbc-engine;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "stat-server.storage.engine=JDBC"
+})
+class JdbcEndpointHitServiceImplTest extends EndpointHitServiceImplTest {
+}
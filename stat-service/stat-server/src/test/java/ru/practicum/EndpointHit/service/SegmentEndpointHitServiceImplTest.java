@@ -0,0 +1,23 @@
+package ru.practicum.EndpointHit.service;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+
+import java.nio.file.Path;
+
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:segment-engine;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "stat-server.storage.engine=SEGMENT",
+        "stat-server.storage.segment.capacity=4"
+})
+class SegmentEndpointHitServiceImplTest extends EndpointHitServiceImplTest {
+    @TempDir
+    static Path segmentDirectory;
+
+    @DynamicPropertySource
+    static void segmentProperties(DynamicPropertyRegistry registry) {
+        registry.add("stat-server.storage.segment.directory", () -> segmentDirectory.toString());
+    }
+}
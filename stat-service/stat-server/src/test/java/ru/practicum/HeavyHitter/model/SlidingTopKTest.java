@@ -0,0 +1,63 @@
+package ru.practicum.HeavyHitter.model;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.Sketch.model.HyperLogLog;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SlidingTopKTest {
+    @Test
+    void findsHeavyHittersAmongManyRareKeys() {
+        SlidingTopK<String> topK = new SlidingTopK<>(300, 10, 4, 1024, 16);
+        for (int i = 0; i < 50_000; i++) {
+            add(topK, "rare-" + i, 1, 1_000);
+            if (i % 10 == 0) {
+                add(topK, "hot", 1, 1_000);
+            }
+            if (i % 20 == 0) {
+                add(topK, "warm", 1, 1_000);
+            }
+        }
+
+        List<HeavyHitter<String>> top = topK.top(2, 1_000, key -> true);
+
+        assertEquals(List.of("hot", "warm"), top.stream().map(HeavyHitter::key).toList());
+        assertEquals(5_000, top.getFirst().hits(), 50_000 * Math.E / 1024);
+    }
+
+    @Test
+    void forgetsHitsOlderThanTheWindow() {
+        SlidingTopK<String> topK = new SlidingTopK<>(300, 10, 4, 1024, 16);
+        add(topK, "old", 100, 1_020);
+        add(topK, "new", 10, 1_200);
+
+        assertEquals(List.of(new HeavyHitter<>("old", 100), new HeavyHitter<>("new", 10)),
+                topK.top(10, 1_319, key -> true));
+        assertEquals(List.of(new HeavyHitter<>("new", 10)), topK.top(10, 1_320, key -> true));
+        assertEquals(List.of(), topK.top(10, 1_500, key -> true));
+    }
+
+    @Test
+    void restoredWindowKeepsCountsAndCandidates() {
+        SlidingTopK<String> topK = new SlidingTopK<>(300, 10, 4, 1024, 16);
+        add(topK, "old", 100, 1_020);
+        add(topK, "new", 10, 1_200);
+        SlidingTopK<String> restored = new SlidingTopK<>(300, 10, 4, 1024, 16);
+
+        restored.restore(ByteBuffer.wrap(topK.toBytes(key -> key.getBytes(StandardCharsets.UTF_8))),
+                key -> new String(key, StandardCharsets.UTF_8));
+        add(restored, "new", 5, 1_250);
+
+        assertEquals(List.of(new HeavyHitter<>("old", 100), new HeavyHitter<>("new", 15)),
+                restored.top(10, 1_319, key -> true));
+        assertEquals(List.of(new HeavyHitter<>("new", 15)), restored.top(10, 1_320, key -> true));
+    }
+
+    private void add(SlidingTopK<String> topK, String key, long count, long epochSecond) {
+        topK.add(HyperLogLog.hash(key), key, count, epochSecond);
+    }
+}
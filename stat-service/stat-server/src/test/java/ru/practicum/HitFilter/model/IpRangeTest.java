@@ -0,0 +1,23 @@
+package ru.practicum.HitFilter.model;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.EndpointHit.model.IpAddresses;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IpRangeTest {
+    @Test
+    void containsAddressesInsideThePrefix() {
+        IpRange ipv4 = IpRange.parse("66.249.64.0/19");
+        IpRange ipv6 = IpRange.parse("2001:4860::/32");
+
+        assertTrue(ipv4.contains(IpAddresses.parse("66.249.95.255")));
+        assertTrue(ipv4.contains(IpAddresses.parse("::ffff:66.249.64.1")));
+        assertFalse(ipv4.contains(IpAddresses.parse("66.249.96.0")));
+        assertTrue(ipv6.contains(IpAddresses.parse("2001:4860:ffff::1")));
+        assertFalse(ipv6.contains(IpAddresses.parse("2001:4861::1")));
+        assertFalse(ipv6.contains(IpAddresses.parse("66.249.64.1")));
+        assertTrue(IpRange.parse("10.0.0.1").contains(IpAddresses.parse("10.0.0.1")));
+    }
+}
@@ -0,0 +1,51 @@
+package ru.practicum.HitFilter.model;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.Sketch.model.HyperLogLog;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RotatingBloomFilterTest {
+    @Test
+    void repeatIsDroppedInsideTheWindowOnly() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(4, 600, 1_000, 0.001);
+
+        assertTrue(filter.put(42, 1_000));
+        assertFalse(filter.put(42, 1_100));
+        assertTrue(filter.put(43, 1_100));
+        assertTrue(filter.put(42, 1_800));
+        assertFalse(filter.put(42, 1_801));
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheTarget() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(4, 600, 10_000, 0.01);
+        for (long i = 0; i < 10_000; i++) {
+            filter.put(HyperLogLog.mix(i), 0);
+        }
+
+        int falsePositives = 0;
+        for (long i = 10_000; i < 11_000; i++) {
+            if (!filter.put(HyperLogLog.mix(i), 0)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 30, falsePositives + " false positives among 1000 new keys");
+    }
+
+    @Test
+    void restoredFilterRemembersKeysAndTheirGeneration() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(4, 600, 1_000, 0.001);
+        filter.put(42, 1_000);
+        RotatingBloomFilter restored = new RotatingBloomFilter(4, 600, 1_000, 0.001);
+
+        restored.restore(ByteBuffer.wrap(filter.toBytes()));
+
+        assertFalse(restored.put(42, 1_100));
+        assertTrue(restored.put(42, 1_800));
+    }
+}
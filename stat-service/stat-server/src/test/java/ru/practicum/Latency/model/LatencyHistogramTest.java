@@ -0,0 +1,45 @@
+package ru.practicum.Latency.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+    @Test
+    void percentilesStayWithinTheBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 10, 1);
+        }
+
+        assertEquals(100_000, histogram.getTotalCount());
+        assertEquals(1_000_000, histogram.getMaxValue());
+        for (double percentile : new double[]{50, 95, 99}) {
+            double expected = percentile * 10_000;
+            double error = Math.abs(histogram.valueAtPercentile(percentile) - expected) / expected;
+            assertTrue(error <= 1.0 / 64, "Relative error " + error + " at p" + percentile);
+        }
+    }
+
+    @Test
+    void mergeEqualsHistogramOfUnion() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        LatencyHistogram union = new LatencyHistogram();
+        for (long value = 0; value < 5_000; value++) {
+            first.record(value * value, 1);
+            union.record(value * value, 1);
+            second.record(value * 3, 2);
+            union.record(value * 3, 2);
+        }
+
+        first.merge(LatencyHistogram.fromBytes(second.toBytes()));
+
+        assertEquals(union.getTotalCount(), first.getTotalCount());
+        assertEquals(union.getMaxValue(), first.getMaxValue());
+        for (double percentile : new double[]{1, 50, 90, 99.9, 100}) {
+            assertEquals(union.valueAtPercentile(percentile), first.valueAtPercentile(percentile));
+        }
+    }
+}
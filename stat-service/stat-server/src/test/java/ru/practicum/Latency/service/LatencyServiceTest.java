@@ -0,0 +1,159 @@
+package ru.practicum.Latency.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.Latency.model.LatencyHistogram;
+import ru.practicum.Latency.model.LatencyKey;
+import ru.practicum.Latency.repository.LatencyRepository;
+import ru.practicum.Rollup.model.RollupGranularity;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LatencyServiceTest {
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.parse("2024-01-01T10:15:00");
+    private static final LatencyKey HOUR_KEY = new LatencyKey(RollupGranularity.HOUR,
+            LocalDateTime.parse("2024-01-01T10:00:00"), 1, 7);
+    private static final LatencyKey DAY_KEY = new LatencyKey(RollupGranularity.DAY,
+            LocalDateTime.parse("2024-01-01T00:00:00"), 1, 7);
+
+    private final InMemoryLatencyRepository latencyRepository = new InMemoryLatencyRepository();
+
+    @Test
+    void histogramsNotFlushedBeforeTheCrashComeBackFromTheSnapshot() {
+        LatencyService crashed = latencyService();
+        crashed.onHits(List.of(hit(1_000)));
+        byte[] snapshot = crashed.snapshot();
+
+        LatencyService restarted = latencyService();
+        restarted.restore(ByteBuffer.wrap(snapshot));
+        restarted.flush();
+
+        assertEquals(1, storedCount(HOUR_KEY));
+    }
+
+    @Test
+    void histogramsFlushedAfterTheSnapshotAreNotCountedTwice() {
+        LatencyService crashed = latencyService();
+        crashed.onHits(List.of(hit(1_000)));
+        byte[] snapshot = crashed.snapshot();
+        crashed.onHits(List.of(hit(2_000)));
+        crashed.flush();
+
+        LatencyService restarted = latencyService();
+        restarted.restore(ByteBuffer.wrap(snapshot));
+        restarted.flush();
+
+        assertEquals(2, storedCount(HOUR_KEY));
+    }
+
+    @Test
+    void onlyHistogramsPendingAtTheSnapshotAreTakenBack() {
+        LatencyService crashed = latencyService();
+        crashed.onHits(List.of(hit(1_000)));
+        crashed.flush();
+        crashed.onHits(List.of(hit(2_000)));
+        byte[] snapshot = crashed.snapshot();
+
+        LatencyService restarted = latencyService();
+        restarted.restore(ByteBuffer.wrap(snapshot));
+        restarted.flush();
+
+        assertEquals(2, storedCount(HOUR_KEY));
+    }
+
+    @Test
+    void histogramThatFailedToBeStoredIsKeptForTheNextFlush() {
+        LatencyService latencyService = latencyService();
+        latencyService.onHits(List.of(hit(1_000)));
+        latencyRepository.failingKeys.add(HOUR_KEY);
+        latencyService.flush();
+
+        assertNull(latencyRepository.find(HOUR_KEY));
+        assertEquals(1, storedCount(DAY_KEY));
+
+        latencyService.onHits(List.of(hit(2_000)));
+        latencyRepository.failingKeys.clear();
+        latencyService.flush();
+
+        assertEquals(2, storedCount(HOUR_KEY));
+        assertEquals(2, storedCount(DAY_KEY));
+    }
+
+    @Test
+    void everyLatencyOfACoalescedHitIsRecorded() {
+        LatencyService latencyService = latencyService();
+        EndpointHit coalesced = hit(1_000);
+        coalesced.setLatencyMicros(null);
+        coalesced.setLatenciesMicros(List.of(1_000L, 3_000L));
+        coalesced.setHits(2);
+        latencyService.onHits(List.of(coalesced));
+        latencyService.flush();
+
+        LatencyHistogram stored = LatencyHistogram.fromBytes(latencyRepository.find(HOUR_KEY));
+        assertEquals(2, stored.getTotalCount());
+        assertEquals(3_000, stored.getMaxValue());
+    }
+
+    private LatencyService latencyService() {
+        LatencyService latencyService = new LatencyService(latencyRepository, null, true);
+        latencyService.init();
+        return latencyService;
+    }
+
+    private long storedCount(LatencyKey key) {
+        return LatencyHistogram.fromBytes(latencyRepository.find(key)).getTotalCount();
+    }
+
+    private static EndpointHit hit(long latencyMicros) {
+        EndpointHit endpointHit = new EndpointHit();
+        endpointHit.setAppId(1);
+        endpointHit.setUriId(7);
+        endpointHit.setTimestamp(TIMESTAMP);
+        endpointHit.setLatencyMicros(latencyMicros);
+        return endpointHit;
+    }
+
+    private static class InMemoryLatencyRepository extends LatencyRepository {
+        private final Map<LatencyKey, byte[]> histograms = new HashMap<>();
+        private final Map<LatencyKey, Long> flushSequences = new HashMap<>();
+        private final Set<LatencyKey> failingKeys = new HashSet<>();
+
+        InMemoryLatencyRepository() {
+            super(new JdbcTemplate());
+        }
+
+        @Override
+        public byte[] find(LatencyKey key) {
+            return histograms.get(key);
+        }
+
+        @Override
+        public Long findFlushSequence(LatencyKey key) {
+            return flushSequences.get(key);
+        }
+
+        @Override
+        public long findMaxFlushSequence() {
+            return flushSequences.values().stream().mapToLong(Long::longValue).max().orElse(0);
+        }
+
+        @Override
+        public void save(LatencyKey key, byte[] histogram, long flushSequence) {
+            if (failingKeys.contains(key)) {
+                throw new IllegalStateException("Failed to store " + key);
+            }
+            histograms.put(key, histogram);
+            flushSequences.put(key, flushSequence);
+        }
+    }
+}
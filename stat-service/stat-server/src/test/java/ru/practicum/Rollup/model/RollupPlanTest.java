@@ -0,0 +1,96 @@
+package ru.practicum.Rollup.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static ru.practicum.Rollup.model.RollupGranularity.DAY;
+import static ru.practicum.Rollup.model.RollupGranularity.HOUR;
+import static ru.practicum.Rollup.model.RollupGranularity.MINUTE;
+
+class RollupPlanTest {
+    private static final List<RollupGranularity> ALL = List.of(MINUTE, HOUR, DAY);
+
+    @Test
+    void coveringWidensUnalignedEdgesToWholeFinestBuckets() {
+        RollupPlan plan = RollupPlan.covering(time("2024-01-10T10:00:30"), time("2024-01-10T12:30:10"), ALL);
+
+        assertEquals(List.of(
+                range(HOUR, "2024-01-10T10:00:00", "2024-01-10T12:00:00"),
+                range(MINUTE, "2024-01-10T12:00:00", "2024-01-10T12:31:00")), plan.bucketRanges());
+        assertRawEdgesAreEmpty(plan, "2024-01-10T10:00:00", "2024-01-10T12:31:00");
+    }
+
+    @Test
+    void coveringKeepsAlignedEdges() {
+        RollupPlan plan = RollupPlan.covering(time("2024-01-10T09:59:00"), time("2024-01-10T11:00:00"), ALL);
+
+        assertEquals(List.of(
+                range(MINUTE, "2024-01-10T09:59:00", "2024-01-10T10:00:00"),
+                range(HOUR, "2024-01-10T10:00:00", "2024-01-10T11:00:00")), plan.bucketRanges());
+    }
+
+    @Test
+    void rangeShorterThanABucketIsCoveredByTheBucketsItOverlaps() {
+        assertEquals(List.of(range(MINUTE, "2024-01-10T10:15:00", "2024-01-10T10:16:00")),
+                RollupPlan.covering(time("2024-01-10T10:15:10"), time("2024-01-10T10:15:40"), ALL).bucketRanges());
+        assertEquals(List.of(range(MINUTE, "2024-01-10T10:15:00", "2024-01-10T10:17:00")),
+                RollupPlan.covering(time("2024-01-10T10:15:50"), time("2024-01-10T10:16:20"), ALL).bucketRanges());
+        assertEquals(List.of(range(HOUR, "2024-01-10T10:00:00", "2024-01-10T11:00:00")),
+                RollupPlan.covering(time("2024-01-10T10:15:00"), time("2024-01-10T10:45:00"), List.of(HOUR, DAY))
+                        .bucketRanges());
+    }
+
+    @Test
+    void emptyRangeOnABucketBoundaryHasNoBuckets() {
+        RollupPlan plan = RollupPlan.covering(time("2024-01-10T10:00:00"), time("2024-01-10T10:00:00"), ALL);
+
+        assertEquals(List.of(), plan.bucketRanges());
+        assertRawEdgesAreEmpty(plan, "2024-01-10T10:00:00", "2024-01-10T10:00:00");
+    }
+
+    @Test
+    void coveringAcrossADayAndAMonthBoundaryUsesTheWholeDay() {
+        RollupPlan plan = RollupPlan.covering(time("2024-01-31T23:59:30"), time("2024-02-02T00:00:30"), ALL);
+
+        assertEquals(List.of(
+                range(MINUTE, "2024-01-31T23:59:00", "2024-02-01T00:00:00"),
+                range(DAY, "2024-02-01T00:00:00", "2024-02-02T00:00:00"),
+                range(MINUTE, "2024-02-02T00:00:00", "2024-02-02T00:01:00")), plan.bucketRanges());
+    }
+
+    @Test
+    void coveringAcrossTheLeapDayAndAMonthBoundary() {
+        RollupPlan plan = RollupPlan.covering(time("2024-02-28T22:10:00"), time("2024-03-01T01:00:00"),
+                List.of(HOUR, DAY));
+
+        assertEquals(List.of(
+                range(HOUR, "2024-02-28T22:00:00", "2024-02-29T00:00:00"),
+                range(DAY, "2024-02-29T00:00:00", "2024-03-01T00:00:00"),
+                range(HOUR, "2024-03-01T00:00:00", "2024-03-01T01:00:00")), plan.bucketRanges());
+    }
+
+    @Test
+    void coveringWithinOneDayAcrossMidnightDoesNotUseDays() {
+        RollupPlan plan = RollupPlan.covering(time("2024-03-31T23:30:00"), time("2024-04-01T00:30:00"), ALL);
+
+        assertEquals(List.of(range(MINUTE, "2024-03-31T23:30:00", "2024-04-01T00:30:00")), plan.bucketRanges());
+    }
+
+    private static void assertRawEdgesAreEmpty(RollupPlan plan, String from, String to) {
+        assertEquals(time(from), plan.start());
+        assertEquals(time(from), plan.rawHeadEnd());
+        assertEquals(time(to), plan.rawTailStart());
+        assertEquals(time(to), plan.end());
+    }
+
+    private static BucketRange range(RollupGranularity granularity, String from, String to) {
+        return new BucketRange(granularity, time(from), time(to));
+    }
+
+    private static LocalDateTime time(String time) {
+        return LocalDateTime.parse(time);
+    }
+}
@@ -0,0 +1,119 @@
+package ru.practicum.Rollup.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import ru.practicum.Dictionary.service.DictionaryService;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.EndpointHit.service.EndpointHitService;
+import ru.practicum.Rollup.model.RollupPlan;
+import ru.practicum.Rollup.repository.RollupRepository;
+import ru.practicum.ViewStats.model.ViewStats;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:rollup-top;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "stat-server.rollup.top-size=2"
+})
+class RollupServiceTest {
+    private static final String APP = "ewm-main-service";
+
+    @Autowired
+    private EndpointHitService endpointHitService;
+    @Autowired
+    private RollupService rollupService;
+    @Autowired
+    private RollupRepository rollupRepository;
+    @Autowired
+    private DictionaryService dictionaryService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void thresholdsAreRaisedOnceTooManyPairsAreAboveThem() {
+        List<EndpointHit> endpointHits = new ArrayList<>();
+        for (int uri = 1; uri <= 10; uri++) {
+            endpointHits.add(hit("/raised/" + uri, uri, "2024-02-01T10:00:00"));
+        }
+        endpointHitService.saveAll(endpointHits);
+
+        Map<String, Object> threshold = jdbcTemplate.queryForMap("select threshold, listed " +
+                "from statistics_rollup_threshold where granularity = 'HOUR' and bucket = ?",
+                LocalDateTime.parse("2024-02-01T10:00:00"));
+        assertEquals(8L, ((Number) threshold.get("threshold")).longValue());
+        assertEquals(2, ((Number) threshold.get("listed")).intValue());
+    }
+
+    @Test
+    void topOfTheListedPairsIsTheTopOfEveryPair() {
+        List<EndpointHit> endpointHits = new ArrayList<>();
+        for (int uri = 1; uri <= 12; uri++) {
+            endpointHits.add(hit("/listed/" + uri, uri, "2024-02-02T0" + (uri % 10) + ":30:00"));
+            endpointHits.add(hit("/listed/" + uri, 13 - uri, "2024-02-03T12:00:00"));
+        }
+        endpointHits.add(hit("/listed/1", 3, "2024-02-02T00:00:10"));
+        endpointHits.add(hit("/listed/12", 2, "2024-02-04T00:00:50"));
+        for (EndpointHit endpointHit : endpointHits) {
+            endpointHitService.saveAll(List.of(endpointHit));
+        }
+
+        assertSameTop("2024-02-02T00:00:00", "2024-02-04T00:01:00", null, 2);
+        assertSameTop("2024-02-02T00:00:00", "2024-02-04T00:01:00", "/listed/1", 2);
+        assertSameTop("2024-02-02T00:00:05", "2024-02-04T00:00:55", null, 1);
+        assertSameTop("2024-02-02T03:00:00", "2024-02-03T00:00:00", null, 2);
+        assertSameTop("2024-02-01T00:00:00", "2024-02-05T00:00:00", null, 10);
+    }
+
+    @Test
+    void pairsTiedWithTheThresholdsAreRankedAmongEveryPair() {
+        List<EndpointHit> endpointHits = new ArrayList<>();
+        for (int uri = 10; uri >= 1; uri--) {
+            endpointHits.add(hit("/tied/" + uri, 1, "2024-02-05T10:00:00"));
+        }
+        endpointHitService.saveAll(endpointHits);
+
+        assertSameTop("2024-02-05T00:00:00", "2024-02-06T00:00:00", "/tied/", 2);
+    }
+
+    private void assertSameTop(String start, String end, String uriPrefix, int limit) {
+        LocalDateTime startTime = LocalDateTime.parse(start);
+        LocalDateTime endTime = LocalDateTime.parse(end);
+        List<ViewStats> expected = rollupRepository.findTopViewStats(RollupPlan.of(startTime, endTime), uriPrefix,
+                        limit).stream()
+                .map(stats -> dictionaryService.toViewStats(stats.getAppId(), stats.getUriId(), stats.getHits()))
+                .toList();
+
+        List<ViewStats> top = rollupService.findTopViewStats(startTime, endTime, uriPrefix, limit);
+
+        assertTrue(!expected.isEmpty());
+        assertEquals(format(expected), format(top));
+    }
+
+    private EndpointHit hit(String uri, int hits, String timestamp) {
+        EndpointHit endpointHit = new EndpointHit();
+        endpointHit.setApp(APP);
+        endpointHit.setUri(uri);
+        endpointHit.setIp("10.0.0.1");
+        endpointHit.setHits(hits);
+        endpointHit.setTimestamp(LocalDateTime.parse(timestamp));
+        return endpointHit;
+    }
+
+    private List<String> format(List<ViewStats> viewStats) {
+        return viewStats.stream()
+                .map(stats -> stats.getUri() + "=" + stats.getHits())
+                .toList();
+    }
+}
@@ -0,0 +1,50 @@
+package ru.practicum.Segment.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.EndpointHit.model.EndpointHit;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SegmentTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void appendedRecordsAreScannedAtOnceButOnlySyncedOnesAreReopened() throws IOException {
+        Path path = directory.resolve("0.seg");
+        Segment segment = Segment.create(path, 8);
+        segment.append(List.of(hit(1), hit(2)), 0);
+        segment.sync();
+        segment.append(List.of(hit(3)), 0);
+
+        assertEquals(3, segment.getCount());
+        assertEquals(List.of(1, 2), scanUriIds(Segment.open(path)));
+
+        segment.sync();
+
+        assertEquals(List.of(1, 2, 3), scanUriIds(Segment.open(path)));
+    }
+
+    private static List<Integer> scanUriIds(Segment segment) {
+        List<Integer> uriIds = new ArrayList<>();
+        segment.scanFrom(0, (appId, uriId, timestamp, hits, ipHigh, ipLow) -> uriIds.add(uriId));
+        return uriIds;
+    }
+
+    private static EndpointHit hit(int uriId) {
+        EndpointHit endpointHit = new EndpointHit();
+        endpointHit.setAppId(1);
+        endpointHit.setUriId(uriId);
+        endpointHit.setHits(1);
+        endpointHit.setIpAddress(new byte[]{10, 0, 0, 1});
+        endpointHit.setTimestamp(LocalDateTime.parse("2024-01-01T10:00:00"));
+        return endpointHit;
+    }
+}
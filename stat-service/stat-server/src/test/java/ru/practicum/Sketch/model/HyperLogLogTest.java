@@ -0,0 +1,40 @@
+package ru.practicum.Sketch.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+    @Test
+    void estimateStaysWithinErrorBound() {
+        for (int distinct : new int[]{10, 1_000, 100_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < distinct; i++) {
+                sketch.add("10." + (i >> 16 & 0xff) + "." + (i >> 8 & 0xff) + "." + (i & 0xff));
+                sketch.add("10." + (i >> 16 & 0xff) + "." + (i >> 8 & 0xff) + "." + (i & 0xff));
+            }
+            double error = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+            assertTrue(error < 0.05, "Relative error " + error + " for " + distinct + " distinct values");
+        }
+    }
+
+    @Test
+    void mergeEqualsSketchOfUnion() {
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        for (int i = 0; i < 5_000; i++) {
+            first.add("ip-" + i);
+            union.add("ip-" + i);
+        }
+        for (int i = 2_500; i < 7_500; i++) {
+            second.add("ip-" + i);
+            union.add("ip-" + i);
+        }
+
+        first.merge(HyperLogLog.fromBytes(second.toBytes()));
+
+        assertEquals(union.estimate(), first.estimate());
+    }
+}
@@ -0,0 +1,48 @@
+package ru.practicum.Snapshot.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SnapshotFileTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void sectionsAndWatermarkSurviveARoundTrip() throws IOException {
+        Path path = directory.resolve("aggregates.snap");
+        Map<String, byte[]> sections = new LinkedHashMap<>();
+        sections.put("first", new byte[]{1, 2, 3});
+        sections.put("second", new byte[0]);
+        SnapshotFile.write(path, 7, Map.of("stale", new byte[]{9}));
+        SnapshotFile.write(path, 42, sections);
+
+        SnapshotFile snapshotFile = SnapshotFile.read(path);
+
+        assertEquals(42, snapshotFile.getWatermark());
+        assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 3}), snapshotFile.getSection("first"));
+        assertEquals(0, snapshotFile.getSection("second").remaining());
+        assertNull(snapshotFile.getSection("stale"));
+    }
+
+    @Test
+    void corruptedFileIsRejected() throws IOException {
+        Path path = directory.resolve("aggregates.snap");
+        SnapshotFile.write(path, 42, Map.of("first", new byte[]{1, 2, 3}));
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 10] ^= 1;
+        Files.write(path, bytes);
+
+        assertThrows(IOException.class, () -> SnapshotFile.read(path));
+    }
+}
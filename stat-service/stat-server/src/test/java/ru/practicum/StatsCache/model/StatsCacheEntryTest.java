@@ -0,0 +1,53 @@
+package ru.practicum.StatsCache.model;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.Dictionary.model.UriFilter;
+import ru.practicum.EndpointHit.model.EndpointHit;
+import ru.practicum.ViewStats.model.EncodedViewStats;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatsCacheEntryTest {
+    private static final LocalDateTime START = LocalDateTime.parse("2024-01-01T10:00:00");
+    private static final StatsCacheKey KEY = new StatsCacheKey(UriFilter.ofIds(List.of(7)), false, START,
+            START.plusHours(1));
+
+    @Test
+    void committedHitsAreAddedInPlace() {
+        StatsCacheEntry entry = new StatsCacheEntry(KEY, 0);
+        entry.load(List.of(new EncodedViewStats(1, 7, 2L)), Set.of());
+
+        entry.apply(1, List.of(hit(7)));
+
+        assertEquals(3L, entry.toViewStats().getFirst().getHits());
+        assertEquals(Set.of(), entry.beginRefresh());
+    }
+
+    @Test
+    void ingestInFlightDuringTheLoadMarksTheUriStaleInsteadOfCountingTwice() {
+        StatsCacheEntry entry = new StatsCacheEntry(KEY, 0);
+        // The load ran after the ingest committed but before its afterCommit, so it already counts the new hit
+        entry.load(List.of(new EncodedViewStats(1, 7, 3L)), Set.of(1L));
+
+        entry.apply(1, List.of(hit(7)));
+
+        assertEquals(3L, entry.toViewStats().getFirst().getHits());
+        Set<Integer> refresh = entry.beginRefresh();
+        assertEquals(Set.of(7), refresh);
+        entry.completeRefresh(refresh, List.of(new EncodedViewStats(1, 7, 3L)), Set.of());
+        entry.apply(2, List.of(hit(7)));
+        assertEquals(4L, entry.toViewStats().getFirst().getHits());
+    }
+
+    private EndpointHit hit(int uriId) {
+        EndpointHit endpointHit = new EndpointHit();
+        endpointHit.setAppId(1);
+        endpointHit.setUriId(uriId);
+        endpointHit.setTimestamp(START.plusMinutes(10));
+        return endpointHit;
+    }
+}
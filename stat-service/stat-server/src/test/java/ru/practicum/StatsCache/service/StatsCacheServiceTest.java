@@ -0,0 +1,91 @@
+package ru.practicum.StatsCache.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.Dictionary.model.UriFilter;
+import ru.practicum.ViewStats.model.EncodedViewStats;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatsCacheServiceTest {
+    private static final UriFilter URIS = UriFilter.ofIds(List.of(7, 8));
+    private static final LocalDateTime NOW = LocalDateTime.parse("2024-06-01T12:00:17");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StatsCacheService statsCacheService = new StatsCacheService(meterRegistry, true,
+            Duration.ofMinutes(1), 100, Duration.ofMinutes(5));
+    private final List<Hit> hits = List.of(
+            new Hit(NOW.minusYears(20).plusSeconds(1), 7),
+            // On the bucket bounds, which the cached core excludes and the slices have to pick up
+            new Hit(LocalDateTime.parse("2004-06-01T12:01:00"), 7),
+            new Hit(LocalDateTime.parse("2024-06-01T12:00:00"), 8),
+            new Hit(LocalDateTime.parse("2015-01-01T00:00:00"), 8),
+            new Hit(NOW.plusSeconds(2), 7));
+    private final List<LocalDateTime[]> loads = new ArrayList<>();
+
+    @Test
+    void slidingRangesOfMainServiceHitTheCachedCore() {
+        LocalDateTime firstEnd = NOW;
+        LocalDateTime secondEnd = NOW.plusSeconds(5);
+
+        assertEquals(load(firstEnd.minusYears(20), firstEnd), find(firstEnd.minusYears(20), firstEnd));
+        assertEquals(load(secondEnd.minusYears(20), secondEnd), find(secondEnd.minusYears(20), secondEnd));
+
+        assertEquals(1.0, meterRegistry.counter("stat.stats-cache.requests", "result", "miss").count());
+        assertEquals(1.0, meterRegistry.counter("stat.stats-cache.requests", "result", "hit").count());
+        assertEquals(0.0, meterRegistry.counter("stat.stats-cache.requests", "result", "bypass").count());
+        long coreLoads = loads.stream()
+                .filter(range -> range[0].equals(LocalDateTime.parse("2004-06-01T12:01:00")))
+                .count();
+        assertEquals(1, coreLoads);
+    }
+
+    @Test
+    void uniqueAndShortUnalignedRangesAreLoadedDirectly() {
+        statsCacheService.find(NOW.minusYears(20), NOW, URIS, true, this::loader);
+        statsCacheService.find(NOW.minusSeconds(30), NOW, URIS, false, this::loader);
+
+        assertEquals(2.0, meterRegistry.counter("stat.stats-cache.requests", "result", "bypass").count());
+        assertEquals(2, loads.size());
+    }
+
+    private Map<Integer, Long> find(LocalDateTime start, LocalDateTime end) {
+        return toMap(statsCacheService.find(start, end, URIS, false, this::loader));
+    }
+
+    private Map<Integer, Long> load(LocalDateTime start, LocalDateTime end) {
+        return toMap(count(start, end));
+    }
+
+    private List<EncodedViewStats> loader(LocalDateTime start, LocalDateTime end, UriFilter uriFilter,
+                                          boolean unique) {
+        loads.add(new LocalDateTime[]{start, end});
+        return count(start, end);
+    }
+
+    private List<EncodedViewStats> count(LocalDateTime start, LocalDateTime end) {
+        Map<Integer, Long> counts = new TreeMap<>();
+        hits.stream()
+                .filter(hit -> hit.timestamp().isAfter(start) && hit.timestamp().isBefore(end))
+                .forEach(hit -> counts.merge(hit.uriId(), 1L, Long::sum));
+        return counts.entrySet().stream()
+                .map(entry -> new EncodedViewStats(1, entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    private static Map<Integer, Long> toMap(List<EncodedViewStats> viewStats) {
+        Map<Integer, Long> counts = new TreeMap<>();
+        viewStats.forEach(stats -> counts.put(stats.getUriId(), stats.getHits()));
+        return counts;
+    }
+
+    private record Hit(LocalDateTime timestamp, int uriId) {
+    }
+}
@@ -0,0 +1,95 @@
+package ru.practicum.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.practicum.EndpointHit.model.IpAddresses;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LegacyStatisticsMigrationTest {
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() +
+                ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE statistics (id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "app varchar NOT NULL, uri varchar NOT NULL, ip varchar(16) NOT NULL, timestamp TIMESTAMP NOT NULL)");
+    }
+
+    @Test
+    void stringLayoutIsMovedToTheDictionaryTables() {
+        jdbcTemplate.update("insert into statistics (app, uri, ip, timestamp) values " +
+                "('ewm', '/events/1', '10.0.0.1', '2024-01-01 10:00:00'), " +
+                "('ewm', '/events/2', '10.0.0.2', '2024-01-01 11:00:00'), " +
+                "('other', '/events/1', '10.0.0.1', '2024-01-01 12:00:00'), " +
+                "('ewm', '/events/3', 'unknown', '2024-01-01 13:00:00')");
+
+        initialize();
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("select s.id, a.name, u.uri, s.ip, s.hits " +
+                "from statistics s join apps a on a.id = s.app_id join uris u on u.id = s.uri_id order by s.id");
+        assertEquals(3, rows.size());
+        assertEquals(List.of("ewm", "ewm", "other"), rows.stream().map(row -> row.get("name")).toList());
+        assertEquals(List.of("/events/1", "/events/2", "/events/1"), rows.stream().map(row -> row.get("uri")).toList());
+        assertArrayEquals(IpAddresses.parse("10.0.0.2"), (byte[]) rows.get(1).get("ip"));
+        assertEquals(1, rows.get(2).get("hits"));
+        assertEquals(3, jdbcTemplate.queryForObject("select count(*) from uris", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from information_schema.tables " +
+                "where table_name = 'statistics_legacy'", Integer.class));
+
+        jdbcTemplate.update("insert into statistics (app_id, uri_id, ip, timestamp) values (1, 1, X'0a000003', " +
+                "'2024-01-02 10:00:00')");
+        assertEquals(4, jdbcTemplate.queryForObject("select max(id) from statistics", Integer.class));
+    }
+
+    @Test
+    void textIpIsConvertedInPlace() {
+        jdbcTemplate.execute("DROP TABLE statistics");
+        jdbcTemplate.execute("CREATE TABLE statistics (id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "app_id INTEGER NOT NULL, uri_id INTEGER NOT NULL, ip varchar(16) NOT NULL, " +
+                "timestamp TIMESTAMP NOT NULL)");
+        jdbcTemplate.update("insert into statistics (app_id, uri_id, ip, timestamp) values " +
+                "(1, 1, '10.0.0.1', '2024-01-01 10:00:00'), (1, 2, '::ffff:10.0.0.2', '2024-01-01 11:00:00'), " +
+                "(2, 1, '300.0.0.1', '2024-01-01 12:00:00')");
+
+        initialize();
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("select id, ip, hits from statistics order by id");
+        assertEquals(2, rows.size());
+        assertArrayEquals(IpAddresses.parse("10.0.0.1"), (byte[]) rows.get(0).get("ip"));
+        assertArrayEquals(IpAddresses.parse("10.0.0.2"), (byte[]) rows.get(1).get("ip"));
+        assertEquals(1, rows.get(1).get("hits"));
+    }
+
+    @Test
+    void currentLayoutIsLeftAlone() {
+        jdbcTemplate.execute("DROP TABLE statistics");
+        initialize();
+        jdbcTemplate.update("insert into statistics (app_id, uri_id, ip, timestamp) values (1, 1, X'0a000001', " +
+                "'2024-01-01 10:00:00')");
+
+        initialize();
+
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from statistics", Integer.class));
+    }
+
+    private void initialize() {
+        SqlInitializationProperties properties = new SqlInitializationProperties();
+        properties.setSchemaLocations(List.of("classpath:schema.sql"));
+        properties.setMode(DatabaseInitializationMode.ALWAYS);
+        new SchemaInitializationConfig().dataSourceScriptDatabaseInitializer(dataSource, properties, 2)
+                .initializeDatabase();
+    }
+}